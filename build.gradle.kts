@@ -1,5 +1,6 @@
 plugins {
     alias(libs.plugins.hivemq.extension)
+    alias(libs.plugins.jmh)
     alias(libs.plugins.defaults)
     alias(libs.plugins.oci)
     alias(libs.plugins.spotless)
@@ -41,7 +42,6 @@ tasks.hivemqExtensionJar {
 dependencies {
     compileOnly(libs.jetbrains.annotations)
     implementation(libs.commonsLang)
-    implementation(libs.commonsText)
     implementation(libs.bouncycastle.prov)
     implementation(libs.caffeine)
     implementation(libs.jaxb.api)
@@ -117,6 +117,22 @@ testing {
     }
 }
 
+jmh {
+    jmhVersion = libs.versions.jmh
+    // e.g. ./gradlew jmh -PjmhIncludes=CredentialsHasherBenchmark
+    includes.addAll(providers.gradleProperty("jmhIncludes").map { listOf(it) }.orElse(listOf()))
+    // the benchmarks mock the static Builders of the extension SDK, as they run outside a HiveMQ broker
+    jvmArgsAppend.add(provider { "-javaagent:${mockitoAgent.singleFile}" })
+}
+
+dependencies {
+    jmhCompileOnly(libs.jetbrains.annotations)
+    jmhImplementation(libs.hivemq.extensionSdk)
+    jmhImplementation(libs.mockito)
+    jmhRuntimeOnly(libs.jaxb.impl)
+    jmhRuntimeOnly(libs.logback.classic)
+}
+
 spotless {
     java {
         licenseHeaderFile(rootDir.resolve("HEADER"))
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.hivemq.extension.sdk.api.auth.parameter.SimpleAuthInput;
+import com.hivemq.extension.sdk.api.client.parameter.ClientInformation;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionInformation;
+import com.hivemq.extension.sdk.api.client.parameter.Listener;
+import com.hivemq.extension.sdk.api.client.parameter.ProxyInformation;
+import com.hivemq.extension.sdk.api.client.parameter.TlsInformation;
+import com.hivemq.extension.sdk.api.packets.connect.ConnectPacket;
+import com.hivemq.extension.sdk.api.packets.connect.WillPublishPacket;
+import com.hivemq.extension.sdk.api.packets.general.MqttVersion;
+import com.hivemq.extension.sdk.api.packets.general.UserProperties;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A minimal {@link SimpleAuthInput} for a CONNECT with username and password, which is not bound to any listener.
+ */
+public record BenchmarkAuthInput(@NotNull String clientId, @NotNull String userName, @NotNull String password)
+        implements SimpleAuthInput {
+
+    private static final @NotNull ConnectionInformation CONNECTION_INFORMATION = new BenchmarkConnectionInformation();
+
+    @Override
+    public @NotNull ConnectPacket getConnectPacket() {
+        return new BenchmarkConnectPacket(clientId, userName, password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public @NotNull ConnectionInformation getConnectionInformation() {
+        return CONNECTION_INFORMATION;
+    }
+
+    @Override
+    public @NotNull ClientInformation getClientInformation() {
+        return () -> clientId;
+    }
+
+    private static class BenchmarkConnectionInformation implements ConnectionInformation {
+
+        private final @NotNull ConnectionAttributeStore connectionAttributeStore =
+                mock(ConnectionAttributeStore.class, withSettings().stubOnly());
+
+        @Override
+        public @NotNull MqttVersion getMqttVersion() {
+            return MqttVersion.V_5;
+        }
+
+        @Override
+        public @NotNull Optional<InetAddress> getInetAddress() {
+            return Optional.of(InetAddress.getLoopbackAddress());
+        }
+
+        @Override
+        public @NotNull Optional<Listener> getListener() {
+            return Optional.empty();
+        }
+
+        @Override
+        public @NotNull Optional<ProxyInformation> getProxyInformation() {
+            return Optional.empty();
+        }
+
+        @Override
+        public @NotNull ConnectionAttributeStore getConnectionAttributeStore() {
+            return connectionAttributeStore;
+        }
+
+        @Override
+        public @NotNull Optional<TlsInformation> getTlsInformation() {
+            return Optional.empty();
+        }
+    }
+
+    private record BenchmarkConnectPacket(@NotNull String clientId, @NotNull String userName, byte @NotNull [] password)
+            implements ConnectPacket {
+
+        @Override
+        public @NotNull MqttVersion getMqttVersion() {
+            return MqttVersion.V_5;
+        }
+
+        @Override
+        public @NotNull String getClientId() {
+            return clientId;
+        }
+
+        @Override
+        public boolean getCleanStart() {
+            return true;
+        }
+
+        @Override
+        public @NotNull Optional<WillPublishPacket> getWillPublish() {
+            return Optional.empty();
+        }
+
+        @Override
+        public long getSessionExpiryInterval() {
+            return 0;
+        }
+
+        @Override
+        public int getKeepAlive() {
+            return 60;
+        }
+
+        @Override
+        public int getReceiveMaximum() {
+            return 65_535;
+        }
+
+        @Override
+        public long getMaximumPacketSize() {
+            return 268_435_460;
+        }
+
+        @Override
+        public int getTopicAliasMaximum() {
+            return 0;
+        }
+
+        @Override
+        public boolean getRequestResponseInformation() {
+            return false;
+        }
+
+        @Override
+        public boolean getRequestProblemInformation() {
+            return true;
+        }
+
+        @Override
+        public @NotNull Optional<String> getAuthenticationMethod() {
+            return Optional.empty();
+        }
+
+        @Override
+        public @NotNull Optional<ByteBuffer> getAuthenticationData() {
+            return Optional.empty();
+        }
+
+        @Override
+        public @NotNull UserProperties getUserProperties() {
+            return mock(UserProperties.class, withSettings().stubOnly());
+        }
+
+        @Override
+        public @NotNull Optional<String> getUserName() {
+            return Optional.of(userName);
+        }
+
+        @Override
+        public @NotNull Optional<ByteBuffer> getPassword() {
+            return Optional.of(ByteBuffer.wrap(password).asReadOnlyBuffer());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extensions.rbac.file.configuration.CredentialsConfiguration;
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.PasswordType;
+import com.hivemq.extensions.rbac.file.utils.CredentialsValidator;
+import com.hivemq.extensions.rbac.file.utils.Hashing;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Stream;
+
+import static com.hivemq.extensions.rbac.file.ExtensionConstants.CREDENTIALS_LOCATION;
+
+/**
+ * Creates a credentials file with a configurable amount of users in a temporary extension home and wires up the
+ * {@link CredentialsValidator} on top of it, like {@link FileAuthMain} does.
+ * <p>
+ * All users share the same password, salt and roles, so that the setup does not need to derive one hash per user.
+ */
+public class BenchmarkCredentials implements AutoCloseable {
+
+    public static final @NotNull String PASSWORD = "password";
+    public static final @NotNull String WRONG_PASSWORD = "wrong-password";
+    public static final int ITERATIONS = 100;
+
+    private static final @NotNull String SALT = "benchmark-salt";
+
+    private final @NotNull Path extensionHome;
+    private final @NotNull ScheduledExecutorService executorService;
+    private final @NotNull ExtensionConfig extensionConfig;
+    private final @NotNull CredentialsValidator credentialsValidator;
+
+    public BenchmarkCredentials(final int userCount, final @NotNull PasswordType passwordType) throws IOException {
+        extensionHome = Files.createTempDirectory("file-rbac-benchmark");
+        executorService = Executors.newSingleThreadScheduledExecutor();
+        extensionConfig = new ExtensionConfig();
+        extensionConfig.setPasswordType(passwordType);
+        writeCredentials(extensionHome.resolve(CREDENTIALS_LOCATION), userCount, passwordType);
+        final var metricRegistry = new MetricRegistry();
+        final var credentialsConfiguration =
+                new CredentialsConfiguration(extensionHome, executorService, extensionConfig, metricRegistry);
+        credentialsConfiguration.init();
+        credentialsValidator = new CredentialsValidator(credentialsConfiguration, extensionConfig, metricRegistry);
+        credentialsValidator.init();
+    }
+
+    public static @NotNull String userName(final int index) {
+        return "user-" + index;
+    }
+
+    public static @NotNull String hashedPassword() {
+        final var base64Password = Base64.getEncoder().encodeToString(PASSWORD.getBytes(StandardCharsets.UTF_8));
+        final var base64Salt = Base64.getEncoder().encodeToString(SALT.getBytes(StandardCharsets.UTF_8));
+        final var hash = Hashing.createHash(base64Password, base64Salt, ITERATIONS);
+        return base64Salt + ":" + ITERATIONS + ":" + Base64.getEncoder().encodeToString(hash);
+    }
+
+    public @NotNull ExtensionConfig getExtensionConfig() {
+        return extensionConfig;
+    }
+
+    public @NotNull CredentialsValidator getCredentialsValidator() {
+        return credentialsValidator;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executorService.shutdownNow();
+        try (final Stream<Path> files = Files.walk(extensionHome)) {
+            for (final var file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Whether the credential hash cache can be used for the presented password.
+     */
+    public enum CacheMode {
+        /**
+         * Every CONNECT presents the correct password, so its hash is cached after the first CONNECT.
+         */
+        HIT,
+        /**
+         * Every CONNECT presents a wrong password that was never presented before.
+         */
+        MISS;
+
+        public @NotNull String password(final long invocation) {
+            return this == HIT ? PASSWORD : WRONG_PASSWORD + invocation;
+        }
+    }
+
+    public static void writeCredentials(
+            final @NotNull Path file,
+            final int userCount,
+            final @NotNull PasswordType passwordType) throws IOException {
+        Files.createDirectories(file.getParent());
+        final var password = passwordType == PasswordType.HASHED ? hashedPassword() : PASSWORD;
+        try (final var writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("<file-rbac>\n<users>\n");
+            for (var i = 0; i < userCount; i++) {
+                writer.write("<user><name>");
+                writer.write(userName(i));
+                writer.write("</name><password>");
+                writer.write(password);
+                writer.write("</password><roles><id>static</id><id>templated</id></roles></user>\n");
+            }
+            writer.write("""
+                    </users>
+                    <roles>
+                        <role>
+                            <id>static</id>
+                            <permissions>
+                                <permission><topic>broadcast/#</topic><activity>SUBSCRIBE</activity></permission>
+                                <permission><topic>status</topic><activity>PUBLISH</activity></permission>
+                            </permissions>
+                        </role>
+                        <role>
+                            <id>templated</id>
+                            <permissions>
+                                <permission><topic>data/${{clientid}}/#</topic></permission>
+                                <permission><topic>outgoing/${{clientid}}</topic><activity>PUBLISH</activity></permission>
+                                <permission><topic>incoming/${{username}}/actions</topic></permission>
+                            </permissions>
+                        </role>
+                    </roles>
+                    </file-rbac>
+                    """);
+        }
+    }
+}
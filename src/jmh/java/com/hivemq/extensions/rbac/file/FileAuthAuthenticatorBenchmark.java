@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.auth.parameter.SimpleAuthOutput;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extension.sdk.api.packets.auth.DefaultAuthorizationBehaviour;
+import com.hivemq.extension.sdk.api.packets.auth.ModifiableDefaultPermissions;
+import com.hivemq.extensions.rbac.file.configuration.entities.PasswordType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Drives {@link FileAuthAuthenticator#onConnect} end to end, as HiveMQ does for every CONNECT packet.
+ * <p>
+ * With {@link BenchmarkCredentials.CacheMode#MISS} every CONNECT presents a password that was never seen before, so
+ * the credential hash cache can never be used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileAuthAuthenticatorBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int userCount;
+
+    @Param({"HASHED", "PLAIN"})
+    public @Nullable PasswordType passwordType;
+
+    @Param({"HIT", "MISS"})
+    public @Nullable BenchmarkCredentials.CacheMode cacheMode;
+
+    private @Nullable BenchmarkCredentials credentials;
+    private @Nullable FileAuthAuthenticator authenticator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        assert passwordType != null;
+        credentials = new BenchmarkCredentials(userCount, passwordType);
+        authenticator = new FileAuthAuthenticator(credentials.getCredentialsValidator(),
+                credentials.getExtensionConfig(),
+                null,
+                null,
+                null,
+                null,
+                new ConnectMetrics(credentials.getExtensionConfig(), new MetricRegistry()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (credentials != null) {
+            credentials.close();
+        }
+    }
+
+    @Benchmark
+    public int onConnect(final @NotNull Connection connection, final @NotNull MockedBuilders ignored) {
+        assert authenticator != null && cacheMode != null;
+        final var user = connection.nextUser(userCount);
+        final var password = cacheMode.password(connection.invocations);
+        connection.permissions.clear();
+        authenticator.onConnect(new BenchmarkAuthInput("client-" + user, BenchmarkCredentials.userName(user), password),
+                connection.output);
+        return connection.permissions.asList().size();
+    }
+
+    @State(Scope.Thread)
+    public static class Connection {
+
+        private final @NotNull BenchmarkDefaultPermissions permissions = new BenchmarkDefaultPermissions();
+        private @Nullable SimpleAuthOutput output;
+        private long invocations;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // stub only, so that the mock does not record millions of invocations
+            output = mock(SimpleAuthOutput.class, withSettings().stubOnly());
+            when(output.getDefaultPermissions()).thenReturn(permissions);
+        }
+
+        int nextUser(final int userCount) {
+            // walk through the users with a prime stride, so that consecutive CONNECTs are for different users
+            return (int) (invocations++ * 7_919 % userCount);
+        }
+    }
+
+    private static class BenchmarkDefaultPermissions implements ModifiableDefaultPermissions {
+
+        private final @NotNull List<TopicPermission> permissions = new ArrayList<>();
+        private @NotNull DefaultAuthorizationBehaviour defaultBehaviour = DefaultAuthorizationBehaviour.ALLOW;
+
+        @Override
+        public @NotNull List<TopicPermission> asList() {
+            return permissions;
+        }
+
+        @Override
+        public void add(final @NotNull TopicPermission permission) {
+            permissions.add(permission);
+        }
+
+        @Override
+        public void addAll(final @NotNull Collection<? extends TopicPermission> permissions) {
+            this.permissions.addAll(permissions);
+        }
+
+        @Override
+        public void remove(final @NotNull TopicPermission permission) {
+            permissions.remove(permission);
+        }
+
+        @Override
+        public void clear() {
+            permissions.clear();
+        }
+
+        @Override
+        public @NotNull DefaultAuthorizationBehaviour getDefaultBehaviour() {
+            return defaultBehaviour;
+        }
+
+        @Override
+        public void setDefaultBehaviour(final @NotNull DefaultAuthorizationBehaviour defaultBehaviour) {
+            this.defaultBehaviour = defaultBehaviour;
+        }
+    }
+}
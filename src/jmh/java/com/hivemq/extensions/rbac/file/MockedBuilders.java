@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extension.sdk.api.services.builder.Builders;
+import com.hivemq.extension.sdk.api.services.builder.TopicPermissionBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.mockito.MockedStatic;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import static org.mockito.Mockito.mockStatic;
+
+/**
+ * The static {@link Builders} are only available inside a HiveMQ broker, so they are replaced with a plain builder.
+ * <p>
+ * Static mocks are bound to the thread that created them, so this state is thread scoped and set up on the benchmark
+ * thread itself.
+ */
+@State(Scope.Thread)
+public class MockedBuilders {
+
+    private @Nullable MockedStatic<Builders> builders;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        builders = mockStatic(Builders.class);
+        builders.when(Builders::topicPermission).thenAnswer(invocation -> new BenchmarkTopicPermissionBuilder());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (builders != null) {
+            builders.close();
+        }
+    }
+
+    private static class BenchmarkTopicPermissionBuilder implements TopicPermissionBuilder {
+
+        private @NotNull String topicFilter = "#";
+        private TopicPermission.@NotNull PermissionType type = TopicPermission.PermissionType.ALLOW;
+        private TopicPermission.@NotNull Qos qos = TopicPermission.Qos.ALL;
+        private TopicPermission.@NotNull MqttActivity activity = TopicPermission.MqttActivity.ALL;
+        private TopicPermission.@NotNull Retain retain = TopicPermission.Retain.ALL;
+        private TopicPermission.@NotNull SharedSubscription sharedSubscription =
+                TopicPermission.SharedSubscription.ALL;
+        private @NotNull String sharedGroup = "#";
+
+        @Override
+        public @NotNull TopicPermissionBuilder topicFilter(final @NotNull String topicFilter) {
+            this.topicFilter = topicFilter;
+            return this;
+        }
+
+        @Override
+        public @NotNull TopicPermissionBuilder type(final TopicPermission.@NotNull PermissionType type) {
+            this.type = type;
+            return this;
+        }
+
+        @Override
+        public @NotNull TopicPermissionBuilder qos(final TopicPermission.@NotNull Qos qos) {
+            this.qos = qos;
+            return this;
+        }
+
+        @Override
+        public @NotNull TopicPermissionBuilder activity(final TopicPermission.@NotNull MqttActivity activity) {
+            this.activity = activity;
+            return this;
+        }
+
+        @Override
+        public @NotNull TopicPermissionBuilder retain(final TopicPermission.@NotNull Retain retain) {
+            this.retain = retain;
+            return this;
+        }
+
+        @Override
+        public @NotNull TopicPermissionBuilder sharedSubscription(
+                final TopicPermission.@NotNull SharedSubscription sharedSubscription) {
+            this.sharedSubscription = sharedSubscription;
+            return this;
+        }
+
+        @Override
+        public @NotNull TopicPermissionBuilder sharedGroup(final @NotNull String sharedGroup) {
+            this.sharedGroup = sharedGroup;
+            return this;
+        }
+
+        @Override
+        public @NotNull TopicPermission build() {
+            return new BenchmarkTopicPermission(topicFilter,
+                    type,
+                    qos,
+                    activity,
+                    retain,
+                    sharedSubscription,
+                    sharedGroup);
+        }
+    }
+
+    private record BenchmarkTopicPermission(@NotNull String topicFilter, @NotNull PermissionType type,
+            @NotNull Qos qos, @NotNull MqttActivity activity, @NotNull Retain retain,
+            @NotNull SharedSubscription sharedSubscription, @NotNull String sharedGroup)
+            implements TopicPermission {
+
+        @Override
+        public @NotNull String getTopicFilter() {
+            return topicFilter;
+        }
+
+        @Override
+        public @NotNull PermissionType getType() {
+            return type;
+        }
+
+        @Override
+        public @NotNull Qos getQos() {
+            return qos;
+        }
+
+        @Override
+        public @NotNull MqttActivity getActivity() {
+            return activity;
+        }
+
+        @Override
+        public @NotNull Retain getPublishRetain() {
+            return retain;
+        }
+
+        @Override
+        public @NotNull SharedSubscription getSharedSubscription() {
+            return sharedSubscription;
+        }
+
+        @Override
+        public @NotNull String getSharedGroup() {
+            return sharedGroup;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import com.hivemq.extensions.rbac.file.BenchmarkCredentials;
+import com.hivemq.extensions.rbac.file.configuration.entities.CredentialsParser;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.PasswordType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JAXB and the StAX parser for the credentials file.
+ * <p>
+ * Run with the GC profiler ({@code -prof gc}) to compare the allocated bytes per parse. The heap is limited, so the
+ * larger files show whether a parser needs more than one copy of the users at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConfigParserBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int userCount;
+
+    @Param({"JAXB", "STAX"})
+    public @Nullable CredentialsParser parser;
+
+    private @Nullable Path directory;
+    private @Nullable Path credentialsFile;
+    private @Nullable XmlParser xmlParser;
+    private @Nullable StreamingConfigParser streamingConfigParser;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("file-rbac-parser-benchmark");
+        credentialsFile = directory.resolve("credentials.xml");
+        BenchmarkCredentials.writeCredentials(credentialsFile, userCount, PasswordType.HASHED);
+        xmlParser = new XmlParser();
+        streamingConfigParser = new StreamingConfigParser();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        assert directory != null && credentialsFile != null;
+        Files.delete(credentialsFile);
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public @NotNull FileAuthConfig parse() throws IOException {
+        assert xmlParser != null && streamingConfigParser != null && credentialsFile != null;
+        return parser == CredentialsParser.JAXB ?
+                xmlParser.unmarshalFileAuthConfig(credentialsFile) :
+                streamingConfigParser.parse(credentialsFile);
+    }
+}
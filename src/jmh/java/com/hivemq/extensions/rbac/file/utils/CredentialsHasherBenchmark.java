@@ -0,0 +1,72 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extensions.rbac.file.BenchmarkCredentials;
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CredentialsHasherBenchmark {
+
+    @Param({"HIT", "MISS"})
+    public @Nullable BenchmarkCredentials.CacheMode cacheMode;
+
+    private @Nullable CredentialsHasher credentialsHasher;
+    private @Nullable String hashedPassword;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        credentialsHasher = new CredentialsHasher(new ExtensionConfig(), new MetricRegistry());
+        hashedPassword = BenchmarkCredentials.hashedPassword();
+    }
+
+    @Benchmark
+    public boolean checkCredentials(final @NotNull Invocations invocations) {
+        assert credentialsHasher != null && hashedPassword != null && cacheMode != null;
+        final var password = cacheMode.password(invocations.count++);
+        return credentialsHasher.checkCredentials(password.getBytes(StandardCharsets.UTF_8), hashedPassword);
+    }
+
+    @State(Scope.Thread)
+    public static class Invocations {
+
+        private long count;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extensions.rbac.file.BenchmarkCredentials;
+import com.hivemq.extensions.rbac.file.MockedBuilders;
+import com.hivemq.extensions.rbac.file.configuration.entities.PasswordType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CredentialsValidatorBenchmark {
+
+    private static final @NotNull List<String> ROLES = List.of("static", "templated");
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int userCount;
+
+    @Param({"HASHED", "PLAIN"})
+    public @Nullable PasswordType passwordType;
+
+    @Param({"HIT", "MISS"})
+    public @Nullable BenchmarkCredentials.CacheMode cacheMode;
+
+    private @Nullable BenchmarkCredentials credentials;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        assert passwordType != null;
+        credentials = new BenchmarkCredentials(userCount, passwordType);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (credentials != null) {
+            credentials.close();
+        }
+    }
+
+    @Benchmark
+    public @Nullable List<String> getRoles(final @NotNull Users users) {
+        assert credentials != null && cacheMode != null;
+        final var user = users.nextUser(userCount);
+        final var password = cacheMode.password(users.invocations).getBytes(StandardCharsets.UTF_8);
+        return credentials.getCredentialsValidator()
+                .getRoles(BenchmarkCredentials.userName(user), ByteBuffer.wrap(password));
+    }
+
+    @Benchmark
+    public @NotNull List<TopicPermission> getPermissions(
+            final @NotNull Users users,
+            final @NotNull MockedBuilders ignored) {
+        assert credentials != null;
+        final var user = users.nextUser(userCount);
+        return credentials.getCredentialsValidator()
+                .getPermissions("client-" + user, BenchmarkCredentials.userName(user), ROLES);
+    }
+
+    @State(Scope.Thread)
+    public static class Users {
+
+        private long invocations;
+
+        int nextUser(final int userCount) {
+            return (int) (invocations++ * 7_919 % userCount);
+        }
+    }
+}
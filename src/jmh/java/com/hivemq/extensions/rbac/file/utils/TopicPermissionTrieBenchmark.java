@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the authorization of a PUBLISH with a {@link TopicPermissionTrie} to matching the default permissions one
+ * after another, as the broker does with the default permissions of a client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopicPermissionTrieBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int permissionCount;
+
+    @Param({"LAST", "NONE"})
+    public @Nullable Match match;
+
+    private @Nullable List<TopicPermission> permissions;
+    private @Nullable TopicPermissionTrie trie;
+    private @Nullable String topic;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        assert match != null;
+        final var permissions = new ArrayList<TopicPermission>(permissionCount);
+        for (var i = 0; i < permissionCount; i++) {
+            // a mix of the typical topic filters with and without wildcards
+            switch (i % 3) {
+                case 0:
+                    permissions.add(new BenchmarkPermission("devices/device-" + i + "/telemetry"));
+                    break;
+                case 1:
+                    permissions.add(new BenchmarkPermission("devices/device-" + i + "/+/state"));
+                    break;
+                default:
+                    permissions.add(new BenchmarkPermission("clients/client-4711/device-" + i + "/#"));
+            }
+        }
+        this.permissions = permissions;
+        trie = TopicPermissionTrie.compile(permissions);
+        topic = match.topic(permissionCount);
+    }
+
+    @Benchmark
+    public boolean defaultPermissions() {
+        assert permissions != null && topic != null;
+        for (final var permission : permissions) {
+            if (permission.getActivity() != TopicPermission.MqttActivity.SUBSCRIBE &&
+                    permission.getPublishRetain() != TopicPermission.Retain.RETAINED &&
+                    matches(permission.getTopicFilter(), topic)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean topicTrie() {
+        assert trie != null && topic != null;
+        return trie.allowsPublish(topic, 1, false);
+    }
+
+    @Benchmark
+    public @NotNull TopicPermissionTrie compileTopicTrie() {
+        assert permissions != null;
+        return TopicPermissionTrie.compile(permissions);
+    }
+
+    /**
+     * Matches a topic against a topic filter without allocations.
+     */
+    private static boolean matches(final @NotNull String filter, final @NotNull String topic) {
+        var filterStart = 0;
+        var topicStart = 0;
+        while (true) {
+            final var filterEnd = levelEnd(filter, filterStart);
+            final var filterLevelLength = filterEnd - filterStart;
+            if (filterLevelLength == 1 && filter.charAt(filterStart) == '#') {
+                return true;
+            }
+            if (topicStart > topic.length()) {
+                return false;
+            }
+            final var topicEnd = levelEnd(topic, topicStart);
+            final var singleLevelWildcard = filterLevelLength == 1 && filter.charAt(filterStart) == '+';
+            if (!singleLevelWildcard &&
+                    (filterLevelLength != topicEnd - topicStart ||
+                            !filter.regionMatches(filterStart, topic, topicStart, filterLevelLength))) {
+                return false;
+            }
+            if (filterEnd == filter.length()) {
+                return topicEnd == topic.length();
+            }
+            filterStart = filterEnd + 1;
+            topicStart = topicEnd + 1;
+        }
+    }
+
+    private static int levelEnd(final @NotNull String topic, final int start) {
+        final var end = topic.indexOf('/', start);
+        return end < 0 ? topic.length() : end;
+    }
+
+    public enum Match {
+        // the last permission matches, so all permissions are matched one after another
+        LAST {
+            @Override
+            @NotNull String topic(final int permissionCount) {
+                return "devices/device-" + (permissionCount - 1) + "/telemetry";
+            }
+        },
+        NONE {
+            @Override
+            @NotNull String topic(final int permissionCount) {
+                return "devices/unknown/telemetry";
+            }
+        };
+
+        abstract @NotNull String topic(int permissionCount);
+    }
+
+    private record BenchmarkPermission(@NotNull String topicFilter) implements TopicPermission {
+
+        @Override
+        public @NotNull String getTopicFilter() {
+            return topicFilter;
+        }
+
+        @Override
+        public @NotNull PermissionType getType() {
+            return PermissionType.ALLOW;
+        }
+
+        @Override
+        public @NotNull Qos getQos() {
+            return Qos.ALL;
+        }
+
+        @Override
+        public @NotNull MqttActivity getActivity() {
+            return MqttActivity.ALL;
+        }
+
+        @Override
+        public @NotNull Retain getPublishRetain() {
+            return Retain.ALL;
+        }
+
+        @Override
+        public @NotNull SharedSubscription getSharedSubscription() {
+            return SharedSubscription.ALL;
+        }
+
+        @Override
+        public @NotNull String getSharedGroup() {
+            return "#";
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection authenticated by this extension.
+ * <p>
+ * The authenticator stores an id of the connection and the username in the connection attribute store, the topic trie
+ * authorizer and the connected clients both refer to the connection by this id. The id tells the connections of the
+ * same client identifier apart, so the disconnect of a connection that was taken over does not remove the connection
+ * that took it over.
+ */
+@Immutable
+final class AuthenticatedConnection {
+
+    static final @NotNull String CONNECTION_ATTRIBUTE = "com.hivemq.extensions.file-rbac.connection";
+
+    private static final @NotNull AtomicLong NEXT_ID = new AtomicLong();
+
+    private final long id;
+    private final @NotNull String userName;
+
+    private AuthenticatedConnection(final long id, final @NotNull String userName) {
+        this.id = id;
+        this.userName = userName;
+    }
+
+    /**
+     * Stores a new connection in the attribute store of an authenticated connection.
+     *
+     * @param  connectionAttributeStore the attribute store of the connection
+     * @param  userName                 the username of the client
+     * @return                          the authenticated connection
+     */
+    static @NotNull AuthenticatedConnection store(
+            final @NotNull ConnectionAttributeStore connectionAttributeStore,
+            final @NotNull String userName) {
+        final var connection = new AuthenticatedConnection(NEXT_ID.incrementAndGet(), userName);
+        final var userNameBytes = userName.getBytes(StandardCharsets.UTF_8);
+        final var value = ByteBuffer.allocate(Long.BYTES + userNameBytes.length)
+                .putLong(connection.id)
+                .put(userNameBytes)
+                .flip();
+        connectionAttributeStore.put(CONNECTION_ATTRIBUTE, value);
+        return connection;
+    }
+
+    /**
+     * @param  connectionAttributeStore the attribute store of the connection
+     * @return                          the connection or null if it was not authenticated by this extension
+     */
+    static @Nullable AuthenticatedConnection of(final @NotNull ConnectionAttributeStore connectionAttributeStore) {
+        final var value = connectionAttributeStore.get(CONNECTION_ATTRIBUTE);
+        if (value.isEmpty() || value.get().remaining() < Long.BYTES) {
+            return null;
+        }
+        final var buffer = value.get().duplicate();
+        final var id = buffer.getLong();
+        return new AuthenticatedConnection(id, StandardCharsets.UTF_8.decode(buffer).toString());
+    }
+
+    /**
+     * Reads only the id of the connection, as the authorizers do not need the username.
+     *
+     * @param  connectionAttributeStore the attribute store of the connection
+     * @return                          the id of the connection or null if it was not authenticated by this extension
+     */
+    static @Nullable Long id(final @NotNull ConnectionAttributeStore connectionAttributeStore) {
+        final var value = connectionAttributeStore.get(CONNECTION_ATTRIBUTE);
+        if (value.isEmpty() || value.get().remaining() < Long.BYTES) {
+            return null;
+        }
+        final var buffer = value.get();
+        return buffer.getLong(buffer.position());
+    }
+
+    long getId() {
+        return id;
+    }
+
+    @NotNull String getUserName() {
+        return userName;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import com.hivemq.extensions.rbac.file.utils.Metrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the credential checks of the async authentication mode on a dedicated, bounded worker pool, so the password
+ * hashing does not block the threads of the broker.
+ */
+@ThreadSafe
+class AuthenticationExecutor {
+
+    static final @NotNull String QUEUE_SIZE = Metrics.PREFIX + "authentication.executor.queue-size";
+    static final @NotNull String WAIT_TIME = Metrics.PREFIX + "authentication.executor.wait-time";
+    static final @NotNull String REJECTED = Metrics.PREFIX + "authentication.executor.rejected";
+    static final @NotNull String EXPIRED = Metrics.PREFIX + "authentication.executor.expired";
+
+    private final @NotNull ThreadPoolExecutor executor;
+    private final @NotNull Duration timeout;
+    private final @NotNull Timer waitTime;
+    private final @NotNull Meter rejected;
+    private final @NotNull Meter expired;
+
+    AuthenticationExecutor(
+            final @NotNull ExtensionConfig extensionConfig,
+            final @NotNull MetricRegistry metricRegistry) {
+        final var threads = extensionConfig.getAsyncAuthenticationThreads() > 0 ?
+                extensionConfig.getAsyncAuthenticationThreads() :
+                Runtime.getRuntime().availableProcessors();
+        final var threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads,
+                threads,
+                0,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(extensionConfig.getAsyncAuthenticationQueueSize()),
+                runnable -> {
+                    final var thread =
+                            new Thread(runnable, "file-rbac-authentication-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        timeout = Duration.ofSeconds(extensionConfig.getAsyncAuthenticationTimeout());
+        waitTime = metricRegistry.timer(WAIT_TIME);
+        rejected = metricRegistry.meter(REJECTED);
+        expired = metricRegistry.meter(EXPIRED);
+        final var queue = executor.getQueue();
+        Metrics.registerGauge(metricRegistry, QUEUE_SIZE, (Gauge<Integer>) queue::size);
+    }
+
+    @NotNull Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Submits a credential check.
+     *
+     * @param  task        the credential check
+     * @param  expiredTask runs instead of the credential check if it waited for longer than the timeout
+     * @return             false if the queue is full and the task was rejected
+     */
+    boolean submit(final @NotNull Runnable task, final @NotNull Runnable expiredTask) {
+        final var submitted = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                final var waited = System.nanoTime() - submitted;
+                waitTime.update(waited, TimeUnit.NANOSECONDS);
+                // the broker already failed the authentication after the timeout, so the hashing would be wasted
+                if (waited >= timeout.toNanos()) {
+                    expired.mark();
+                    expiredTask.run();
+                    return;
+                }
+                task.run();
+            });
+            return true;
+        } catch (final RejectedExecutionException e) {
+            rejected.mark();
+            return false;
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
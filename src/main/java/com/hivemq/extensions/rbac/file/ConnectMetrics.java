@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+import com.hivemq.extension.sdk.api.packets.connect.ConnackReasonCode;
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import com.hivemq.extensions.rbac.file.utils.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The instruments of the authentication of CONNECTs, registered up front, so recording an outcome does not look up
+ * metrics by name.
+ * <p>
+ * The latency covers the whole authentication from the call of the authenticator until its outcome, including the
+ * time an asynchronous authentication waits for a thread.
+ */
+@ThreadSafe
+class ConnectMetrics {
+
+    static final @NotNull String LATENCY = Metrics.PREFIX + "connect.latency";
+    static final @NotNull String PERMISSIONS = Metrics.PREFIX + "connect.permissions";
+    static final @NotNull String OUTCOME = Metrics.PREFIX + "connect.outcome.";
+    static final @NotNull String LISTENER = Metrics.PREFIX + "connect.listener.";
+    static final @NotNull String NEXT_EXTENSION = "next-extension";
+
+    private final @NotNull MetricRegistry metricRegistry;
+    private final @NotNull LongSupplier nanoClock;
+    private final @NotNull Timer latency;
+    private final @NotNull Histogram permissions;
+    // indexed by the ordinal of the reason code
+    private final @NotNull Counter @NotNull [] outcomes;
+    private final @NotNull Counter nextExtension;
+    // listeners that are not configured are added on their first CONNECT
+    private final @NotNull ConcurrentHashMap<String, ListenerCounters> listeners = new ConcurrentHashMap<>();
+
+    ConnectMetrics(final @NotNull ExtensionConfig extensionConfig, final @NotNull MetricRegistry metricRegistry) {
+        this(extensionConfig, metricRegistry, System::nanoTime);
+    }
+
+    ConnectMetrics(
+            final @NotNull ExtensionConfig extensionConfig,
+            final @NotNull MetricRegistry metricRegistry,
+            final @NotNull LongSupplier nanoClock) {
+        this.metricRegistry = metricRegistry;
+        this.nanoClock = nanoClock;
+        latency = metricRegistry.timer(LATENCY);
+        permissions = metricRegistry.histogram(PERMISSIONS);
+        final var reasonCodes = ConnackReasonCode.values();
+        outcomes = new Counter[reasonCodes.length];
+        for (final var reasonCode : reasonCodes) {
+            outcomes[reasonCode.ordinal()] = metricRegistry.counter(OUTCOME + metricName(reasonCode));
+        }
+        nextExtension = metricRegistry.counter(OUTCOME + NEXT_EXTENSION);
+        final var listenerNames = extensionConfig.getListenerNames();
+        if (listenerNames != null) {
+            for (final var listenerName : listenerNames) {
+                listeners.computeIfAbsent(listenerName, this::listenerCounters);
+            }
+        }
+    }
+
+    /**
+     * @return the start of an authentication in nanoseconds
+     */
+    long start() {
+        return nanoClock.getAsLong();
+    }
+
+    /**
+     * @param  startNanos the start of an authentication
+     * @return            the nanoseconds since the start of the authentication
+     */
+    long elapsed(final long startNanos) {
+        return nanoClock.getAsLong() - startNanos;
+    }
+
+    /**
+     * @param listenerName the name of the listener the client connected to, null if unknown
+     * @param permissions  the number of permissions of the client
+     * @param startNanos   the start of the authentication
+     */
+    void succeeded(final @Nullable String listenerName, final int permissions, final long startNanos) {
+        this.permissions.update(permissions);
+        outcomes[ConnackReasonCode.SUCCESS.ordinal()].inc();
+        if (listenerName != null) {
+            listeners.computeIfAbsent(listenerName, this::listenerCounters).succeeded.inc();
+        }
+        latency.update(nanoClock.getAsLong() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param listenerName the name of the listener the client connected to, null if unknown
+     * @param reasonCode   the reason code the authentication failed with
+     * @param startNanos   the start of the authentication
+     */
+    void failed(
+            final @Nullable String listenerName,
+            final @NotNull ConnackReasonCode reasonCode,
+            final long startNanos) {
+        outcomes[reasonCode.ordinal()].inc();
+        if (listenerName != null) {
+            listeners.computeIfAbsent(listenerName, this::listenerCounters).failed.inc();
+        }
+        latency.update(nanoClock.getAsLong() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param listenerName the name of the listener the client connected to, null if unknown
+     * @param startNanos   the start of the authentication
+     */
+    void nextExtension(final @Nullable String listenerName, final long startNanos) {
+        nextExtension.inc();
+        if (listenerName != null) {
+            listeners.computeIfAbsent(listenerName, this::listenerCounters).nextExtension.inc();
+        }
+        latency.update(nanoClock.getAsLong() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private @NotNull ListenerCounters listenerCounters(final @NotNull String listenerName) {
+        return new ListenerCounters(metricRegistry, LISTENER + listenerName + ".");
+    }
+
+    static @NotNull String metricName(final @NotNull ConnackReasonCode reasonCode) {
+        return reasonCode.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    private static final class ListenerCounters {
+
+        private final @NotNull Counter succeeded;
+        private final @NotNull Counter failed;
+        private final @NotNull Counter nextExtension;
+
+        private ListenerCounters(final @NotNull MetricRegistry metricRegistry, final @NotNull String prefix) {
+            succeeded = metricRegistry.counter(prefix + "succeeded");
+            failed = metricRegistry.counter(prefix + "failed");
+            nextExtension = metricRegistry.counter(prefix + NEXT_EXTENSION);
+        }
+    }
+}
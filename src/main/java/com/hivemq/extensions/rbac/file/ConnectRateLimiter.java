@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import com.hivemq.extensions.rbac.file.utils.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate of CONNECT attempts per username and per client IP, so excess attempts are rejected before the
+ * password is hashed.
+ * <p>
+ * Each key has a token bucket, implemented as the generic cell rate algorithm with a single {@link AtomicLong} holding
+ * the theoretical arrival time of the next attempt, so attempts are checked without locks.
+ */
+@ThreadSafe
+class ConnectRateLimiter {
+
+    static final @NotNull String USERNAME_REJECTED = Metrics.PREFIX + "rate-limit.username.rejected";
+    static final @NotNull String IP_REJECTED = Metrics.PREFIX + "rate-limit.ip.rejected";
+    static final @NotNull String KEYS = Metrics.PREFIX + "rate-limit.keys";
+
+    // null if the limit is disabled
+    private final @Nullable Limiter<String> userNameLimiter;
+    private final @Nullable Limiter<InetAddress> ipLimiter;
+    private final @NotNull Counter userNameRejected;
+    private final @NotNull Counter ipRejected;
+
+    ConnectRateLimiter(final @NotNull ExtensionConfig extensionConfig, final @NotNull MetricRegistry metricRegistry) {
+        this(extensionConfig, metricRegistry, System::nanoTime);
+    }
+
+    ConnectRateLimiter(
+            final @NotNull ExtensionConfig extensionConfig,
+            final @NotNull MetricRegistry metricRegistry,
+            final @NotNull LongSupplier nanoClock) {
+        userNameLimiter = extensionConfig.getUsernameRateLimit() > 0 ?
+                new Limiter<>(extensionConfig.getUsernameRateLimit(),
+                        extensionConfig.getUsernameRateLimitBurst(),
+                        extensionConfig.getRateLimitMaxKeys(),
+                        nanoClock) :
+                null;
+        ipLimiter = extensionConfig.getIpRateLimit() > 0 ?
+                new Limiter<>(extensionConfig.getIpRateLimit(),
+                        extensionConfig.getIpRateLimitBurst(),
+                        extensionConfig.getRateLimitMaxKeys(),
+                        nanoClock) :
+                null;
+        userNameRejected = metricRegistry.counter(USERNAME_REJECTED);
+        ipRejected = metricRegistry.counter(IP_REJECTED);
+        Metrics.registerGauge(metricRegistry, KEYS, (Gauge<Long>) this::keyCount);
+    }
+
+    /**
+     * @return true if any limit is enabled
+     */
+    static boolean isEnabled(final @NotNull ExtensionConfig extensionConfig) {
+        return extensionConfig.getUsernameRateLimit() > 0 || extensionConfig.getIpRateLimit() > 0;
+    }
+
+    /**
+     * Takes a token for a CONNECT attempt.
+     *
+     * @param  userName the username of the CONNECT
+     * @param  address  the IP of the client, null if unknown
+     * @return          false if the attempt exceeds a limit and must be rejected
+     */
+    boolean tryAcquire(final @NotNull String userName, final @Nullable InetAddress address) {
+        // the IP is checked first, so a single client can not use up the tokens of a username
+        if (ipLimiter != null && address != null && !ipLimiter.tryAcquire(address)) {
+            ipRejected.inc();
+            return false;
+        }
+        if (userNameLimiter != null && !userNameLimiter.tryAcquire(userName)) {
+            userNameRejected.inc();
+            return false;
+        }
+        return true;
+    }
+
+    private long keyCount() {
+        return (userNameLimiter == null ? 0 : userNameLimiter.keyCount()) +
+                (ipLimiter == null ? 0 : ipLimiter.keyCount());
+    }
+
+    private static final class Limiter<K> {
+
+        // the time between two attempts at the sustained rate
+        private final long emissionInterval;
+        // how far the theoretical arrival time may be ahead of the current time, (burst - 1) attempts
+        private final long tolerance;
+        private final @NotNull LongSupplier nanoClock;
+        private final @NotNull Cache<K, AtomicLong> arrivalTimes;
+
+        private Limiter(
+                final int attemptsPerMinute,
+                final int burst,
+                final int maxKeys,
+                final @NotNull LongSupplier nanoClock) {
+            emissionInterval = TimeUnit.MINUTES.toNanos(1) / attemptsPerMinute;
+            tolerance = emissionInterval * (burst - 1);
+            this.nanoClock = nanoClock;
+            // a bucket that was not used for the time to refill completely is the same as a new bucket, the expiry
+            // uses the same clock as the buckets
+            arrivalTimes = Caffeine.newBuilder()
+                    .ticker(nanoClock::getAsLong)
+                    .maximumSize(maxKeys)
+                    .expireAfterAccess(Duration.ofNanos(tolerance + emissionInterval))
+                    .build();
+        }
+
+        private long keyCount() {
+            // expired buckets are only removed by the maintenance of the cache
+            arrivalTimes.cleanUp();
+            return arrivalTimes.estimatedSize();
+        }
+
+        private boolean tryAcquire(final @NotNull K key) {
+            final var now = nanoClock.getAsLong();
+            final var arrivalTime = arrivalTimes.get(key, k -> new AtomicLong(now));
+            while (true) {
+                final var theoreticalArrivalTime = arrivalTime.get();
+                // nano times may overflow, so they are only compared by their difference
+                final var base = theoreticalArrivalTime - now > 0 ? theoreticalArrivalTime : now;
+                if (base - now > tolerance) {
+                    return false;
+                }
+                if (arrivalTime.compareAndSet(theoreticalArrivalTime, base + emissionInterval)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
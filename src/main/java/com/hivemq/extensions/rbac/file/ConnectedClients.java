@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The connected clients of the users, so the sessions of a user can be revoked when the credentials configuration
+ * changes.
+ * <p>
+ * The authenticator adds a connection as soon as it authenticated it, so a reload right after the authentication does
+ * not miss it, and the disconnect of the client removes it. A connection is only removed by its own disconnect, so
+ * the disconnect of a connection that was taken over does not remove the connection that took it over.
+ */
+@ThreadSafe
+class ConnectedClients {
+
+    // the connection ids by client identifier by username, an entry is removed with its last client
+    private final @NotNull ConcurrentHashMap<String, ConcurrentHashMap<String, Long>> clientsByUser =
+            new ConcurrentHashMap<>();
+
+    /**
+     * @param clientId   the client identifier of the connection
+     * @param connection the connection that was authenticated
+     */
+    void authenticated(final @NotNull String clientId, final @NotNull AuthenticatedConnection connection) {
+        clientsByUser.compute(connection.getUserName(), (userName, clients) -> {
+            final var userClients = clients == null ? new ConcurrentHashMap<String, Long>() : clients;
+            userClients.put(clientId, connection.getId());
+            return userClients;
+        });
+    }
+
+    /**
+     * @param clientId   the client identifier of the connection
+     * @param connection the connection that disconnected
+     */
+    void disconnected(final @NotNull String clientId, final @NotNull AuthenticatedConnection connection) {
+        clientsByUser.computeIfPresent(connection.getUserName(), (userName, clients) -> {
+            clients.remove(clientId, connection.getId());
+            return clients.isEmpty() ? null : clients;
+        });
+    }
+
+    /**
+     * @param  userName the username
+     * @return          the connection ids of the connected clients of the user by client identifier
+     */
+    @NotNull Map<String, Long> getClients(final @NotNull String userName) {
+        final var clients = clientsByUser.get(userName);
+        return clients == null ? Map.of() : Collections.unmodifiableMap(clients);
+    }
+
+    /**
+     * @param  userName     the username
+     * @param  clientId     the client identifier
+     * @param  connectionId the id of the connection
+     * @return              true if the connection is still connected
+     */
+    boolean isConnected(final @NotNull String userName, final @NotNull String clientId, final long connectionId) {
+        final var clients = clientsByUser.get(userName);
+        if (clients == null) {
+            return false;
+        }
+        final var currentConnectionId = clients.get(clientId);
+        return currentConnectionId != null && currentConnectionId == connectionId;
+    }
+
+    int getUserCount() {
+        return clientsByUser.size();
+    }
+}
@@ -27,4 +27,8 @@ public class ExtensionConstants {
 
     public static final @NotNull String CREDENTIALS_LEGACY_LOCATION = "credentials.xml";
     public static final @NotNull String CREDENTIALS_LOCATION = "conf/credentials.xml";
+    // resolved next to the credentials file, each XML file in it holds a part of the users and roles
+    public static final @NotNull String CREDENTIALS_SHARDS_DIRECTORY = "credentials.d";
+    // resolved next to the credentials file, a binary copy of the parsed credentials files
+    public static final @NotNull String CREDENTIALS_SNAPSHOT = "credentials.snapshot";
 }
@@ -16,38 +16,67 @@
 
 package com.hivemq.extensions.rbac.file;
 
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
 import com.hivemq.extension.sdk.api.auth.SimpleAuthenticator;
 import com.hivemq.extension.sdk.api.auth.parameter.SimpleAuthInput;
 import com.hivemq.extension.sdk.api.auth.parameter.SimpleAuthOutput;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+import com.hivemq.extension.sdk.api.client.parameter.Listener;
 import com.hivemq.extension.sdk.api.packets.auth.DefaultAuthorizationBehaviour;
 import com.hivemq.extension.sdk.api.packets.connect.ConnackReasonCode;
 import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
 import com.hivemq.extensions.rbac.file.utils.CredentialsValidator;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
 
 class FileAuthAuthenticator implements SimpleAuthenticator {
 
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(FileAuthAuthenticator.class);
+
     private final @NotNull CredentialsValidator credentialsValidator;
     private final @NotNull ExtensionConfig extensionConfig;
+    // null if the async authentication is disabled
+    private final @Nullable AuthenticationExecutor authenticationExecutor;
+    // null if no rate limit is enabled
+    private final @Nullable ConnectRateLimiter connectRateLimiter;
+    // null if the permissions are passed to the broker as default permissions
+    private final @Nullable TopicTrieAuthorizer topicTrieAuthorizer;
+    // null if sessions are not revoked
+    private final @Nullable ConnectedClients connectedClients;
+    private final @NotNull ConnectMetrics connectMetrics;
 
     FileAuthAuthenticator(
             final @NotNull CredentialsValidator credentialsValidator,
-            final @NotNull ExtensionConfig extensionConfig) {
+            final @NotNull ExtensionConfig extensionConfig,
+            final @Nullable AuthenticationExecutor authenticationExecutor,
+            final @Nullable ConnectRateLimiter connectRateLimiter,
+            final @Nullable TopicTrieAuthorizer topicTrieAuthorizer,
+            final @Nullable ConnectedClients connectedClients,
+            final @NotNull ConnectMetrics connectMetrics) {
         this.credentialsValidator = credentialsValidator;
         this.extensionConfig = extensionConfig;
+        this.authenticationExecutor = authenticationExecutor;
+        this.connectRateLimiter = connectRateLimiter;
+        this.topicTrieAuthorizer = topicTrieAuthorizer;
+        this.connectedClients = connectedClients;
+        this.connectMetrics = connectMetrics;
     }
 
     @Override
     public void onConnect(
             final @NotNull SimpleAuthInput simpleAuthInput,
             final @NotNull SimpleAuthOutput simpleAuthOutput) {
-        final var nextExtensionInsteadOfFail = extensionConfig.isNextExtensionInsteadOfFail();
+        final var startNanos = connectMetrics.start();
         final var listenerNames = extensionConfig.getListenerNames();
-        final var connectedListenerOptional = simpleAuthInput.getConnectionInformation().getListener();
-        if (listenerNames != null && !listenerNames.isEmpty() && connectedListenerOptional.isPresent()) {
-            final var connectedListenerName = connectedListenerOptional.get().getName();
+        final var connectedListenerName =
+                simpleAuthInput.getConnectionInformation().getListener().map(Listener::getName).orElse(null);
+        if (listenerNames != null && !listenerNames.isEmpty() && connectedListenerName != null) {
             if (!listenerNames.contains(connectedListenerName)) {
-                simpleAuthOutput.nextExtensionOrDefault();
+                nextExtension(connectedListenerName, startNanos, simpleAuthOutput);
                 return;
             }
         }
@@ -56,11 +85,10 @@ class FileAuthAuthenticator implements SimpleAuthenticator {
         final var passwordOptional = simpleAuthInput.getConnectPacket().getPassword();
         if (userNameOptional.isEmpty() || passwordOptional.isEmpty()) {
             // client is not authenticated
-            if (nextExtensionInsteadOfFail) {
-                simpleAuthOutput.nextExtensionOrDefault();
-                return;
-            }
-            simpleAuthOutput.failAuthentication(ConnackReasonCode.BAD_USER_NAME_OR_PASSWORD,
+            reject(connectedListenerName,
+                    startNanos,
+                    simpleAuthOutput,
+                    ConnackReasonCode.BAD_USER_NAME_OR_PASSWORD,
                     "Authentication failed because username or password are missing");
             return;
         }
@@ -69,41 +97,196 @@ class FileAuthAuthenticator implements SimpleAuthenticator {
         final var clientId = simpleAuthInput.getClientInformation().getClientId();
         if (clientId.contains("#") || clientId.contains("+")) {
             // client is not authenticated
-            if (nextExtensionInsteadOfFail) {
-                simpleAuthOutput.nextExtensionOrDefault();
-                return;
-            }
-            simpleAuthOutput.failAuthentication(ConnackReasonCode.CLIENT_IDENTIFIER_NOT_VALID,
+            reject(connectedListenerName,
+                    startNanos,
+                    simpleAuthOutput,
+                    ConnackReasonCode.CLIENT_IDENTIFIER_NOT_VALID,
                     "The characters '#' and '+' are not allowed in the client identifier");
             return;
         }
         // prevent usernames with MQTT wildcard characters
         if (userName.contains("#") || userName.contains("+")) {
             // client is not authenticated
-            if (nextExtensionInsteadOfFail) {
-                simpleAuthOutput.nextExtensionOrDefault();
-                return;
-            }
-            simpleAuthOutput.failAuthentication(ConnackReasonCode.BAD_USER_NAME_OR_PASSWORD,
+            reject(connectedListenerName,
+                    startNanos,
+                    simpleAuthOutput,
+                    ConnackReasonCode.BAD_USER_NAME_OR_PASSWORD,
                     "The characters '#' and '+' are not allowed in the username");
             return;
         }
-        // check if we have any roles for username/password combination
-        final var roles = credentialsValidator.getRoles(userName, passwordOptional.get());
-        if (roles == null || roles.isEmpty()) {
-            // username/password combination is unknown or has invalid roles
-            if (nextExtensionInsteadOfFail) {
-                simpleAuthOutput.nextExtensionOrDefault();
+        // reject excess attempts before the password is hashed
+        if (connectRateLimiter != null) {
+            final var address = simpleAuthInput.getConnectionInformation().getInetAddress().orElse(null);
+            if (!connectRateLimiter.tryAcquire(userName, address)) {
+                fail(connectedListenerName,
+                        startNanos,
+                        simpleAuthOutput,
+                        ConnackReasonCode.NOT_AUTHORIZED,
+                        "Authentication failed because of too many attempts");
                 return;
             }
-            simpleAuthOutput.failAuthentication(ConnackReasonCode.NOT_AUTHORIZED,
+        }
+        final var connectionAttributeStore = topicTrieAuthorizer == null && connectedClients == null ?
+                null :
+                simpleAuthInput.getConnectionInformation().getConnectionAttributeStore();
+        final var request = new Request(clientId, userName, connectedListenerName, startNanos);
+        if (authenticationExecutor == null) {
+            authenticate(request, passwordOptional.get(), connectionAttributeStore, simpleAuthOutput);
+            return;
+        }
+        // the password hashing is offloaded, the broker fails the authentication if it does not finish in time
+        final var async = simpleAuthOutput.async(authenticationExecutor.getTimeout(),
+                TimeoutFallback.FAILURE,
+                ConnackReasonCode.SERVER_BUSY,
+                "Authentication timed out");
+        final var submitted = authenticationExecutor.submit(() -> {
+            try {
+                authenticate(request, passwordOptional.get(), connectionAttributeStore, simpleAuthOutput);
+            } catch (final RuntimeException e) {
+                // the broker may time out the authentication while the output is used, nothing may escape the worker
+                LOG.warn("Could not complete the authentication of client '{}'. Reason: {}",
+                        request.clientId,
+                        e.getMessage());
+            } finally {
+                async.resume();
+            }
+        }, () -> {
+            timedOut(request);
+            async.resume();
+        });
+        if (!submitted) {
+            fail(connectedListenerName,
+                    startNanos,
+                    simpleAuthOutput,
+                    ConnackReasonCode.SERVER_BUSY,
+                    "Authentication failed because the server is busy");
+            async.resume();
+        }
+    }
+
+    private void authenticate(
+            final @NotNull Request request,
+            final @NotNull ByteBuffer password,
+            final @Nullable ConnectionAttributeStore connectionAttributeStore,
+            final @NotNull SimpleAuthOutput simpleAuthOutput) {
+        if (isTimedOut(request)) {
+            timedOut(request);
+            return;
+        }
+        final var generation = credentialsValidator.getGeneration();
+        // check the username/password combination and resolve the permissions of its roles in one step, so both use
+        // the same credentials configuration
+        final var topicPermissions = credentialsValidator.authenticate(request.clientId, request.userName, password);
+        // the password hashing may outlast the timeout
+        if (isTimedOut(request)) {
+            timedOut(request);
+            return;
+        }
+        if (topicPermissions == null) {
+            // username/password combination is unknown or has invalid roles
+            reject(request.listenerName,
+                    request.startNanos,
+                    simpleAuthOutput,
+                    ConnackReasonCode.NOT_AUTHORIZED,
                     "Authentication failed because of invalid credentials");
             return;
         }
-        // username/password combination is valid and has roles, so we set the default permissions for this client
-        final var topicPermissions = credentialsValidator.getPermissions(clientId, userName, roles);
-        simpleAuthOutput.getDefaultPermissions().addAll(topicPermissions);
+        // username/password combination is valid and has roles, so we set the permissions for this client
+        final var connection = connectionAttributeStore == null ?
+                null :
+                AuthenticatedConnection.store(connectionAttributeStore, request.userName);
+        if (connectedClients != null && connection != null) {
+            // added before the broker completes the authentication, so a reload right afterwards does not miss it
+            connectedClients.authenticated(request.clientId, connection);
+            // a reload during the credential check did not see the connection, so it could not revoke the permissions
+            // that were resolved from the previous configuration
+            if (credentialsValidator.getGeneration() != generation) {
+                connectedClients.disconnected(request.clientId, connection);
+                fail(request.listenerName,
+                        request.startNanos,
+                        simpleAuthOutput,
+                        ConnackReasonCode.SERVER_BUSY,
+                        "Authentication failed because the credentials were reloaded");
+                return;
+            }
+        }
+        if (topicTrieAuthorizer != null && connection != null) {
+            topicTrieAuthorizer.register(connection.getId(), topicPermissions);
+        } else {
+            simpleAuthOutput.getDefaultPermissions().addAll(topicPermissions);
+        }
         simpleAuthOutput.getDefaultPermissions().setDefaultBehaviour(DefaultAuthorizationBehaviour.DENY);
+        connectMetrics.succeeded(request.listenerName, topicPermissions.size(), request.startNanos);
         simpleAuthOutput.authenticateSuccessfully();
     }
+
+    /**
+     * @return true if the broker already failed the async authentication with its timeout fallback
+     */
+    private boolean isTimedOut(final @NotNull Request request) {
+        return authenticationExecutor != null &&
+                connectMetrics.elapsed(request.startNanos) >= authenticationExecutor.getTimeout().toNanos();
+    }
+
+    /**
+     * Records an authentication the broker failed with its timeout fallback. The output is already decided, so it is
+     * not used, and the connection is not registered.
+     */
+    private void timedOut(final @NotNull Request request) {
+        connectMetrics.failed(request.listenerName, ConnackReasonCode.SERVER_BUSY, request.startNanos);
+    }
+
+    /**
+     * Fails the authentication, or passes it to the next extension if configured.
+     */
+    private void reject(
+            final @Nullable String listenerName,
+            final long startNanos,
+            final @NotNull SimpleAuthOutput simpleAuthOutput,
+            final @NotNull ConnackReasonCode reasonCode,
+            final @NotNull String reasonString) {
+        if (extensionConfig.isNextExtensionInsteadOfFail()) {
+            nextExtension(listenerName, startNanos, simpleAuthOutput);
+        } else {
+            fail(listenerName, startNanos, simpleAuthOutput, reasonCode, reasonString);
+        }
+    }
+
+    private void fail(
+            final @Nullable String listenerName,
+            final long startNanos,
+            final @NotNull SimpleAuthOutput simpleAuthOutput,
+            final @NotNull ConnackReasonCode reasonCode,
+            final @NotNull String reasonString) {
+        connectMetrics.failed(listenerName, reasonCode, startNanos);
+        simpleAuthOutput.failAuthentication(reasonCode, reasonString);
+    }
+
+    private void nextExtension(
+            final @Nullable String listenerName,
+            final long startNanos,
+            final @NotNull SimpleAuthOutput simpleAuthOutput) {
+        connectMetrics.nextExtension(listenerName, startNanos);
+        simpleAuthOutput.nextExtensionOrDefault();
+    }
+
+    private static final class Request {
+
+        private final @NotNull String clientId;
+        private final @NotNull String userName;
+        // null if the listener is unknown
+        private final @Nullable String listenerName;
+        private final long startNanos;
+
+        private Request(
+                final @NotNull String clientId,
+                final @NotNull String userName,
+                final @Nullable String listenerName,
+                final long startNanos) {
+            this.clientId = clientId;
+            this.userName = userName;
+            this.listenerName = listenerName;
+            this.startNanos = startNanos;
+        }
+    }
 }
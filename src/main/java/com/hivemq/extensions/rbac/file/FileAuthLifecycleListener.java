@@ -0,0 +1,71 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+import com.hivemq.extension.sdk.api.events.client.ClientLifecycleEventListener;
+import com.hivemq.extension.sdk.api.events.client.parameters.AuthenticationSuccessfulInput;
+import com.hivemq.extension.sdk.api.events.client.parameters.ConnectionStartInput;
+import com.hivemq.extension.sdk.api.events.client.parameters.DisconnectEventInput;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Releases the state the extension keeps for a connection when it disconnects.
+ */
+@ThreadSafe
+class FileAuthLifecycleListener implements ClientLifecycleEventListener {
+
+    // null if the permissions are passed to the broker as default permissions
+    private final @Nullable TopicTrieAuthorizer topicTrieAuthorizer;
+    // null if sessions are not revoked
+    private final @Nullable ConnectedClients connectedClients;
+
+    FileAuthLifecycleListener(
+            final @Nullable TopicTrieAuthorizer topicTrieAuthorizer,
+            final @Nullable ConnectedClients connectedClients) {
+        this.topicTrieAuthorizer = topicTrieAuthorizer;
+        this.connectedClients = connectedClients;
+    }
+
+    @Override
+    public void onMqttConnectionStart(final @NotNull ConnectionStartInput connectionStartInput) {
+    }
+
+    @Override
+    public void onAuthenticationSuccessful(final @NotNull AuthenticationSuccessfulInput authenticationSuccessfulInput) {
+        // the authenticator already added the connection
+    }
+
+    @Override
+    public void onDisconnect(final @NotNull DisconnectEventInput disconnectEventInput) {
+        // also called for failed authentications, connection losses and disconnects by the client or the server
+        final var connectionAttributeStore =
+                disconnectEventInput.getConnectionInformation().getConnectionAttributeStore();
+        final var connection = AuthenticatedConnection.of(connectionAttributeStore);
+        if (connection == null) {
+            // not authenticated by this extension
+            return;
+        }
+        if (topicTrieAuthorizer != null) {
+            topicTrieAuthorizer.unregister(connection.getId());
+        }
+        if (connectedClients != null) {
+            connectedClients.disconnected(disconnectEventInput.getClientInformation().getClientId(), connection);
+        }
+    }
+}
@@ -24,8 +24,10 @@ import com.hivemq.extension.sdk.api.parameter.ExtensionStopOutput;
 import com.hivemq.extension.sdk.api.services.Services;
 import com.hivemq.extensions.rbac.file.configuration.CredentialsConfiguration;
 import com.hivemq.extensions.rbac.file.configuration.ExtensionConfiguration;
+import com.hivemq.extensions.rbac.file.configuration.entities.AuthorizationMode;
 import com.hivemq.extensions.rbac.file.utils.CredentialsValidator;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +36,9 @@ public class FileAuthMain implements ExtensionMain {
 
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(FileAuthMain.class);
 
+    private @Nullable AuthenticationExecutor authenticationExecutor;
+    private @Nullable CredentialsConfiguration credentialsConfiguration;
+
     @Override
     public void extensionStart(
             final @NotNull ExtensionStartInput extensionStartInput,
@@ -45,8 +50,10 @@ public class FileAuthMain implements ExtensionMain {
 
             final var credentialsConfiguration = new CredentialsConfiguration(extensionHome,
                     Services.extensionExecutorService(),
-                    extensionConfiguration.getExtensionConfig());
+                    extensionConfiguration.getExtensionConfig(),
+                    Services.metricRegistry());
             credentialsConfiguration.init();
+            this.credentialsConfiguration = credentialsConfiguration;
 
             final var credentialsValidator = new CredentialsValidator(credentialsConfiguration,
                     extensionConfiguration.getExtensionConfig(),
@@ -54,8 +61,41 @@ public class FileAuthMain implements ExtensionMain {
             credentialsValidator.init();
 
             final var extensionConfig = extensionConfiguration.getExtensionConfig();
+            if (extensionConfig.isAsyncAuthentication()) {
+                authenticationExecutor = new AuthenticationExecutor(extensionConfig, Services.metricRegistry());
+            }
+            final var connectRateLimiter = ConnectRateLimiter.isEnabled(extensionConfig) ?
+                    new ConnectRateLimiter(extensionConfig, Services.metricRegistry()) :
+                    null;
+            final var topicTrieAuthorizer = extensionConfig.getAuthorizationMode() == AuthorizationMode.TOPIC_TRIE ?
+                    new TopicTrieAuthorizer(Services.metricRegistry()) :
+                    null;
+            final var connectedClients = extensionConfig.isRevokeSessions() ? new ConnectedClients() : null;
+            if (connectedClients != null) {
+                // registered after the validator, so reconnecting clients already get the new permissions
+                credentialsConfiguration.addReloadCallback(new SessionRevoker(connectedClients,
+                        Services.clientService(),
+                        Services.extensionExecutorService(),
+                        extensionConfig.getRevocationBatchSize(),
+                        Services.metricRegistry(),
+                        System::nanoTime));
+            }
             Services.securityRegistry()
-                    .setAuthenticatorProvider(new FileAuthenticatorProvider(credentialsValidator, extensionConfig));
+                    .setAuthenticatorProvider(new FileAuthenticatorProvider(credentialsValidator,
+                            extensionConfig,
+                            authenticationExecutor,
+                            connectRateLimiter,
+                            topicTrieAuthorizer,
+                            connectedClients,
+                            new ConnectMetrics(extensionConfig, Services.metricRegistry())));
+            if (topicTrieAuthorizer != null) {
+                // the authorizer is thread-safe and shared between all clients
+                Services.securityRegistry().setAuthorizerProvider(input -> topicTrieAuthorizer);
+            }
+            if (topicTrieAuthorizer != null || connectedClients != null) {
+                final var lifecycleListener = new FileAuthLifecycleListener(topicTrieAuthorizer, connectedClients);
+                Services.eventRegistry().setClientLifecycleEventListener(input -> lifecycleListener);
+            }
         } catch (final Exception e) {
             LOG.error("Exception thrown at extension start: ", e);
         }
@@ -66,5 +106,11 @@ public class FileAuthMain implements ExtensionMain {
             final @NotNull ExtensionStopInput extensionStopInput,
             final @NotNull ExtensionStopOutput extensionStopOutput) {
         LOG.info("Stopping File RBAC extension.");
+        if (credentialsConfiguration != null) {
+            credentialsConfiguration.stop();
+        }
+        if (authenticationExecutor != null) {
+            authenticationExecutor.shutdown();
+        }
     }
 }
@@ -30,8 +30,19 @@ class FileAuthenticatorProvider implements AuthenticatorProvider {
 
     FileAuthenticatorProvider(
             final @NotNull CredentialsValidator credentialsValidator,
-            final @NotNull ExtensionConfig extensionConfig) {
-        this.authenticator = new FileAuthAuthenticator(credentialsValidator, extensionConfig);
+            final @NotNull ExtensionConfig extensionConfig,
+            final @Nullable AuthenticationExecutor authenticationExecutor,
+            final @Nullable ConnectRateLimiter connectRateLimiter,
+            final @Nullable TopicTrieAuthorizer topicTrieAuthorizer,
+            final @Nullable ConnectedClients connectedClients,
+            final @NotNull ConnectMetrics connectMetrics) {
+        this.authenticator = new FileAuthAuthenticator(credentialsValidator,
+                extensionConfig,
+                authenticationExecutor,
+                connectRateLimiter,
+                topicTrieAuthorizer,
+                connectedClients,
+                connectMetrics);
     }
 
     @Override
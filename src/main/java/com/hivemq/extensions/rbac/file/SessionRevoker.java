@@ -0,0 +1,203 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+import com.hivemq.extension.sdk.api.services.session.ClientService;
+import com.hivemq.extensions.rbac.file.configuration.ConfigDiff;
+import com.hivemq.extensions.rbac.file.configuration.CredentialsConfiguration;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import com.hivemq.extensions.rbac.file.utils.Metrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Disconnects the clients of users whose credentials or permissions were revoked by a reload of the credentials
+ * configuration, as connected clients keep the permissions they got when they connected.
+ * <p>
+ * A user is revoked if it was removed, its password changed, it lost a role, or a permission was removed from one of
+ * its roles. Only granting permissions does not disconnect any client. The clients are disconnected in batches, the
+ * next batch starts when all disconnects of the previous batch completed, so a mass revocation does not stall the
+ * broker.
+ */
+@ThreadSafe
+class SessionRevoker implements CredentialsConfiguration.ReloadCallback {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(SessionRevoker.class);
+
+    static final @NotNull String REVOKED = Metrics.PREFIX + "sessions.revoked";
+    static final @NotNull String REVOCATION_LATENCY = Metrics.PREFIX + "sessions.revocation.latency";
+    static final @NotNull String CONNECTED_USERS = Metrics.PREFIX + "sessions.connected-users";
+
+    private final @NotNull ConnectedClients connectedClients;
+    private final @NotNull ClientService clientService;
+    private final @NotNull Executor executor;
+    private final int batchSize;
+    private final @NotNull LongSupplier nanoTime;
+    private final @NotNull Counter revoked;
+    private final @NotNull Timer revocationLatency;
+
+    SessionRevoker(
+            final @NotNull ConnectedClients connectedClients,
+            final @NotNull ClientService clientService,
+            final @NotNull Executor executor,
+            final int batchSize,
+            final @NotNull MetricRegistry metricRegistry,
+            final @NotNull LongSupplier nanoTime) {
+        this.connectedClients = connectedClients;
+        this.clientService = clientService;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.nanoTime = nanoTime;
+        revoked = metricRegistry.counter(REVOKED);
+        revocationLatency = metricRegistry.timer(REVOCATION_LATENCY);
+        Metrics.registerGauge(metricRegistry, CONNECTED_USERS, (Gauge<Integer>) connectedClients::getUserCount);
+    }
+
+    @Override
+    public void onReload(final @Nullable FileAuthConfig oldConfig, final @NotNull FileAuthConfig newConfig) {
+        onReload(oldConfig, newConfig, ConfigDiff.of(oldConfig, newConfig));
+    }
+
+    @Override
+    public void onReload(
+            final @Nullable FileAuthConfig oldConfig,
+            final @NotNull FileAuthConfig newConfig,
+            final @NotNull ConfigDiff diff) {
+        if (oldConfig == null) {
+            return;
+        }
+        final var reloadNanos = nanoTime.getAsLong();
+        final var sessions = new ArrayList<Session>();
+        for (final var userName : revokedUsers(oldConfig, diff)) {
+            connectedClients.getClients(userName)
+                    .forEach((clientId, connectionId) -> sessions.add(new Session(userName, clientId, connectionId)));
+        }
+        if (sessions.isEmpty()) {
+            return;
+        }
+        LOG.info("Credentials of {} connected clients were revoked, disconnecting them.", sessions.size());
+        revoke(sessions, 0, reloadNanos);
+    }
+
+    /**
+     * @param  oldConfig the previous config
+     * @param  diff      the changes from the previous to the new config
+     * @return           the names of the users whose credentials or permissions were revoked
+     */
+    static @NotNull Set<String> revokedUsers(final @NotNull FileAuthConfig oldConfig, final @NotNull ConfigDiff diff) {
+        final var revokedUsers = new HashSet<>(diff.getRemovedUsers());
+        final var revokedRoles = new HashSet<>(diff.getRemovedRoles());
+        if (!diff.getChangedRoles().isEmpty()) {
+            final var oldRoles = new HashMap<String, Role>();
+            for (final var role : Objects.requireNonNull(oldConfig.getRoles())) {
+                oldRoles.put(role.getId(), role);
+            }
+            for (final var role : diff.getChangedRoles()) {
+                final var oldRole = Objects.requireNonNull(oldRoles.get(role.getId()));
+                if (!Objects.requireNonNull(role.getPermissions())
+                        .containsAll(Objects.requireNonNull(oldRole.getPermissions()))) {
+                    revokedRoles.add(role.getId());
+                }
+            }
+        }
+        if (diff.getChangedUsers().isEmpty() && revokedRoles.isEmpty()) {
+            return revokedUsers;
+        }
+        final var changedUsers = new HashMap<String, User>();
+        for (final var user : diff.getChangedUsers()) {
+            changedUsers.put(user.getName(), user);
+        }
+        for (final var oldUser : Objects.requireNonNull(oldConfig.getUsers())) {
+            final var oldRoles = Objects.requireNonNull(oldUser.getRoles());
+            final var user = changedUsers.get(oldUser.getName());
+            if (user != null &&
+                    (!Objects.equals(user.getPassword(), oldUser.getPassword()) ||
+                            !Objects.requireNonNull(user.getRoles()).containsAll(oldRoles))) {
+                revokedUsers.add(oldUser.getName());
+            } else if (!revokedRoles.isEmpty()) {
+                for (final var role : oldRoles) {
+                    if (revokedRoles.contains(role)) {
+                        revokedUsers.add(oldUser.getName());
+                        break;
+                    }
+                }
+            }
+        }
+        return revokedUsers;
+    }
+
+    private void revoke(final @NotNull List<Session> sessions, final int start, final long reloadNanos) {
+        final var end = Math.min(start + batchSize, sessions.size());
+        final var disconnects = new ArrayList<CompletableFuture<Boolean>>(end - start);
+        for (final var session : sessions.subList(start, end)) {
+            // the client may have reconnected since the reload, then it already has the new permissions. This is only
+            // best effort: the disconnect is by client identifier, so a client that reconnects between this check and
+            // the disconnect is disconnected anyway and connects again with the new permissions
+            if (!connectedClients.isConnected(session.userName, session.clientId, session.connectionId)) {
+                continue;
+            }
+            disconnects.add(clientService.disconnectClient(session.clientId).whenComplete((disconnected, throwable) -> {
+                if (throwable != null) {
+                    LOG.warn("Disconnecting client '{}' with revoked credentials failed. Reason: {}",
+                            session.clientId,
+                            throwable.getMessage());
+                } else if (Boolean.TRUE.equals(disconnected)) {
+                    revoked.inc();
+                    revocationLatency.update(nanoTime.getAsLong() - reloadNanos, TimeUnit.NANOSECONDS);
+                }
+            }));
+        }
+        if (end == sessions.size()) {
+            return;
+        }
+        CompletableFuture.allOf(disconnects.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, throwable) -> executor.execute(() -> revoke(sessions, end, reloadNanos)));
+    }
+
+    private static final class Session {
+
+        private final @NotNull String userName;
+        private final @NotNull String clientId;
+        private final long connectionId;
+
+        private Session(final @NotNull String userName, final @NotNull String clientId, final long connectionId) {
+            this.userName = userName;
+            this.clientId = clientId;
+            this.connectionId = connectionId;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+import com.hivemq.extension.sdk.api.auth.PublishAuthorizer;
+import com.hivemq.extension.sdk.api.auth.SubscriptionAuthorizer;
+import com.hivemq.extension.sdk.api.auth.parameter.PublishAuthorizerInput;
+import com.hivemq.extension.sdk.api.auth.parameter.PublishAuthorizerOutput;
+import com.hivemq.extension.sdk.api.auth.parameter.SubscriptionAuthorizerInput;
+import com.hivemq.extension.sdk.api.auth.parameter.SubscriptionAuthorizerOutput;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+import com.hivemq.extensions.rbac.file.utils.Metrics;
+import com.hivemq.extensions.rbac.file.utils.TopicPermissionTrie;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Authorizes the PUBLISH and SUBSCRIBE of the authenticated clients with a {@link TopicPermissionTrie} instead of
+ * default permissions, which the broker matches one after another.
+ * <p>
+ * The authenticator registers the permissions of a connection by the id of its {@link AuthenticatedConnection},
+ * which the connection keeps in its connection attribute store until it disconnects. Equal permission lists are
+ * shared by the clients of a static role combination and by the permissions cache, so their tries are shared too.
+ */
+@ThreadSafe
+class TopicTrieAuthorizer implements PublishAuthorizer, SubscriptionAuthorizer {
+
+    static final @NotNull String CONNECTIONS = Metrics.PREFIX + "authorizer.connections";
+    static final @NotNull String TRIES = Metrics.PREFIX + "authorizer.tries";
+
+    private final @NotNull ConcurrentHashMap<Long, TopicPermissionTrie> connections = new ConcurrentHashMap<>();
+    // weak keys are compared by identity, a trie is compiled at most once per permission list
+    private final @NotNull Cache<List<TopicPermission>, TopicPermissionTrie> tries =
+            Caffeine.newBuilder().weakKeys().build();
+
+    TopicTrieAuthorizer(final @NotNull MetricRegistry metricRegistry) {
+        Metrics.registerGauge(metricRegistry, CONNECTIONS, (Gauge<Integer>) connections::size);
+        Metrics.registerGauge(metricRegistry, TRIES, (Gauge<Long>) tries::estimatedSize);
+    }
+
+    /**
+     * Registers the permissions of an authenticated connection.
+     *
+     * @param connectionId the id of the connection
+     * @param permissions  the permissions of the client
+     */
+    void register(final long connectionId, final @NotNull List<TopicPermission> permissions) {
+        connections.put(connectionId, tries.get(permissions, TopicPermissionTrie::compile));
+    }
+
+    /**
+     * Removes the permissions of a connection that disconnected.
+     *
+     * @param connectionId the id of the connection
+     */
+    void unregister(final long connectionId) {
+        connections.remove(connectionId);
+    }
+
+    @Override
+    public void authorizePublish(
+            final @NotNull PublishAuthorizerInput publishAuthorizerInput,
+            final @NotNull PublishAuthorizerOutput publishAuthorizerOutput) {
+        final var trie = getTrie(publishAuthorizerInput.getConnectionInformation().getConnectionAttributeStore());
+        if (trie == null) {
+            // not authenticated by this extension
+            publishAuthorizerOutput.nextExtensionOrDefault();
+            return;
+        }
+        final var publishPacket = publishAuthorizerInput.getPublishPacket();
+        if (trie.allowsPublish(publishPacket.getTopic(),
+                publishPacket.getQos().getQosNumber(),
+                publishPacket.getRetain())) {
+            publishAuthorizerOutput.authorizeSuccessfully();
+        } else {
+            publishAuthorizerOutput.failAuthorization();
+        }
+    }
+
+    @Override
+    public void authorizeSubscribe(
+            final @NotNull SubscriptionAuthorizerInput subscriptionAuthorizerInput,
+            final @NotNull SubscriptionAuthorizerOutput subscriptionAuthorizerOutput) {
+        final var trie =
+                getTrie(subscriptionAuthorizerInput.getConnectionInformation().getConnectionAttributeStore());
+        if (trie == null) {
+            // not authenticated by this extension
+            subscriptionAuthorizerOutput.nextExtensionOrDefault();
+            return;
+        }
+        final var subscription = subscriptionAuthorizerInput.getSubscription();
+        if (trie.allowsSubscription(subscription.getTopicFilter(), subscription.getQos().getQosNumber())) {
+            subscriptionAuthorizerOutput.authorizeSuccessfully();
+        } else {
+            subscriptionAuthorizerOutput.failAuthorization();
+        }
+    }
+
+    private @Nullable TopicPermissionTrie getTrie(final @NotNull ConnectionAttributeStore connectionAttributeStore) {
+        final var connectionId = AuthenticatedConnection.id(connectionAttributeStore);
+        return connectionId == null ? null : connections.get(connectionId);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * The users and roles that were added, removed or changed between two credentials configurations.
+ * <p>
+ * Users are identified by their name and roles by their id, a user or role is changed if any of its values differ.
+ */
+@Immutable
+public class ConfigDiff {
+
+    private final @NotNull List<User> addedUsers;
+    private final @NotNull List<User> changedUsers;
+    private final @NotNull List<String> removedUsers;
+    private final @NotNull List<Role> addedRoles;
+    private final @NotNull List<Role> changedRoles;
+    private final @NotNull List<String> removedRoles;
+
+    private ConfigDiff(
+            final @NotNull Changes<User> users,
+            final @NotNull Changes<Role> roles) {
+        this.addedUsers = unmodifiableList(users.added);
+        this.changedUsers = unmodifiableList(users.changed);
+        this.removedUsers = unmodifiableList(users.removed);
+        this.addedRoles = unmodifiableList(roles.added);
+        this.changedRoles = unmodifiableList(roles.changed);
+        this.removedRoles = unmodifiableList(roles.removed);
+    }
+
+    /**
+     * @param  oldConfig the previous validated config or null if there was none, then everything is added
+     * @param  newConfig the new validated config
+     * @return           the changes from the old to the new config
+     */
+    public static @NotNull ConfigDiff of(
+            final @Nullable FileAuthConfig oldConfig,
+            final @NotNull FileAuthConfig newConfig) {
+        return new ConfigDiff(//
+                diff(oldConfig == null ? null : oldConfig.getUsers(), newConfig.getUsers(), User::getName),
+                diff(oldConfig == null ? null : oldConfig.getRoles(), newConfig.getRoles(), Role::getId));
+    }
+
+    private static <T> @NotNull Changes<T> diff(
+            final @Nullable List<T> oldEntries,
+            final @Nullable List<T> newEntries,
+            final @NotNull Function<T, String> key) {
+        final var changes = new Changes<T>();
+        final var remaining = new HashMap<String, T>();
+        if (oldEntries != null) {
+            for (final var entry : oldEntries) {
+                remaining.put(key.apply(entry), entry);
+            }
+        }
+        if (newEntries != null) {
+            for (final var entry : newEntries) {
+                final var oldEntry = remaining.remove(key.apply(entry));
+                if (oldEntry == null) {
+                    changes.added.add(entry);
+                } else if (!oldEntry.equals(entry)) {
+                    changes.changed.add(entry);
+                }
+            }
+        }
+        changes.removed.addAll(remaining.keySet());
+        return changes;
+    }
+
+    public @NotNull List<User> getAddedUsers() {
+        return addedUsers;
+    }
+
+    /**
+     * @return the new values of the changed users
+     */
+    public @NotNull List<User> getChangedUsers() {
+        return changedUsers;
+    }
+
+    /**
+     * @return the names of the removed users
+     */
+    public @NotNull List<String> getRemovedUsers() {
+        return removedUsers;
+    }
+
+    public @NotNull List<Role> getAddedRoles() {
+        return addedRoles;
+    }
+
+    /**
+     * @return the new values of the changed roles
+     */
+    public @NotNull List<Role> getChangedRoles() {
+        return changedRoles;
+    }
+
+    /**
+     * @return the ids of the removed roles
+     */
+    public @NotNull List<String> getRemovedRoles() {
+        return removedRoles;
+    }
+
+    /**
+     * @return true if no user or role was added, removed or changed
+     */
+    public boolean isEmpty() {
+        return addedUsers.isEmpty() &&
+                changedUsers.isEmpty() &&
+                removedUsers.isEmpty() &&
+                addedRoles.isEmpty() &&
+                changedRoles.isEmpty() &&
+                removedRoles.isEmpty();
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "ConfigDiff{" + "addedUsers=" + addedUsers.size() + ", changedUsers=" + changedUsers.size() +
+                ", removedUsers=" + removedUsers.size() + ", addedRoles=" + addedRoles.size() + ", changedRoles=" +
+                changedRoles.size() + ", removedRoles=" + removedRoles.size() + '}';
+    }
+
+    private static final class Changes<T> {
+
+        private final @NotNull List<T> added = new ArrayList<>();
+        private final @NotNull List<T> changed = new ArrayList<>();
+        private final @NotNull List<String> removed = new ArrayList<>();
+    }
+}
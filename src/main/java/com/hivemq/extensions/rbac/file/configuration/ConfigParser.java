@@ -16,6 +16,7 @@
 
 package com.hivemq.extensions.rbac.file.configuration;
 
+import com.hivemq.extensions.rbac.file.configuration.entities.CredentialsParser;
 import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
 import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
 import org.jetbrains.annotations.NotNull;
@@ -31,7 +32,8 @@ class ConfigParser {
 
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(ConfigParser.class);
 
-    private final @NotNull XmlParser xmlParser = new XmlParser();
+    private final @NotNull XmlParser xmlParser = XmlParser.shared();
+    private final @NotNull StreamingConfigParser streamingConfigParser = new StreamingConfigParser();
     private final @NotNull ExtensionConfig extensionConfig;
 
     ConfigParser(final @NotNull ExtensionConfig extensionConfig) {
@@ -43,24 +45,44 @@ class ConfigParser {
      * @return      the new config based on the file contents or null if the config is invalid
      */
     @Nullable FileAuthConfig read(final @NotNull Path file) {
+        final var config = parse(file);
+        return config == null ? null : validate(config);
+    }
+
+    /**
+     * Reads a config file without validating it, as a shard of the credentials may hold only users or only roles.
+     *
+     * @param  file the config file to read.
+     * @return      the config based on the file contents or null if the file can not be read
+     */
+    @Nullable FileAuthConfig parse(final @NotNull Path file) {
         if (!Files.isReadable(file)) {
             LOG.error("Unable to read configuration file {}", file);
             return null;
         }
         try {
-            final var config = xmlParser.unmarshalFileAuthConfig(file);
-            final var validationResult = ConfigCredentialsValidator.validateConfig(extensionConfig, config);
-            if (validationResult.isValidationSuccessful()) {
-                return config;
-            }
-            logConfigFileErrors(validationResult);
-            return null;
+            return extensionConfig.getCredentialsParser() == CredentialsParser.STAX ?
+                    streamingConfigParser.parse(file) :
+                    xmlParser.unmarshalFileAuthConfig(file);
         } catch (final IOException e) {
             LOG.error("Could not read configuration file, reason: {}", e.getMessage());
             return null;
         }
     }
 
+    /**
+     * @param  config the config to validate
+     * @return        the config or null if the config is invalid
+     */
+    @Nullable FileAuthConfig validate(final @NotNull FileAuthConfig config) {
+        final var validationResult = ConfigCredentialsValidator.validateConfig(extensionConfig, config);
+        if (validationResult.isValidationSuccessful()) {
+            return config;
+        }
+        logConfigFileErrors(validationResult);
+        return null;
+    }
+
     private void logConfigFileErrors(final ConfigCredentialsValidator.ValidationResult validationResult) {
         final var errorMessage = new StringBuilder();
         for (final String error : validationResult.getErrors()) {
@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Supplier;
 
@@ -64,4 +65,12 @@ public class ConfigResolver implements Supplier<Path> {
         }
         return extensionXmlPath;
     }
+
+    /**
+     * @return all locations the config may be placed at, the legacy location last.
+     */
+    public @NotNull List<Path> getLocations() {
+        return List.of(extensionHome.resolve(location).toAbsolutePath(),
+                extensionHome.resolve(legacyLocation).toAbsolutePath());
+    }
 }
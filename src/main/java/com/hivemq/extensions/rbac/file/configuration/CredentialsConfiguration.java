@@ -16,20 +16,26 @@
 
 package com.hivemq.extensions.rbac.file.configuration;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
 import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
 import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.ReloadMode;
+import com.hivemq.extensions.rbac.file.utils.Metrics;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -43,6 +49,21 @@ public class CredentialsConfiguration {
 
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(CredentialsConfiguration.class);
 
+    static final @NotNull String RELOADS_APPLIED = Metrics.PREFIX + "credentials.reloads.applied";
+    static final @NotNull String RELOADS_SKIPPED = Metrics.PREFIX + "credentials.reloads.skipped";
+    static final @NotNull String RELOADS_REJECTED = Metrics.PREFIX + "credentials.reloads.rejected";
+    static final @NotNull String RELOAD_PARSE_TIME = Metrics.PREFIX + "credentials.reload.parse";
+    static final @NotNull String RELOAD_VALIDATE_TIME = Metrics.PREFIX + "credentials.reload.validate";
+    static final @NotNull String RELOAD_ARCHIVE_TIME = Metrics.PREFIX + "credentials.reload.archive";
+    static final @NotNull String RELOAD_CALLBACKS_TIME = Metrics.PREFIX + "credentials.reload.callbacks";
+    static final @NotNull String GENERATION = Metrics.PREFIX + "credentials.generation";
+    static final @NotNull String LOADED_AT = Metrics.PREFIX + "credentials.loaded-at";
+    static final @NotNull String USERS = Metrics.PREFIX + "credentials.users";
+    static final @NotNull String ROLES = Metrics.PREFIX + "credentials.roles";
+    static final @NotNull String PERMISSIONS = Metrics.PREFIX + "credentials.permissions";
+
+    private static final long WATCH_INTERVAL_MILLIS = 100;
+
     private final @NotNull ReadWriteLock lock = new ReentrantReadWriteLock();
 
     // COWAL is perfect here because the callbacks are not expected to change regularly.
@@ -50,9 +71,13 @@ public class CredentialsConfiguration {
     // Modifications are only possible via this class.
     private final @NotNull List<ReloadCallback> callbacks = new CopyOnWriteArrayList<>();
 
-    private final @NotNull ConfigParser configParser;
+    private final @NotNull ReloadConfigFileTask reloadableTask;
+
+    private final @NotNull ScheduledFuture<?> reloadFuture;
+
+    private @Nullable CredentialsWatcher credentialsWatcher;
 
-    private final @NotNull ConfigResolver credentialsResolver;
+    private @Nullable ScheduledFuture<?> watchFuture;
 
     // guarded by lock
     private @Nullable FileAuthConfig config;
@@ -60,23 +85,54 @@ public class CredentialsConfiguration {
     public CredentialsConfiguration(
             final @NotNull Path extensionHome,
             final @NotNull ScheduledExecutorService extensionExecutorService,
-            final @NotNull ExtensionConfig extensionConfig) {
-        this.credentialsResolver = new ConfigResolver(extensionHome, CREDENTIALS_LOCATION, CREDENTIALS_LEGACY_LOCATION);
-        this.configParser = new ConfigParser(extensionConfig);
-        final var reloadableTask = new ReloadConfigFileTask(//
+            final @NotNull ExtensionConfig extensionConfig,
+            final @NotNull MetricRegistry metricRegistry) {
+        final var credentialsResolver =
+                new ConfigResolver(extensionHome, CREDENTIALS_LOCATION, CREDENTIALS_LEGACY_LOCATION);
+        final var credentialsSources = new CredentialsSources(credentialsResolver,
+                new ConfigParser(extensionConfig),
+                extensionConfig.isCredentialsSnapshot());
+        reloadableTask = new ReloadConfigFileTask(//
                 unmodifiableList(callbacks) /* We don't want the task to modify the callbacks! */,
-                configParser,
-                new ConfigArchiver(extensionHome, new XmlParser()),
+                credentialsSources,
+                new ConfigArchiver(extensionHome, XmlParser.shared()),
                 this,
-                credentialsResolver);
-        extensionExecutorService.scheduleWithFixedDelay(reloadableTask,
+                metricRegistry);
+        Metrics.registerGauge(metricRegistry, GENERATION, (Gauge<Long>) reloadableTask::getGeneration);
+        Metrics.registerGauge(metricRegistry, LOADED_AT, (Gauge<Long>) reloadableTask::getLoadedAt);
+        Metrics.registerGauge(metricRegistry, USERS, (Gauge<Integer>) () -> userCount(getCurrentConfig()));
+        Metrics.registerGauge(metricRegistry, ROLES, (Gauge<Integer>) () -> roleCount(getCurrentConfig()));
+        Metrics.registerGauge(metricRegistry,
+                PERMISSIONS,
+                (Gauge<Integer>) () -> permissionCount(getCurrentConfig()));
+        // polling stays active in watch mode as a fallback for file systems that do not report all changes
+        reloadFuture = extensionExecutorService.scheduleWithFixedDelay(reloadableTask,
                 extensionConfig.getReloadInterval(),
                 extensionConfig.getReloadInterval(),
                 TimeUnit.SECONDS);
+        if (extensionConfig.getReloadMode() == ReloadMode.WATCH) {
+            try {
+                credentialsWatcher = new CredentialsWatcher(credentialsResolver.getLocations(),
+                        credentialsSources.getShardDirectories(),
+                        reloadableTask::reload,
+                        extensionConfig.getReloadDebounce(),
+                        System::nanoTime);
+                watchFuture = extensionExecutorService.scheduleWithFixedDelay(credentialsWatcher,
+                        WATCH_INTERVAL_MILLIS,
+                        WATCH_INTERVAL_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            } catch (final IOException | UnsupportedOperationException e) {
+                LOG.warn("Watching the credentials file of the file auth extension is not possible, " +
+                        "falling back to polling every {} seconds. Reason: {}",
+                        extensionConfig.getReloadInterval(),
+                        e.getMessage());
+            }
+        }
     }
 
     public void init() {
-        config = configParser.read(credentialsResolver.get());
+        // read by the task, so the first reload is compared to the same config
+        config = reloadableTask.load();
         if (config == null) {
             LOG.warn("No credentials configuration file for file auth extension available, denying all connections.");
         }
@@ -101,6 +157,47 @@ public class CredentialsConfiguration {
         }
     }
 
+    /**
+     * Stops watching and polling the credentials file for changes.
+     */
+    public void stop() {
+        reloadFuture.cancel(false);
+        if (watchFuture != null) {
+            watchFuture.cancel(false);
+        }
+        if (credentialsWatcher != null) {
+            try {
+                credentialsWatcher.close();
+            } catch (final IOException e) {
+                LOG.debug("Closing the credentials file watcher failed. Reason: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static int userCount(final @Nullable FileAuthConfig config) {
+        return config == null || config.getUsers() == null ? 0 : config.getUsers().size();
+    }
+
+    private static int roleCount(final @Nullable FileAuthConfig config) {
+        return config == null || config.getRoles() == null ? 0 : config.getRoles().size();
+    }
+
+    /**
+     * @return the number of permissions of all roles, as they are configured
+     */
+    private static int permissionCount(final @Nullable FileAuthConfig config) {
+        if (config == null || config.getRoles() == null) {
+            return 0;
+        }
+        var permissionCount = 0;
+        for (final var role : config.getRoles()) {
+            if (role.getPermissions() != null) {
+                permissionCount += role.getPermissions().size();
+            }
+        }
+        return permissionCount;
+    }
+
     /**
      * Adds a reload callback.
      */
@@ -125,64 +222,159 @@ public class CredentialsConfiguration {
          * @param newConfig the new config
          */
         void onReload(@Nullable FileAuthConfig oldConfig, @NotNull FileAuthConfig newConfig);
+
+        /**
+         * A callback that is called when the config changes, with the users and roles that changed.
+         * <p>
+         * Callbacks that keep structures derived from the config can apply only the changes instead of rebuilding
+         * them from the new config.
+         *
+         * @param oldConfig the old config
+         * @param newConfig the new config
+         * @param diff      the changes from the old to the new config
+         */
+        default void onReload(
+                final @Nullable FileAuthConfig oldConfig,
+                final @NotNull FileAuthConfig newConfig,
+                final @NotNull ConfigDiff diff) {
+            onReload(oldConfig, newConfig);
+        }
     }
 
     private static class ReloadConfigFileTask implements Runnable {
 
         private final @NotNull ConfigArchiver configArchiver;
-        private final @NotNull ConfigParser configParser;
+        private final @NotNull CredentialsSources credentialsSources;
         private final @NotNull CredentialsConfiguration credentialsConfiguration;
-        private final @NotNull ConfigResolver configResolver;
         private final @NotNull List<ReloadCallback> callbacks;
+        private final @NotNull Counter appliedReloads;
+        private final @NotNull Counter skippedReloads;
+        private final @NotNull Counter rejectedReloads;
+        private final @NotNull Timer parseTime;
+        private final @NotNull Timer validateTime;
+        private final @NotNull Timer archiveTime;
+        private final @NotNull Timer callbacksTime;
         private @Nullable FileAuthConfig oldConfig;
-        private long lastReadTimestamp;
+        // the number of configs loaded since the start, written by the synchronized methods and read by the gauges
+        private volatile long generation;
+        // epoch millis, 0 if no config was loaded
+        private volatile long loadedAt;
 
         ReloadConfigFileTask(
                 final @NotNull List<ReloadCallback> callbacks,
-                final @NotNull ConfigParser configParser,
+                final @NotNull CredentialsSources credentialsSources,
                 final @NotNull ConfigArchiver configArchiver,
                 final @NotNull CredentialsConfiguration credentialsConfiguration,
-                final @NotNull ConfigResolver configResolver) {
+                final @NotNull MetricRegistry metricRegistry) {
             this.callbacks = callbacks;
-            this.configParser = configParser;
+            this.credentialsSources = credentialsSources;
             this.configArchiver = configArchiver;
             this.credentialsConfiguration = credentialsConfiguration;
-            this.configResolver = configResolver;
-            this.lastReadTimestamp = System.currentTimeMillis();
-            this.oldConfig = configParser.read(configResolver.get());
+            appliedReloads = metricRegistry.counter(RELOADS_APPLIED);
+            skippedReloads = metricRegistry.counter(RELOADS_SKIPPED);
+            rejectedReloads = metricRegistry.counter(RELOADS_REJECTED);
+            parseTime = metricRegistry.timer(RELOAD_PARSE_TIME);
+            validateTime = metricRegistry.timer(RELOAD_VALIDATE_TIME);
+            archiveTime = metricRegistry.timer(RELOAD_ARCHIVE_TIME);
+            callbacksTime = metricRegistry.timer(RELOAD_CALLBACKS_TIME);
+        }
+
+        long getGeneration() {
+            return generation;
+        }
+
+        long getLoadedAt() {
+            return loadedAt;
+        }
+
+        /**
+         * Reads the config files initially.
+         *
+         * @return the config or null if no file exists or the config is invalid
+         */
+        synchronized @Nullable FileAuthConfig load() {
+            try (final var ignored = parseTime.time()) {
+                credentialsSources.refresh();
+            }
+            try (final var ignored = validateTime.time()) {
+                oldConfig = credentialsSources.merge();
+            }
+            if (oldConfig != null) {
+                try (final var ignored = archiveTime.time()) {
+                    credentialsSources.writeSnapshot();
+                }
+                loaded();
+            }
+            return oldConfig;
+        }
+
+        private void loaded() {
+            generation++;
+            loadedAt = System.currentTimeMillis();
         }
 
         @Override
         public void run() {
-            final var configFile = configResolver.get();
-            if (!Files.exists(configFile)) {
-                LOG.debug(
-                        "No credentials file for file auth extension {} available, not reloading configuration for now",
-                        configFile);
+            reload();
+        }
+
+        /**
+         * Reloads the config files if their content changed. The modification time is not reliable for this, as it
+         * misses changes within its resolution and changes on every rewrite of an identical file.
+         * <p>
+         * The watcher and the polling task share this method, so it must not run concurrently.
+         */
+        synchronized void reload() {
+            final var parseStart = System.nanoTime();
+            final var change = credentialsSources.refresh();
+            if (change == CredentialsSources.Change.NONE) {
+                LOG.debug("No credentials file for file auth extension available, not reloading configuration for now");
                 return;
             }
-            final var lastModification = configFile.toFile().lastModified();
-            if (credentialsConfiguration.getCurrentConfig() != null && lastReadTimestamp >= lastModification) {
-                LOG.trace("Checked for changes for file {}. No changes since {}", configFile, lastModification);
+            if (credentialsConfiguration.getCurrentConfig() != null && change != CredentialsSources.Change.CHANGED) {
+                if (change == CredentialsSources.Change.REWRITTEN) {
+                    skippedReloads.inc();
+                    LOG.debug("Credentials files were rewritten without changes, not reloading.");
+                } else {
+                    LOG.trace("Checked credentials files for changes. No changes.");
+                }
                 return;
             }
-            LOG.debug("Credentials for file auth extension changed, checking new credentials file. {}", configFile);
-            final var newConfig = configParser.read(configFile);
-            lastReadTimestamp = System.currentTimeMillis();
+            // recorded only if a new config is checked, the regular checks without changes would dominate it
+            parseTime.update(System.nanoTime() - parseStart, TimeUnit.NANOSECONDS);
+            LOG.debug("Credentials for file auth extension changed, checking new credentials files.");
+            final FileAuthConfig newConfig;
+            try (final var ignored = validateTime.time()) {
+                newConfig = credentialsSources.merge();
+            }
             if (newConfig == null) {
-                // no changes or invalid new config
+                // invalid new config, a config that is still invalid is retried without being rejected again
+                if (change == CredentialsSources.Change.CHANGED) {
+                    rejectedReloads.inc();
+                }
                 return;
             }
             LOG.info("Credentials configuration for file auth extension changed, using new configuration.");
-            try {
-                configArchiver.archive(oldConfig);
-            } catch (final IOException e) {
-                LOG.warn("Archival of the old credentials config failed. Reason: {}", e.getMessage());
+            try (final var ignored = archiveTime.time()) {
+                credentialsSources.writeSnapshot();
+                try {
+                    configArchiver.archive(oldConfig);
+                } catch (final IOException e) {
+                    LOG.warn("Archival of the old credentials config failed. Reason: {}", e.getMessage());
+                }
             }
+            final var previousConfig = oldConfig;
+            final var diff = ConfigDiff.of(previousConfig, newConfig);
+            LOG.debug("Credentials configuration for file auth extension changes: {}", diff);
             oldConfig = newConfig;
-            for (final var callback : callbacks) {
-                callback.onReload(oldConfig, newConfig);
+            try (final var ignored = callbacksTime.time()) {
+                for (final var callback : callbacks) {
+                    callback.onReload(previousConfig, newConfig, diff);
+                }
             }
+            loaded();
+            appliedReloads.inc();
+            LOG.debug("Credentials configuration generation {} of file auth extension loaded.", generation);
         }
     }
 }
@@ -0,0 +1,367 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A binary copy of the parsed credentials files, so the extension start does not need to parse the XML again.
+ * <p>
+ * Every source file is stored with the hash of its content and is only used if the file still has the same content.
+ * The snapshot starts with a magic number and a format version and ends with a CRC32C checksum of the content, a
+ * snapshot with another version or a wrong checksum is ignored.
+ */
+final class CredentialsSnapshotFile {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(CredentialsSnapshotFile.class);
+
+    private static final int MAGIC = 0x46524253; // "FRBS"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NULL = -1;
+    private static final @NotNull Set<PosixFilePermission> OWNER_ONLY =
+            PosixFilePermissions.fromString("rw-------");
+
+    private CredentialsSnapshotFile() {
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first and replaces the previous snapshot afterwards, so a snapshot is
+     * never read partially written.
+     * <p>
+     * The snapshot contains the passwords of the credentials files, so it is only readable by its owner where the file
+     * system supports POSIX permissions. The temporary file is deleted if the snapshot can not be written.
+     *
+     * @param  file        the snapshot file
+     * @param  sources     the parsed source files
+     * @throws IOException if the snapshot can not be written
+     */
+    static void write(final @NotNull Path file, final @NotNull List<Source> sources) throws IOException {
+        final var temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.deleteIfExists(temporaryFile);
+        if (temporaryFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(temporaryFile, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        } else {
+            Files.createFile(temporaryFile);
+        }
+        try {
+            writeSources(temporaryFile, sources);
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (final IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temporaryFile);
+            } catch (final IOException deleteException) {
+                e.addSuppressed(deleteException);
+            }
+            throw e;
+        }
+    }
+
+    private static void writeSources(final @NotNull Path file, final @NotNull List<Source> sources)
+            throws IOException {
+        final var checksum = new CRC32C();
+        try (final var fileOutputStream = Files.newOutputStream(file)) {
+            final var output = new DataOutputStream(new BufferedOutputStream(//
+                    new CheckedOutputStream(fileOutputStream, checksum), BUFFER_SIZE));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(sources.size());
+            for (final var source : sources) {
+                writeString(output, source.getPath().toString());
+                output.writeInt(source.getContentHash().length);
+                output.write(source.getContentHash());
+                writeUsers(output, source.getConfig().getUsers());
+                writeRoles(output, source.getConfig().getRoles());
+            }
+            output.flush();
+            // the checksum itself is not part of the checksum
+            new DataOutputStream(fileOutputStream).writeInt((int) checksum.getValue());
+        }
+    }
+
+    /**
+     * Reads the snapshot into a heap buffer. It is not memory mapped, as a mapping keeps the file locked on Windows
+     * until the buffer is garbage collected, so the next write could not replace the snapshot.
+     *
+     * @param  file the snapshot file
+     * @return      the source files of the snapshot or null if the snapshot does not exist, has another format
+     *              version or is damaged
+     */
+    static @Nullable List<Source> read(final @NotNull Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var size = channel.size();
+            if (size < 3 * Integer.BYTES || size > Integer.MAX_VALUE) {
+                LOG.debug("Ignoring credentials snapshot {} with a size of {} bytes.", file, size);
+                return null;
+            }
+            final var buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    LOG.warn("Ignoring truncated credentials snapshot {}.", file);
+                    return null;
+                }
+            }
+            buffer.flip();
+            final var content = buffer.duplicate().limit((int) size - Integer.BYTES);
+            final var checksum = new CRC32C();
+            checksum.update(content);
+            if ((int) checksum.getValue() != buffer.getInt((int) size - Integer.BYTES)) {
+                LOG.warn("Ignoring damaged credentials snapshot {}.", file);
+                return null;
+            }
+            buffer.limit((int) size - Integer.BYTES);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                LOG.debug("Ignoring credentials snapshot {} of another format version.", file);
+                return null;
+            }
+            final var roleIds = new HashMap<String, String>();
+            final var sourceCount = buffer.getInt();
+            final var sources = new ArrayList<Source>(sourceCount);
+            for (var i = 0; i < sourceCount; i++) {
+                final var path = Path.of(readString(buffer));
+                final var contentHash = new byte[buffer.getInt()];
+                buffer.get(contentHash);
+                final var users = readUsers(buffer, roleIds);
+                final var roles = readRoles(buffer, roleIds);
+                sources.add(new Source(path, contentHash, new FileAuthConfig(users, roles)));
+            }
+            return sources;
+        } catch (final IOException | RuntimeException e) {
+            // a snapshot is only a cache of the credentials files, so it is ignored if it can not be read
+            LOG.warn("Could not read credentials snapshot {}. Reason: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeUsers(final @NotNull DataOutputStream output, final @Nullable List<User> users)
+            throws IOException {
+        if (users == null) {
+            output.writeInt(NULL);
+            return;
+        }
+        output.writeInt(users.size());
+        for (final var user : users) {
+            writeString(output, user.getName());
+            writeString(output, user.getPassword());
+            writeStrings(output, user.getRoles());
+        }
+    }
+
+    private static @Nullable List<User> readUsers(
+            final @NotNull ByteBuffer buffer,
+            final @NotNull Map<String, String> roleIds) {
+        final var count = buffer.getInt();
+        if (count == NULL) {
+            return null;
+        }
+        final var users = new ArrayList<User>(count);
+        for (var i = 0; i < count; i++) {
+            final var name = readString(buffer);
+            final var password = readString(buffer);
+            users.add(new User(name, password, readRoleIds(buffer, roleIds)));
+        }
+        return users;
+    }
+
+    private static void writeRoles(final @NotNull DataOutputStream output, final @Nullable List<Role> roles)
+            throws IOException {
+        if (roles == null) {
+            output.writeInt(NULL);
+            return;
+        }
+        output.writeInt(roles.size());
+        for (final var role : roles) {
+            writeString(output, role.getId());
+            final var permissions = role.getPermissions();
+            if (permissions == null) {
+                output.writeInt(NULL);
+                continue;
+            }
+            output.writeInt(permissions.size());
+            for (final var permission : permissions) {
+                writeString(output, permission.getTopic());
+                writeEnum(output, permission.getActivity());
+                writeEnum(output, permission.getQos());
+                writeEnum(output, permission.getRetain());
+                writeEnum(output, permission.getSharedSubscription());
+                writeString(output, permission.getSharedGroup());
+            }
+        }
+    }
+
+    private static @Nullable List<Role> readRoles(
+            final @NotNull ByteBuffer buffer,
+            final @NotNull Map<String, String> roleIds) {
+        final var count = buffer.getInt();
+        if (count == NULL) {
+            return null;
+        }
+        final var roles = new ArrayList<Role>(count);
+        for (var i = 0; i < count; i++) {
+            final var id = readString(buffer);
+            final var roleId = id == null ? null : roleIds.computeIfAbsent(id, key -> key);
+            final var permissionCount = buffer.getInt();
+            if (permissionCount == NULL) {
+                roles.add(new Role(roleId, null));
+                continue;
+            }
+            final var permissions = new ArrayList<Permission>(permissionCount);
+            for (var j = 0; j < permissionCount; j++) {
+                final var permission = new Permission(readString(buffer));
+                permission.setActivity(readEnum(buffer, TopicPermission.MqttActivity.class));
+                permission.setQos(readEnum(buffer, TopicPermission.Qos.class));
+                permission.setRetain(readEnum(buffer, TopicPermission.Retain.class));
+                permission.setSharedSubscription(readEnum(buffer, TopicPermission.SharedSubscription.class));
+                permission.setSharedGroup(readString(buffer));
+                permissions.add(permission);
+            }
+            roles.add(new Role(roleId, permissions));
+        }
+        return roles;
+    }
+
+    private static void writeStrings(final @NotNull DataOutputStream output, final @Nullable List<String> strings)
+            throws IOException {
+        if (strings == null) {
+            output.writeInt(NULL);
+            return;
+        }
+        output.writeInt(strings.size());
+        for (final var string : strings) {
+            writeString(output, string);
+        }
+    }
+
+    private static @Nullable List<String> readRoleIds(
+            final @NotNull ByteBuffer buffer,
+            final @NotNull Map<String, String> roleIds) {
+        final var count = buffer.getInt();
+        if (count == NULL) {
+            return null;
+        }
+        final var strings = new ArrayList<String>(count);
+        for (var i = 0; i < count; i++) {
+            final var roleId = readString(buffer);
+            strings.add(roleId == null ? null : roleIds.computeIfAbsent(roleId, key -> key));
+        }
+        return strings;
+    }
+
+    private static void writeEnum(final @NotNull DataOutputStream output, final @Nullable Enum<?> value)
+            throws IOException {
+        // the names are stored instead of the ordinals, as the ordinals may change with the extension SDK
+        writeString(output, value == null ? null : value.name());
+    }
+
+    private static <E extends Enum<E>> @Nullable E readEnum(
+            final @NotNull ByteBuffer buffer,
+            final @NotNull Class<E> type) {
+        final var name = readString(buffer);
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+
+    private static void writeString(final @NotNull DataOutputStream output, final @Nullable String string)
+            throws IOException {
+        if (string == null) {
+            output.writeInt(NULL);
+            return;
+        }
+        final var bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static @Nullable String readString(final @NotNull ByteBuffer buffer) {
+        final var length = buffer.getInt();
+        if (length == NULL) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        final var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A parsed source file with the hash of the content it was parsed from.
+     */
+    @Immutable
+    static final class Source {
+
+        private final @NotNull Path path;
+        private final byte @NotNull [] contentHash;
+        private final @NotNull FileAuthConfig config;
+
+        Source(final @NotNull Path path, final byte @NotNull [] contentHash, final @NotNull FileAuthConfig config) {
+            this.path = path;
+            this.contentHash = contentHash;
+            this.config = config;
+        }
+
+        @NotNull Path getPath() {
+            return path;
+        }
+
+        byte @NotNull [] getContentHash() {
+            return contentHash;
+        }
+
+        @NotNull FileAuthConfig getConfig() {
+            return config;
+        }
+    }
+}
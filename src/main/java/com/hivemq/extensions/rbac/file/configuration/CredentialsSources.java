@@ -0,0 +1,335 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import static com.hivemq.extensions.rbac.file.ExtensionConstants.CREDENTIALS_SHARDS_DIRECTORY;
+import static com.hivemq.extensions.rbac.file.ExtensionConstants.CREDENTIALS_SNAPSHOT;
+
+/**
+ * The files the credentials are read from: the credentials file and the XML files in the shards directory next to
+ * it. Each file holds users, roles or both, together they form the credentials configuration.
+ * <p>
+ * Only files whose content changed are parsed again, so an edit of one shard does not parse all users. If enabled,
+ * the parsed files are also kept in a {@link CredentialsSnapshotFile}, so the extension start does not need to parse
+ * files that did not change since the snapshot was written.
+ * <p>
+ * Not thread safe, only used by the reload task.
+ */
+class CredentialsSources {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(CredentialsSources.class);
+
+    // the coarsest resolution of modification times among common file systems (FAT), a file modified within it of its
+    // last hash may have changed again without a new modification time
+    private static final long TIMESTAMP_GRANULARITY_MILLIS = 2_000;
+
+    private final @NotNull ConfigResolver configResolver;
+    private final @NotNull ConfigParser configParser;
+    private final boolean snapshotEnabled;
+    // the files in the order they are merged
+    private @NotNull List<Path> files = List.of();
+    private final @NotNull Map<Path, SourceFile> sourceFiles = new HashMap<>();
+    // true if the files changed since the snapshot was written
+    private boolean snapshotOutdated;
+
+    CredentialsSources(
+            final @NotNull ConfigResolver configResolver,
+            final @NotNull ConfigParser configParser,
+            final boolean snapshotEnabled) {
+        this.configResolver = configResolver;
+        this.configParser = configParser;
+        this.snapshotEnabled = snapshotEnabled;
+    }
+
+    /**
+     * @return the directories the shards may be placed in, next to the possible locations of the credentials file
+     */
+    @NotNull List<Path> getShardDirectories() {
+        return configResolver.getLocations()
+                .stream()
+                .map(location -> location.resolveSibling(CREDENTIALS_SHARDS_DIRECTORY))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Checks all files for changes and parses the changed files, in parallel if more than one changed.
+     * <p>
+     * The content of a file is only hashed if its size, modification time or file key changed, or if it was modified
+     * too shortly before its last hash to tell a later change apart, so unchanged large files are not read on every
+     * check. A file that can not be read is reported once, and again only after it could be read.
+     *
+     * @return how the files changed since the last refresh
+     */
+    @NotNull Change refresh() {
+        final var currentFiles = listFiles();
+        if (currentFiles == null) {
+            return Change.UNCHANGED;
+        }
+        if (currentFiles.isEmpty()) {
+            return Change.NONE;
+        }
+        var changed = !currentFiles.equals(files);
+        var rewritten = false;
+        final var changedFiles = new ArrayList<SourceFile>();
+        for (final var file : currentFiles) {
+            final var sourceFile = sourceFiles.get(file);
+            final var hashedAt = System.currentTimeMillis();
+            byte[] contentHash;
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (sourceFile != null && sourceFile.contentHash != null && sourceFile.isUnchanged(attributes)) {
+                    continue;
+                }
+                contentHash = ContentHash.of(file);
+            } catch (final IOException e) {
+                if (sourceFile != null && sourceFile.contentHash == null) {
+                    LOG.debug("Credentials file {} still can not be read. Reason: {}", file, e.getMessage());
+                    continue;
+                }
+                LOG.warn("Could not read credentials file {}. Reason: {}", file, e.getMessage());
+                attributes = null;
+                contentHash = null;
+            }
+            if (sourceFile != null && contentHash != null && Arrays.equals(sourceFile.contentHash, contentHash)) {
+                if (sourceFile.modification != attributes.lastModifiedTime().toMillis()) {
+                    rewritten = true;
+                }
+                sourceFile.hashed(attributes, hashedAt);
+                continue;
+            }
+            changed = true;
+            final var changedFile = new SourceFile(file, contentHash);
+            if (attributes != null) {
+                changedFile.hashed(attributes, hashedAt);
+            }
+            changedFiles.add(changedFile);
+        }
+        if (snapshotEnabled && sourceFiles.isEmpty()) {
+            restoreFromSnapshot(changedFiles);
+        }
+        final var filesToParse = new ArrayList<SourceFile>();
+        for (final var sourceFile : changedFiles) {
+            // a file that can not be hashed can not be parsed either
+            if (sourceFile.config == null && sourceFile.contentHash != null) {
+                filesToParse.add(sourceFile);
+            }
+        }
+        final var stream = filesToParse.size() > 1 ? filesToParse.parallelStream() : filesToParse.stream();
+        final var configs =
+                stream.map(sourceFile -> configParser.parse(sourceFile.path)).collect(Collectors.toList());
+        for (var i = 0; i < filesToParse.size(); i++) {
+            filesToParse.get(i).config = configs.get(i);
+        }
+        for (final var sourceFile : changedFiles) {
+            sourceFiles.put(sourceFile.path, sourceFile);
+        }
+        sourceFiles.keySet().retainAll(currentFiles);
+        files = currentFiles;
+        if (changed) {
+            snapshotOutdated |= !filesToParse.isEmpty() || changedFiles.size() < currentFiles.size() ||
+                    sourceFiles.size() != currentFiles.size();
+            return Change.CHANGED;
+        }
+        return rewritten ? Change.REWRITTEN : Change.UNCHANGED;
+    }
+
+    /**
+     * Writes the snapshot of the current files, if it is enabled and outdated. Must only be called if the files were
+     * merged successfully, so only valid configurations are kept in the snapshot.
+     */
+    void writeSnapshot() {
+        if (!snapshotEnabled || !snapshotOutdated || files.isEmpty()) {
+            return;
+        }
+        final var sources = new ArrayList<CredentialsSnapshotFile.Source>(files.size());
+        for (final var file : files) {
+            final var sourceFile = sourceFiles.get(file);
+            if (sourceFile.contentHash == null || sourceFile.config == null) {
+                return;
+            }
+            sources.add(new CredentialsSnapshotFile.Source(file, sourceFile.contentHash, sourceFile.config));
+        }
+        final var snapshotFile = getSnapshotFile();
+        try {
+            CredentialsSnapshotFile.write(snapshotFile, sources);
+            snapshotOutdated = false;
+            LOG.debug("Wrote credentials snapshot {}.", snapshotFile);
+        } catch (final IOException e) {
+            LOG.warn("Could not write credentials snapshot {}. Reason: {}", snapshotFile, e.getMessage());
+        }
+    }
+
+    private void restoreFromSnapshot(final @NotNull List<SourceFile> changedFiles) {
+        final var snapshotFile = getSnapshotFile();
+        final var sources = CredentialsSnapshotFile.read(snapshotFile);
+        if (sources == null) {
+            return;
+        }
+        final var snapshotSources = new HashMap<Path, CredentialsSnapshotFile.Source>();
+        for (final var source : sources) {
+            snapshotSources.put(source.getPath(), source);
+        }
+        var restored = 0;
+        for (final var sourceFile : changedFiles) {
+            final var source = snapshotSources.get(sourceFile.path);
+            if (source != null && Arrays.equals(source.getContentHash(), sourceFile.contentHash)) {
+                sourceFile.config = source.getConfig();
+                restored++;
+            }
+        }
+        LOG.debug("Restored {} of {} credentials files from snapshot {}.", restored, changedFiles.size(), snapshotFile);
+    }
+
+    private @NotNull Path getSnapshotFile() {
+        return configResolver.get().resolveSibling(CREDENTIALS_SNAPSHOT);
+    }
+
+    /**
+     * @return the validated config of all files or null if no file exists, a file can not be read or the config is
+     *         invalid
+     */
+    @Nullable FileAuthConfig merge() {
+        if (files.isEmpty()) {
+            return null;
+        }
+        if (files.size() == 1) {
+            final var config = sourceFiles.get(files.get(0)).config;
+            return config == null ? null : configParser.validate(config);
+        }
+        final var users = new ArrayList<User>();
+        final var roles = new ArrayList<Role>();
+        for (final var file : files) {
+            final var config = sourceFiles.get(file).config;
+            if (config == null) {
+                LOG.warn("Credentials file {} for file auth extension can not be read, not using the changes.", file);
+                return null;
+            }
+            if (config.getUsers() != null) {
+                users.addAll(config.getUsers());
+            }
+            if (config.getRoles() != null) {
+                roles.addAll(config.getRoles());
+            }
+        }
+        return configParser.validate(new FileAuthConfig(users, roles));
+    }
+
+    /**
+     * @return the credentials file followed by the shards ordered by name or null if the shards can not be listed
+     */
+    private @Nullable List<Path> listFiles() {
+        final var configFile = configResolver.get();
+        final var currentFiles = new ArrayList<Path>();
+        if (Files.exists(configFile)) {
+            currentFiles.add(configFile);
+        }
+        final var shardDirectory = configFile.resolveSibling(CREDENTIALS_SHARDS_DIRECTORY);
+        if (Files.isDirectory(shardDirectory)) {
+            final var shards = new ArrayList<Path>();
+            try (final var directoryStream = Files.newDirectoryStream(shardDirectory, "*.xml")) {
+                for (final var shard : directoryStream) {
+                    if (Files.isRegularFile(shard)) {
+                        shards.add(shard);
+                    }
+                }
+            } catch (final IOException e) {
+                LOG.warn("Could not list credentials shards in {}. Reason: {}", shardDirectory, e.getMessage());
+                return null;
+            }
+            shards.sort(null);
+            currentFiles.addAll(shards);
+        }
+        return currentFiles;
+    }
+
+    enum Change {
+        /**
+         * Neither the credentials file nor a shard exists.
+         */
+        NONE,
+        /**
+         * No file was changed.
+         */
+        UNCHANGED,
+        /**
+         * Files were rewritten with identical content.
+         */
+        REWRITTEN,
+        /**
+         * Files were added, removed or changed.
+         */
+        CHANGED
+    }
+
+    private static final class SourceFile {
+
+        private final @NotNull Path path;
+        // null if the file can not be read
+        private final byte @Nullable [] contentHash;
+        // the attributes when the content was hashed
+        private long size = -1;
+        private long modification;
+        private @Nullable Object fileKey;
+        private long hashedAt;
+        // null if the file can not be read or parsed
+        private @Nullable FileAuthConfig config;
+
+        private SourceFile(final @NotNull Path path, final byte @Nullable [] contentHash) {
+            this.path = path;
+            this.contentHash = contentHash;
+        }
+
+        private void hashed(final @NotNull BasicFileAttributes attributes, final long hashedAt) {
+            size = attributes.size();
+            modification = attributes.lastModifiedTime().toMillis();
+            fileKey = attributes.fileKey();
+            this.hashedAt = hashedAt;
+        }
+
+        /**
+         * @return true if the content is known to be unchanged without hashing it again
+         */
+        private boolean isUnchanged(final @NotNull BasicFileAttributes attributes) {
+            final var currentModification = attributes.lastModifiedTime().toMillis();
+            return size == attributes.size() &&
+                    modification == currentModification &&
+                    Objects.equals(fileKey, attributes.fileKey()) &&
+                    currentModification < hashedAt - TIMESTAMP_GRANULARITY_MILLIS;
+        }
+    }
+}
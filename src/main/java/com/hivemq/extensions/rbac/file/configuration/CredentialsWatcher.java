@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the credentials files and the shard directories for changes and triggers a reload once the files did not
+ * change for the debounce time, as editors often write a file in several steps.
+ * <p>
+ * The watch service is polled without blocking, so the watcher can run as a periodic task of the extension executor.
+ */
+class CredentialsWatcher implements Runnable, Closeable {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(CredentialsWatcher.class);
+
+    private final @NotNull WatchService watchService;
+    // the watched directories and the names of the credentials files in them, an empty set matches all files
+    private final @NotNull Map<WatchKey, Set<Path>> watchedFiles = new HashMap<>();
+    private final @NotNull Runnable reload;
+    private final long debounceNanos;
+    private final @NotNull LongSupplier nanoClock;
+    // null if no change is pending, only accessed by the single task that runs the watcher
+    private @Nullable Long lastChange;
+
+    CredentialsWatcher(
+            final @NotNull List<Path> files,
+            final @NotNull List<Path> directories,
+            final @NotNull Runnable reload,
+            final long debounceMillis,
+            final @NotNull LongSupplier nanoClock) throws IOException {
+        this.reload = reload;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        this.nanoClock = nanoClock;
+        final var watchedDirectories = new HashMap<Path, Set<Path>>();
+        for (final var file : files) {
+            final var directory = file.toAbsolutePath().getParent();
+            if (directory != null && Files.isDirectory(directory)) {
+                watchedDirectories.computeIfAbsent(directory, d -> new HashSet<>()).add(file.getFileName());
+            }
+        }
+        if (watchedDirectories.isEmpty()) {
+            throw new IOException("None of the directories of the credentials files " + files + " exist");
+        }
+        // directories created later are only found by polling
+        for (final var directory : directories) {
+            if (Files.isDirectory(directory)) {
+                watchedDirectories.put(directory.toAbsolutePath(), Set.of());
+            }
+        }
+        watchService = watchedDirectories.keySet().iterator().next().getFileSystem().newWatchService();
+        try {
+            for (final var entry : watchedDirectories.entrySet()) {
+                final var watchKey = entry.getKey().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                watchedFiles.put(watchKey, entry.getValue());
+            }
+        } catch (final IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void run() {
+        final var now = nanoClock.getAsLong();
+        try {
+            WatchKey watchKey;
+            while ((watchKey = watchService.poll()) != null) {
+                final var fileNames = watchedFiles.get(watchKey);
+                for (final var event : watchKey.pollEvents()) {
+                    // events may have been lost on an overflow, so it must be treated as a change
+                    if (event.kind() == OVERFLOW ||
+                            (fileNames != null &&
+                                    (fileNames.isEmpty() || fileNames.contains((Path) event.context())))) {
+                        lastChange = now;
+                    }
+                }
+                if (!watchKey.reset()) {
+                    LOG.debug("A credentials directory of the file auth extension is no longer watched.");
+                }
+            }
+        } catch (final ClosedWatchServiceException e) {
+            return;
+        }
+        if (lastChange != null && now - lastChange >= debounceNanos) {
+            lastChange = null;
+            reload.run();
+        }
+    }
+
+    boolean isChangePending() {
+        return lastChange != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -32,7 +32,7 @@ public class ExtensionConfiguration {
 
     private static final @NotNull Logger LOG = LoggerFactory.getLogger(ExtensionConfiguration.class);
 
-    private final @NotNull XmlParser xmlParser = new XmlParser();
+    private final @NotNull XmlParser xmlParser = XmlParser.shared();
     private final @NotNull ExtensionConfig extensionConfig;
 
     public ExtensionConfiguration(final @NotNull Path extensionHome) {
@@ -67,6 +67,108 @@ public class ExtensionConfiguration {
                                 defaultConfig.getReloadInterval());
                 newExtensionConfig.setReloadInterval(defaultConfig.getReloadInterval());
             }
+            if (newExtensionConfig.getPermissionsCacheSize() < 0) {
+                LOG.warn("Permissions cache size for file auth extension must not be negative, using default size " +
+                        defaultConfig.getPermissionsCacheSize());
+                newExtensionConfig.setPermissionsCacheSize(defaultConfig.getPermissionsCacheSize());
+            }
+            if (newExtensionConfig.getHashCacheSize() < 0) {
+                LOG.warn("Hash cache size for file auth extension must not be negative, using default size " +
+                        defaultConfig.getHashCacheSize());
+                newExtensionConfig.setHashCacheSize(defaultConfig.getHashCacheSize());
+            }
+            if (newExtensionConfig.getHashCacheTtl() < 1) {
+                LOG.warn("Hash cache TTL for file auth extension must be greater than 0, using default TTL " +
+                        defaultConfig.getHashCacheTtl());
+                newExtensionConfig.setHashCacheTtl(defaultConfig.getHashCacheTtl());
+            }
+            if (newExtensionConfig.getHashCacheMaxMemory() < 0) {
+                LOG.warn("Hash cache max memory for file auth extension must not be negative, using default " +
+                        defaultConfig.getHashCacheMaxMemory());
+                newExtensionConfig.setHashCacheMaxMemory(defaultConfig.getHashCacheMaxMemory());
+            }
+            if (newExtensionConfig.getAsyncAuthenticationThreads() < 0) {
+                LOG.warn("Async authentication threads for file auth extension must not be negative, using default " +
+                        defaultConfig.getAsyncAuthenticationThreads());
+                newExtensionConfig.setAsyncAuthenticationThreads(defaultConfig.getAsyncAuthenticationThreads());
+            }
+            if (newExtensionConfig.getAsyncAuthenticationQueueSize() < 1) {
+                LOG.warn(
+                        "Async authentication queue size for file auth extension must be greater than 0, using default size " +
+                                defaultConfig.getAsyncAuthenticationQueueSize());
+                newExtensionConfig.setAsyncAuthenticationQueueSize(defaultConfig.getAsyncAuthenticationQueueSize());
+            }
+            if (newExtensionConfig.getAsyncAuthenticationTimeout() < 1) {
+                LOG.warn(
+                        "Async authentication timeout for file auth extension must be greater than 0, using default timeout " +
+                                defaultConfig.getAsyncAuthenticationTimeout());
+                newExtensionConfig.setAsyncAuthenticationTimeout(defaultConfig.getAsyncAuthenticationTimeout());
+            }
+            if (newExtensionConfig.getNegativeCacheSize() < 0) {
+                LOG.warn("Negative cache size for file auth extension must not be negative, using default size " +
+                        defaultConfig.getNegativeCacheSize());
+                newExtensionConfig.setNegativeCacheSize(defaultConfig.getNegativeCacheSize());
+            }
+            if (newExtensionConfig.getNegativeCacheTtl() < 1) {
+                LOG.warn("Negative cache TTL for file auth extension must be greater than 0, using default TTL " +
+                        defaultConfig.getNegativeCacheTtl());
+                newExtensionConfig.setNegativeCacheTtl(defaultConfig.getNegativeCacheTtl());
+            }
+            if (newExtensionConfig.getUsernameRateLimit() < 0) {
+                LOG.warn("Username rate limit for file auth extension must not be negative, using default " +
+                        defaultConfig.getUsernameRateLimit());
+                newExtensionConfig.setUsernameRateLimit(defaultConfig.getUsernameRateLimit());
+            }
+            if (newExtensionConfig.getUsernameRateLimitBurst() < 1) {
+                LOG.warn("Username rate limit burst for file auth extension must be greater than 0, using default " +
+                        defaultConfig.getUsernameRateLimitBurst());
+                newExtensionConfig.setUsernameRateLimitBurst(defaultConfig.getUsernameRateLimitBurst());
+            }
+            if (newExtensionConfig.getIpRateLimit() < 0) {
+                LOG.warn("IP rate limit for file auth extension must not be negative, using default " +
+                        defaultConfig.getIpRateLimit());
+                newExtensionConfig.setIpRateLimit(defaultConfig.getIpRateLimit());
+            }
+            if (newExtensionConfig.getIpRateLimitBurst() < 1) {
+                LOG.warn("IP rate limit burst for file auth extension must be greater than 0, using default " +
+                        defaultConfig.getIpRateLimitBurst());
+                newExtensionConfig.setIpRateLimitBurst(defaultConfig.getIpRateLimitBurst());
+            }
+            if (newExtensionConfig.getRateLimitMaxKeys() < 1) {
+                LOG.warn("Rate limit max keys for file auth extension must be greater than 0, using default " +
+                        defaultConfig.getRateLimitMaxKeys());
+                newExtensionConfig.setRateLimitMaxKeys(defaultConfig.getRateLimitMaxKeys());
+            }
+            if (newExtensionConfig.getReloadMode() == null) {
+                LOG.warn("Unknown credentials reload mode for file auth extension, using default mode " +
+                        defaultConfig.getReloadMode());
+                newExtensionConfig.setReloadMode(defaultConfig.getReloadMode());
+            }
+            if (newExtensionConfig.getReloadDebounce() < 0) {
+                LOG.warn("Credentials reload debounce for file auth extension must not be negative, using default " +
+                        defaultConfig.getReloadDebounce());
+                newExtensionConfig.setReloadDebounce(defaultConfig.getReloadDebounce());
+            }
+            if (newExtensionConfig.getCredentialsParser() == null) {
+                LOG.warn("Unknown credentials parser for file auth extension, using default parser " +
+                        defaultConfig.getCredentialsParser());
+                newExtensionConfig.setCredentialsParser(defaultConfig.getCredentialsParser());
+            }
+            if (newExtensionConfig.getUserStore() == null) {
+                LOG.warn("Unknown user store for file auth extension, using default user store " +
+                        defaultConfig.getUserStore());
+                newExtensionConfig.setUserStore(defaultConfig.getUserStore());
+            }
+            if (newExtensionConfig.getAuthorizationMode() == null) {
+                LOG.warn("Unknown authorization mode for file auth extension, using default authorization mode " +
+                        defaultConfig.getAuthorizationMode());
+                newExtensionConfig.setAuthorizationMode(defaultConfig.getAuthorizationMode());
+            }
+            if (newExtensionConfig.getRevocationBatchSize() < 1) {
+                LOG.warn("Revocation batch size for file auth extension must be greater than 0, using default batch size " +
+                        defaultConfig.getRevocationBatchSize());
+                newExtensionConfig.setRevocationBatchSize(defaultConfig.getRevocationBatchSize());
+            }
             if (newExtensionConfig.getPasswordType() == null) {
                 LOG.warn("Unknown password type file auth extension, using default type " +
                         defaultConfig.getPasswordType());
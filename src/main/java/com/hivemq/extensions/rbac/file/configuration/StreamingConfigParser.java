@@ -0,0 +1,275 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+/**
+ * Reads the credentials configuration with a StAX stream reader in a single pass.
+ * <p>
+ * Unlike JAXB no reflective object graph and no intermediate representation of the document is built, the users and
+ * roles are created directly while reading. The role ids are deduplicated, so all users with the same role share one
+ * string instance. The result is the same as the one of {@link XmlParser#unmarshalFileAuthConfig(Path)}, unknown
+ * elements are ignored and invalid enum values are read as null, so the validation reports them.
+ */
+@ThreadSafe
+class StreamingConfigParser {
+
+    private static final @NotNull String ROOT = "file-rbac";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // the changed files are parsed in parallel and a factory is not guaranteed to be thread safe
+    private final @NotNull ThreadLocal<XMLInputFactory> inputFactory =
+            ThreadLocal.withInitial(StreamingConfigParser::newInputFactory);
+
+    @NotNull FileAuthConfig parse(final @NotNull Path file) throws IOException {
+        try (final var inputStream = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            final var reader = inputFactory.get().createXMLStreamReader(inputStream);
+            try {
+                reader.nextTag();
+                if (!ROOT.equals(reader.getLocalName())) {
+                    throw new IOException("Unexpected root element '" + reader.getLocalName() + "' in " + file);
+                }
+                return readConfig(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (final XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static @NotNull XMLInputFactory newInputFactory() {
+        final var inputFactory = XMLInputFactory.newFactory();
+        // the credentials file never needs a DTD, so external entities must not be resolved
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return inputFactory;
+    }
+
+    private static @NotNull FileAuthConfig readConfig(final @NotNull XMLStreamReader reader)
+            throws XMLStreamException {
+        final var roleIds = new HashMap<String, String>();
+        List<User> users = null;
+        List<Role> roles = null;
+        while (nextChild(reader)) {
+            switch (reader.getLocalName()) {
+                case "users":
+                    users = readUsers(reader, users == null ? new ArrayList<>() : users, roleIds);
+                    break;
+                case "roles":
+                    roles = readRoles(reader, roles == null ? new ArrayList<>() : roles, roleIds);
+                    break;
+                default:
+                    skipElement(reader);
+            }
+        }
+        return new FileAuthConfig(users, roles);
+    }
+
+    private static @NotNull List<User> readUsers(
+            final @NotNull XMLStreamReader reader,
+            final @NotNull List<User> users,
+            final @NotNull Map<String, String> roleIds) throws XMLStreamException {
+        while (nextChild(reader)) {
+            if (!"user".equals(reader.getLocalName())) {
+                skipElement(reader);
+                continue;
+            }
+            String name = null;
+            String password = null;
+            List<String> userRoles = null;
+            while (nextChild(reader)) {
+                switch (reader.getLocalName()) {
+                    case "name":
+                        name = reader.getElementText();
+                        break;
+                    case "password":
+                        password = reader.getElementText();
+                        break;
+                    case "roles":
+                        userRoles = readRoleIds(reader, userRoles == null ? new ArrayList<>(2) : userRoles, roleIds);
+                        break;
+                    default:
+                        skipElement(reader);
+                }
+            }
+            users.add(new User(name, password, userRoles));
+        }
+        return users;
+    }
+
+    private static @NotNull List<String> readRoleIds(
+            final @NotNull XMLStreamReader reader,
+            final @NotNull List<String> userRoles,
+            final @NotNull Map<String, String> roleIds) throws XMLStreamException {
+        while (nextChild(reader)) {
+            if ("id".equals(reader.getLocalName())) {
+                final var roleId = reader.getElementText();
+                userRoles.add(roleIds.computeIfAbsent(roleId, id -> id));
+            } else {
+                skipElement(reader);
+            }
+        }
+        return userRoles;
+    }
+
+    private static @NotNull List<Role> readRoles(
+            final @NotNull XMLStreamReader reader,
+            final @NotNull List<Role> roles,
+            final @NotNull Map<String, String> roleIds) throws XMLStreamException {
+        while (nextChild(reader)) {
+            if (!"role".equals(reader.getLocalName())) {
+                skipElement(reader);
+                continue;
+            }
+            String id = null;
+            List<Permission> permissions = null;
+            while (nextChild(reader)) {
+                switch (reader.getLocalName()) {
+                    case "id":
+                        id = roleIds.computeIfAbsent(reader.getElementText(), roleId -> roleId);
+                        break;
+                    case "permissions":
+                        permissions = readPermissions(reader, permissions == null ? new ArrayList<>() : permissions);
+                        break;
+                    default:
+                        skipElement(reader);
+                }
+            }
+            roles.add(new Role(id, permissions));
+        }
+        return roles;
+    }
+
+    private static @NotNull List<Permission> readPermissions(
+            final @NotNull XMLStreamReader reader,
+            final @NotNull List<Permission> permissions) throws XMLStreamException {
+        while (nextChild(reader)) {
+            if (!"permission".equals(reader.getLocalName())) {
+                skipElement(reader);
+                continue;
+            }
+            String topic = null;
+            var activity = TopicPermission.MqttActivity.ALL;
+            var qos = TopicPermission.Qos.ALL;
+            var retain = TopicPermission.Retain.ALL;
+            var sharedSubscription = TopicPermission.SharedSubscription.ALL;
+            var sharedGroup = "#";
+            while (nextChild(reader)) {
+                switch (reader.getLocalName()) {
+                    case "topic":
+                        topic = reader.getElementText();
+                        break;
+                    case "activity":
+                        activity = readEnum(reader, TopicPermission.MqttActivity.class);
+                        break;
+                    case "qos":
+                        qos = readEnum(reader, TopicPermission.Qos.class);
+                        break;
+                    case "retain":
+                        retain = readEnum(reader, TopicPermission.Retain.class);
+                        break;
+                    case "shared-subscription":
+                        sharedSubscription = readEnum(reader, TopicPermission.SharedSubscription.class);
+                        break;
+                    case "shared-group":
+                        sharedGroup = reader.getElementText();
+                        break;
+                    default:
+                        skipElement(reader);
+                }
+            }
+            final var permission = new Permission(topic);
+            permission.setActivity(activity);
+            permission.setQos(qos);
+            permission.setRetain(retain);
+            permission.setSharedSubscription(sharedSubscription);
+            permission.setSharedGroup(sharedGroup);
+            permissions.add(permission);
+        }
+        return permissions;
+    }
+
+    /**
+     * Like JAXB, surrounding whitespace is ignored and an unknown value is read as null.
+     */
+    private static <E extends Enum<E>> @Nullable E readEnum(
+            final @NotNull XMLStreamReader reader,
+            final @NotNull Class<E> type) throws XMLStreamException {
+        final var value = reader.getElementText().trim();
+        try {
+            return Enum.valueOf(type, value);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Moves to the next child element of the current element.
+     *
+     * @return true if the reader is positioned at the start of the next child element, false if the reader is
+     *         positioned at the end of the current element
+     */
+    private static boolean nextChild(final @NotNull XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            final var event = reader.next();
+            if (event == START_ELEMENT) {
+                return true;
+            }
+            if (event == END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static void skipElement(final @NotNull XMLStreamReader reader) throws XMLStreamException {
+        var depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            final var event = reader.next();
+            if (event == START_ELEMENT) {
+                depth++;
+            } else if (event == END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
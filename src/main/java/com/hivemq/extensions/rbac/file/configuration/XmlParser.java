@@ -39,6 +39,13 @@ class XmlParser {
     // JAXB context is thread safe
     private final @NotNull JAXBContext jaxb;
 
+    /**
+     * @return the parser shared by the extension, as creating a JAXB context is expensive
+     */
+    static @NotNull XmlParser shared() {
+        return SharedHolder.INSTANCE;
+    }
+
     XmlParser() {
         try {
             jaxb = JAXBContext.newInstance(FileAuthConfig.class, User.class, ExtensionConfig.class);
@@ -93,4 +100,9 @@ class XmlParser {
             throw new IOException(e);
         }
     }
+
+    private static final class SharedHolder {
+
+        private static final @NotNull XmlParser INSTANCE = new XmlParser();
+    }
 }
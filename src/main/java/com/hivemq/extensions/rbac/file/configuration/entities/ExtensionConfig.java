@@ -45,6 +45,78 @@ public class ExtensionConfig {
     @XmlElement(name = "next-extension-instead-of-fail", defaultValue = "false")
     private boolean nextExtensionInsteadOfFail = false;
 
+    @XmlElement(name = "permissions-cache-size", defaultValue = "10000")
+    private int permissionsCacheSize = 10_000;
+
+    @XmlElement(name = "hash-cache-size", defaultValue = "1000")
+    private int hashCacheSize = 1000;
+
+    @XmlElement(name = "hash-cache-ttl", defaultValue = "30")
+    private int hashCacheTtl = 30;
+
+    @XmlElement(name = "hash-cache-expire-after-access", defaultValue = "false")
+    private boolean hashCacheExpireAfterAccess = false;
+
+    @XmlElement(name = "hash-cache-max-memory", defaultValue = "0")
+    private long hashCacheMaxMemory = 0;
+
+    @XmlElement(name = "async-authentication", defaultValue = "false")
+    private boolean asyncAuthentication = false;
+
+    @XmlElement(name = "async-authentication-threads", defaultValue = "0")
+    private int asyncAuthenticationThreads = 0;
+
+    @XmlElement(name = "async-authentication-queue-size", defaultValue = "10000")
+    private int asyncAuthenticationQueueSize = 10_000;
+
+    @XmlElement(name = "async-authentication-timeout", defaultValue = "10")
+    private int asyncAuthenticationTimeout = 10;
+
+    @XmlElement(name = "negative-cache-size", defaultValue = "10000")
+    private int negativeCacheSize = 10_000;
+
+    @XmlElement(name = "negative-cache-ttl", defaultValue = "10")
+    private int negativeCacheTtl = 10;
+
+    @XmlElement(name = "username-rate-limit", defaultValue = "0")
+    private int usernameRateLimit = 0;
+
+    @XmlElement(name = "username-rate-limit-burst", defaultValue = "10")
+    private int usernameRateLimitBurst = 10;
+
+    @XmlElement(name = "ip-rate-limit", defaultValue = "0")
+    private int ipRateLimit = 0;
+
+    @XmlElement(name = "ip-rate-limit-burst", defaultValue = "10")
+    private int ipRateLimitBurst = 10;
+
+    @XmlElement(name = "rate-limit-max-keys", defaultValue = "100000")
+    private int rateLimitMaxKeys = 100_000;
+
+    @XmlElement(name = "credentials-reload-mode", defaultValue = "POLL")
+    private @Nullable ReloadMode reloadMode = ReloadMode.POLL;
+
+    @XmlElement(name = "credentials-reload-debounce", defaultValue = "500")
+    private int reloadDebounce = 500;
+
+    @XmlElement(name = "credentials-parser", defaultValue = "JAXB")
+    private @Nullable CredentialsParser credentialsParser = CredentialsParser.JAXB;
+
+    @XmlElement(name = "credentials-snapshot", defaultValue = "false")
+    private boolean credentialsSnapshot = false;
+
+    @XmlElement(name = "user-store", defaultValue = "HEAP")
+    private @Nullable UserStore userStore = UserStore.HEAP;
+
+    @XmlElement(name = "authorization-mode", defaultValue = "DEFAULT_PERMISSIONS")
+    private @Nullable AuthorizationMode authorizationMode = AuthorizationMode.DEFAULT_PERMISSIONS;
+
+    @XmlElement(name = "revoke-sessions", defaultValue = "false")
+    private boolean revokeSessions = false;
+
+    @XmlElement(name = "revocation-batch-size", defaultValue = "100")
+    private int revocationBatchSize = 100;
+
     public ExtensionConfig() {
     }
 
@@ -83,9 +155,223 @@ public class ExtensionConfig {
         return nextExtensionInsteadOfFail;
     }
 
+    public int getPermissionsCacheSize() {
+        return permissionsCacheSize;
+    }
+
+    public void setPermissionsCacheSize(final int permissionsCacheSize) {
+        this.permissionsCacheSize = permissionsCacheSize;
+    }
+
+    public int getHashCacheSize() {
+        return hashCacheSize;
+    }
+
+    public void setHashCacheSize(final int hashCacheSize) {
+        this.hashCacheSize = hashCacheSize;
+    }
+
+    public int getHashCacheTtl() {
+        return hashCacheTtl;
+    }
+
+    public void setHashCacheTtl(final int hashCacheTtl) {
+        this.hashCacheTtl = hashCacheTtl;
+    }
+
+    public boolean isHashCacheExpireAfterAccess() {
+        return hashCacheExpireAfterAccess;
+    }
+
+    public void setHashCacheExpireAfterAccess(final boolean hashCacheExpireAfterAccess) {
+        this.hashCacheExpireAfterAccess = hashCacheExpireAfterAccess;
+    }
+
+    public long getHashCacheMaxMemory() {
+        return hashCacheMaxMemory;
+    }
+
+    public void setHashCacheMaxMemory(final long hashCacheMaxMemory) {
+        this.hashCacheMaxMemory = hashCacheMaxMemory;
+    }
+
+    public boolean isAsyncAuthentication() {
+        return asyncAuthentication;
+    }
+
+    public void setAsyncAuthentication(final boolean asyncAuthentication) {
+        this.asyncAuthentication = asyncAuthentication;
+    }
+
+    public int getAsyncAuthenticationThreads() {
+        return asyncAuthenticationThreads;
+    }
+
+    public void setAsyncAuthenticationThreads(final int asyncAuthenticationThreads) {
+        this.asyncAuthenticationThreads = asyncAuthenticationThreads;
+    }
+
+    public int getAsyncAuthenticationQueueSize() {
+        return asyncAuthenticationQueueSize;
+    }
+
+    public void setAsyncAuthenticationQueueSize(final int asyncAuthenticationQueueSize) {
+        this.asyncAuthenticationQueueSize = asyncAuthenticationQueueSize;
+    }
+
+    public int getAsyncAuthenticationTimeout() {
+        return asyncAuthenticationTimeout;
+    }
+
+    public void setAsyncAuthenticationTimeout(final int asyncAuthenticationTimeout) {
+        this.asyncAuthenticationTimeout = asyncAuthenticationTimeout;
+    }
+
+    public int getNegativeCacheSize() {
+        return negativeCacheSize;
+    }
+
+    public void setNegativeCacheSize(final int negativeCacheSize) {
+        this.negativeCacheSize = negativeCacheSize;
+    }
+
+    public int getNegativeCacheTtl() {
+        return negativeCacheTtl;
+    }
+
+    public void setNegativeCacheTtl(final int negativeCacheTtl) {
+        this.negativeCacheTtl = negativeCacheTtl;
+    }
+
+    public int getUsernameRateLimit() {
+        return usernameRateLimit;
+    }
+
+    public void setUsernameRateLimit(final int usernameRateLimit) {
+        this.usernameRateLimit = usernameRateLimit;
+    }
+
+    public int getUsernameRateLimitBurst() {
+        return usernameRateLimitBurst;
+    }
+
+    public void setUsernameRateLimitBurst(final int usernameRateLimitBurst) {
+        this.usernameRateLimitBurst = usernameRateLimitBurst;
+    }
+
+    public int getIpRateLimit() {
+        return ipRateLimit;
+    }
+
+    public void setIpRateLimit(final int ipRateLimit) {
+        this.ipRateLimit = ipRateLimit;
+    }
+
+    public int getIpRateLimitBurst() {
+        return ipRateLimitBurst;
+    }
+
+    public void setIpRateLimitBurst(final int ipRateLimitBurst) {
+        this.ipRateLimitBurst = ipRateLimitBurst;
+    }
+
+    public int getRateLimitMaxKeys() {
+        return rateLimitMaxKeys;
+    }
+
+    public void setRateLimitMaxKeys(final int rateLimitMaxKeys) {
+        this.rateLimitMaxKeys = rateLimitMaxKeys;
+    }
+
+    public @Nullable ReloadMode getReloadMode() {
+        return reloadMode;
+    }
+
+    public void setReloadMode(final @Nullable ReloadMode reloadMode) {
+        this.reloadMode = reloadMode;
+    }
+
+    public int getReloadDebounce() {
+        return reloadDebounce;
+    }
+
+    public void setReloadDebounce(final int reloadDebounce) {
+        this.reloadDebounce = reloadDebounce;
+    }
+
+    public @Nullable CredentialsParser getCredentialsParser() {
+        return credentialsParser;
+    }
+
+    public void setCredentialsParser(final @Nullable CredentialsParser credentialsParser) {
+        this.credentialsParser = credentialsParser;
+    }
+
+    public boolean isCredentialsSnapshot() {
+        return credentialsSnapshot;
+    }
+
+    public void setCredentialsSnapshot(final boolean credentialsSnapshot) {
+        this.credentialsSnapshot = credentialsSnapshot;
+    }
+
+    public @Nullable UserStore getUserStore() {
+        return userStore;
+    }
+
+    public void setUserStore(final @Nullable UserStore userStore) {
+        this.userStore = userStore;
+    }
+
+    public @Nullable AuthorizationMode getAuthorizationMode() {
+        return authorizationMode;
+    }
+
+    public void setAuthorizationMode(final @Nullable AuthorizationMode authorizationMode) {
+        this.authorizationMode = authorizationMode;
+    }
+
+    public boolean isRevokeSessions() {
+        return revokeSessions;
+    }
+
+    public void setRevokeSessions(final boolean revokeSessions) {
+        this.revokeSessions = revokeSessions;
+    }
+
+    public int getRevocationBatchSize() {
+        return revocationBatchSize;
+    }
+
+    public void setRevocationBatchSize(final int revocationBatchSize) {
+        this.revocationBatchSize = revocationBatchSize;
+    }
+
     @Override
     public @NotNull String toString() {
         return "ExtensionConfig{" + "reloadInterval=" + reloadInterval + ", listenerNames=" + listenerNames +
-                ", passwordType=" + passwordType + ", nextExtensionInsteadOfFail=" + nextExtensionInsteadOfFail + '}';
+                ", passwordType=" + passwordType + ", nextExtensionInsteadOfFail=" + nextExtensionInsteadOfFail +
+                ", permissionsCacheSize=" + permissionsCacheSize + ", hashCacheSize=" + hashCacheSize +
+                ", hashCacheTtl=" + hashCacheTtl + ", hashCacheExpireAfterAccess=" + hashCacheExpireAfterAccess +
+                ", hashCacheMaxMemory=" + hashCacheMaxMemory +
+                ", asyncAuthentication=" + asyncAuthentication +
+                ", asyncAuthenticationThreads=" + asyncAuthenticationThreads +
+                ", asyncAuthenticationQueueSize=" + asyncAuthenticationQueueSize +
+                ", asyncAuthenticationTimeout=" + asyncAuthenticationTimeout +
+                ", negativeCacheSize=" + negativeCacheSize +
+                ", negativeCacheTtl=" + negativeCacheTtl +
+                ", usernameRateLimit=" + usernameRateLimit +
+                ", usernameRateLimitBurst=" + usernameRateLimitBurst +
+                ", ipRateLimit=" + ipRateLimit +
+                ", ipRateLimitBurst=" + ipRateLimitBurst +
+                ", rateLimitMaxKeys=" + rateLimitMaxKeys +
+                ", reloadMode=" + reloadMode +
+                ", reloadDebounce=" + reloadDebounce +
+                ", credentialsParser=" + credentialsParser +
+                ", credentialsSnapshot=" + credentialsSnapshot +
+                ", userStore=" + userStore +
+                ", authorizationMode=" + authorizationMode +
+                ", revokeSessions=" + revokeSessions +
+                ", revocationBatchSize=" + revocationBatchSize + '}';
     }
 }
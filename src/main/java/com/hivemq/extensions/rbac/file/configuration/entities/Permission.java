@@ -24,6 +24,8 @@ import jakarta.xml.bind.annotation.XmlType;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Objects;
+
 @XmlType(propOrder = {})
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Permission {
@@ -98,6 +100,28 @@ public class Permission {
         this.sharedGroup = sharedGroup;
     }
 
+    @Override
+    public boolean equals(final @Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Permission)) {
+            return false;
+        }
+        final var that = (Permission) o;
+        return Objects.equals(topic, that.topic) &&
+                Objects.equals(activity, that.activity) &&
+                Objects.equals(qos, that.qos) &&
+                Objects.equals(retain, that.retain) &&
+                Objects.equals(sharedSubscription, that.sharedSubscription) &&
+                Objects.equals(sharedGroup, that.sharedGroup);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(topic, activity, qos, retain, sharedSubscription, sharedGroup);
+    }
+
     @Override
     public @NotNull String toString() {
         return "Permission{" + "topic='" + topic + '\'' + ", activity=" + activity + ", qos=" + qos + ", retain=" +
@@ -25,6 +25,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.Objects;
 
 @XmlType(propOrder = {})
 @XmlAccessorType(XmlAccessType.FIELD)
@@ -54,6 +55,24 @@ public class Role {
         return permissions;
     }
 
+    @Override
+    public boolean equals(final @Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Role)) {
+            return false;
+        }
+        final var that = (Role) o;
+        return Objects.equals(id, that.id) &&
+                Objects.equals(permissions, that.permissions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, permissions);
+    }
+
     @Override
     public @NotNull String toString() {
         return "Role{" + "id='" + id + '\'' + ", permissions=" + permissions + '}';
@@ -26,6 +26,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.Objects;
 
 @XmlRootElement
 @XmlType(propOrder = {})
@@ -64,6 +65,25 @@ public class User {
         return roles;
     }
 
+    @Override
+    public boolean equals(final @Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof User)) {
+            return false;
+        }
+        final var that = (User) o;
+        return Objects.equals(name, that.name) &&
+                Objects.equals(password, that.password) &&
+                Objects.equals(roles, that.roles);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, password, roles);
+    }
+
     @Override
     public @NotNull String toString() {
         return "User{" + "name='" + name + '\'' + ", password='" + password + '\'' + ", roles=" + roles + '}';
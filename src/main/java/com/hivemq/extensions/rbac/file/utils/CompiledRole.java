@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * A {@link Role} of the credentials configuration with its permissions compiled to {@link PermissionTemplate}s, so
+ * that only the client specific parts need to be resolved when a client connects.
+ */
+@Immutable
+class CompiledRole {
+
+    private final @NotNull String id;
+    private final @NotNull List<PermissionTemplate> permissions;
+
+    private CompiledRole(final @NotNull String id, final @NotNull List<PermissionTemplate> permissions) {
+        this.id = id;
+        this.permissions = permissions;
+    }
+
+    /**
+     * @param  role     the role of the credentials configuration
+     * @param  interner shares the permissions without placeholders with equal permissions of other roles
+     * @return          the compiled role
+     */
+    static @NotNull CompiledRole compile(final @NotNull Role role, final @NotNull PermissionInterner interner) {
+        final var rolePermissions = Objects.requireNonNull(role.getPermissions());
+        final var permissions = new ArrayList<PermissionTemplate>(rolePermissions.size());
+        for (final var permission : rolePermissions) {
+            permissions.add(new PermissionTemplate(permission, interner));
+        }
+        return new CompiledRole(Objects.requireNonNull(role.getId()), unmodifiableList(permissions));
+    }
+
+    @NotNull String getId() {
+        return id;
+    }
+
+    @NotNull List<PermissionTemplate> getPermissions() {
+        return permissions;
+    }
+
+    int getPermissionCount() {
+        return permissions.size();
+    }
+}
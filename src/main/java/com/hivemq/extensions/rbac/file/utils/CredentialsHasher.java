@@ -16,55 +16,152 @@
 
 package com.hivemq.extensions.rbac.file.utils;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import com.hivemq.extensions.rbac.file.utils.Fingerprinter.Fingerprint;
 import org.jetbrains.annotations.NotNull;
 
 import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.Base64;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @ThreadSafe
 public class CredentialsHasher {
 
     static final @NotNull String HASH_CACHE_HITRATE = "com.hivemq.extensions.file-rbac.hash.cache.hitrate";
-    private static final @NotNull String HASH_TIME = "com.hivemq.extensions.file-rbac.hash.sampled-time";
+    static final @NotNull String HASH_CACHE_SIZE = Metrics.PREFIX + "hash.cache.size";
+    static final @NotNull String HASH_CACHE_EVICTIONS = Metrics.PREFIX + "hash.cache.evictions";
+    static final @NotNull String HASH_CACHE_ESTIMATED_BYTES = Metrics.PREFIX + "hash.cache.estimated-bytes";
+    static final @NotNull String HASH_COALESCED = Metrics.PREFIX + "hash.coalesced";
+    static final @NotNull String HASH_TIME = "com.hivemq.extensions.file-rbac.hash.sampled-time";
 
-    private final @NotNull MetricRegistry metricRegistry;
-    private final @NotNull Cache<String, byte[]> credentialHashCache;
+    // PBKDF2 with SHA-512 derives 512 bit
+    private static final int HASH_LENGTH = 64;
+    // rough retained size of an array header
+    private static final int ARRAY_OVERHEAD = 16;
+    // rough retained size of a cache node with expiration and weight
+    private static final int NODE_OVERHEAD = 64;
 
-    public CredentialsHasher(final @NotNull MetricRegistry metricRegistry) {
-        this.metricRegistry = metricRegistry;
-        this.credentialHashCache =
-                Caffeine.newBuilder().recordStats().expireAfterWrite(30, TimeUnit.SECONDS).maximumSize(1000).build();
+    private final @NotNull Meter hashCacheHits;
+    private final @NotNull Meter coalesced;
+    private final @NotNull Timer hashTime;
+    private final @NotNull Cache<Fingerprint, byte[]> credentialHashCache;
+    private final boolean weighted;
+    private final @NotNull Fingerprinter fingerprinter = new Fingerprinter();
+    // hashes that are currently derived, so concurrent checks of the same credentials wait for a single derivation
+    private final @NotNull ConcurrentHashMap<Fingerprint, CompletableFuture<byte[]>> inFlight =
+            new ConcurrentHashMap<>();
+
+    public CredentialsHasher(
+            final @NotNull ExtensionConfig extensionConfig,
+            final @NotNull MetricRegistry metricRegistry) {
+        hashCacheHits = metricRegistry.meter(HASH_CACHE_HITRATE);
+        coalesced = metricRegistry.meter(HASH_COALESCED);
+        hashTime = metricRegistry.timer(HASH_TIME);
+        final var builder = Caffeine.newBuilder().recordStats();
+        final var ttl = Duration.ofSeconds(extensionConfig.getHashCacheTtl());
+        if (extensionConfig.isHashCacheExpireAfterAccess()) {
+            builder.expireAfterAccess(ttl);
+        } else {
+            builder.expireAfterWrite(ttl);
+        }
+        // a memory cap replaces the entry limit, as both can not be combined
+        weighted = extensionConfig.getHashCacheMaxMemory() > 0;
+        if (weighted) {
+            credentialHashCache = builder.maximumWeight(extensionConfig.getHashCacheMaxMemory())
+                    .<Fingerprint, byte[]>weigher((key, value) -> estimateBytes(value))
+                    .build();
+        } else {
+            credentialHashCache = builder.maximumSize(extensionConfig.getHashCacheSize()).build();
+        }
+        Metrics.registerGauge(metricRegistry,
+                HASH_CACHE_SIZE,
+                (Gauge<Long>) credentialHashCache::estimatedSize);
+        Metrics.registerGauge(metricRegistry,
+                HASH_CACHE_EVICTIONS,
+                (Gauge<Long>) () -> credentialHashCache.stats().evictionCount());
+        Metrics.registerGauge(metricRegistry, HASH_CACHE_ESTIMATED_BYTES, (Gauge<Long>) this::estimatedBytes);
     }
 
     public boolean checkCredentials(
             final @NotNull String base64Password,
             final @NotNull String saltPasswordFromConfig) {
-        final var saltPw = saltPasswordFromConfig.split(":");
-        if (saltPw.length != 3) {
-            return false;
-        }
-        final var saltFromConfigBase64 = saltPw[0];
-        final var iterations = Integer.parseInt(saltPw[1]);
-        final var passwordHashFromConfigBase64 = saltPw[2];
-        final var cacheString = base64Password + saltFromConfigBase64 + iterations;
-        var credentialsHash = credentialHashCache.getIfPresent(cacheString);
-        if (credentialsHash != null) {
+        return checkCredentials(Base64.getDecoder().decode(base64Password), saltPasswordFromConfig);
+    }
+
+    public boolean checkCredentials(final byte @NotNull [] password, final @NotNull String saltPasswordFromConfig) {
+        final var hashedPassword = HashedPassword.parse(saltPasswordFromConfig);
+        return hashedPassword != null && checkCredentials(password, hashedPassword);
+    }
+
+    /**
+     * @param  password       the password sent by the client
+     * @param  hashedPassword the hashed password from the credentials configuration
+     * @return                true if the password matches the hashed password
+     */
+    public boolean checkCredentials(final byte @NotNull [] password, final @NotNull HashedPassword hashedPassword) {
+        final var cacheKey = fingerprinter.fingerprint(password, hashedPassword);
+        final var cachedHash = credentialHashCache.getIfPresent(cacheKey);
+        if (cachedHash != null) {
             // found in cache
-            metricRegistry.meter(HASH_CACHE_HITRATE).mark();
-        } else {
-            // not found in cache
-            final var timer = metricRegistry.timer(HASH_TIME);
-            try (final var ignored = timer.time()) {
-                credentialsHash = Hashing.createHash(base64Password, saltFromConfigBase64, iterations);
+            hashCacheHits.mark();
+            return matches(cachedHash, hashedPassword);
+        }
+        // not found in cache
+        final var derivation = new CompletableFuture<byte[]>();
+        final var runningDerivation = inFlight.putIfAbsent(cacheKey, derivation);
+        if (runningDerivation != null) {
+            // the same credentials are checked concurrently, wait for their hash instead of deriving it again
+            coalesced.mark();
+            return matches(runningDerivation.join(), hashedPassword);
+        }
+        try {
+            // a derivation may have finished between the cache lookup and the registration of this derivation
+            var credentialsHash = credentialHashCache.getIfPresent(cacheKey);
+            if (credentialsHash != null) {
+                hashCacheHits.mark();
+            } else {
+                try (final var ignored = hashTime.time()) {
+                    credentialsHash =
+                            Hashing.createHash(password, hashedPassword.getSalt(), hashedPassword.getIterations());
+                }
+                // cached before the derivation is removed, so later checks find either the derivation or the hash
+                credentialHashCache.put(cacheKey, credentialsHash);
             }
-            credentialHashCache.put(cacheString, credentialsHash);
+            derivation.complete(credentialsHash);
+            return matches(credentialsHash, hashedPassword);
+        } catch (final RuntimeException e) {
+            derivation.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, derivation);
         }
+    }
+
+    private static boolean matches(
+            final byte @NotNull [] credentialsHash,
+            final @NotNull HashedPassword hashedPassword) {
         // we use a time constant equality check for passwords to avoid timing attacks
-        return MessageDigest.isEqual(credentialsHash, Base64.getDecoder().decode(passwordHashFromConfigBase64));
+        return MessageDigest.isEqual(credentialsHash, hashedPassword.getHash());
+    }
+
+    private long estimatedBytes() {
+        if (weighted) {
+            return credentialHashCache.policy().eviction().orElseThrow().weightedSize().orElse(0);
+        }
+        // all entries have the same size
+        return credentialHashCache.estimatedSize() * estimateBytes(new byte[HASH_LENGTH]);
+    }
+
+    private static int estimateBytes(final byte @NotNull [] value) {
+        return NODE_OVERHEAD + Fingerprint.SIZE + ARRAY_OVERHEAD + value.length;
     }
 }
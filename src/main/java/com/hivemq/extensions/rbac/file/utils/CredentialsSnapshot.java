@@ -0,0 +1,449 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import com.hivemq.extensions.rbac.file.configuration.ConfigDiff;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * The users and compiled roles of one credentials configuration.
+ * <p>
+ * A snapshot is never modified, a reload replaces it as a whole, so a CONNECT always checks the credentials and
+ * resolves the permissions against the same configuration.
+ * <p>
+ * Users with the same roles share a {@link RoleSet}, which is looked up by the role ids of a user. A reload only
+ * compiles the role combinations again that contain a changed role.
+ * <p>
+ * The users are either kept on the heap or in an {@link OffHeapUserIndex}. The changes of reloads are kept on the heap
+ * on top of the index, until there are too many of them and they are merged into a new index.
+ */
+@Immutable
+class CredentialsSnapshot {
+
+    private static final @NotNull Logger LOG = LoggerFactory.getLogger(CredentialsSnapshot.class);
+
+    static final @NotNull CredentialsSnapshot EMPTY =
+            new CredentialsSnapshot(Map.of(), null, 0, Map.of(), Map.of(), new PermissionInterner(), 0);
+
+    // the changes are merged into a new index if they exceed this share of the users of the index
+    private static final int MAX_CHANGES_RATIO = 8;
+    private static final int MIN_MAX_CHANGES = 1024;
+    // a user of the index that was removed by a reload
+    private static final @NotNull StoredUser REMOVED = new StoredUser(null, null, List.of());
+
+    // all users or the changes on top of the user index
+    private final @NotNull Map<String, StoredUser> users;
+    private final @Nullable OffHeapUserIndex userIndex;
+    private final int userCount;
+    private final @NotNull Map<String, CompiledRole> roles;
+    // the role combinations of the users by their role ids, the users share the role id lists of the combinations
+    private final @NotNull Map<List<String>, RoleSet> roleSets;
+    // not modified after the snapshot is built
+    private final @NotNull PermissionInterner permissionInterner;
+    private final int eliminatedPermissionCount;
+    private final long generation;
+
+    private CredentialsSnapshot(
+            final @NotNull Map<String, StoredUser> users,
+            final @Nullable OffHeapUserIndex userIndex,
+            final int userCount,
+            final @NotNull Map<String, CompiledRole> roles,
+            final @NotNull Map<List<String>, RoleSet> roleSets,
+            final @NotNull PermissionInterner permissionInterner,
+            final long generation) {
+        this.users = users;
+        this.userIndex = userIndex;
+        this.userCount = userCount;
+        this.roles = roles;
+        this.roleSets = roleSets;
+        this.permissionInterner = permissionInterner;
+        var eliminatedPermissionCount = 0;
+        for (final var roleSet : roleSets.values()) {
+            eliminatedPermissionCount += roleSet.getEliminatedCount();
+        }
+        this.eliminatedPermissionCount = eliminatedPermissionCount;
+        this.generation = generation;
+    }
+
+    /**
+     * @param  config     the validated credentials configuration
+     * @param  hashed     true if the passwords are hashed
+     * @param  offHeap    true if the users are kept in an {@link OffHeapUserIndex}
+     * @param  generation the generation of the snapshot, must be greater than the one of the previous snapshot
+     * @return            the snapshot of the configuration
+     */
+    static @NotNull CredentialsSnapshot build(
+            final @NotNull FileAuthConfig config,
+            final boolean hashed,
+            final boolean offHeap,
+            final long generation) {
+        final var interner = new PermissionInterner();
+        final var configRoles = Objects.requireNonNull(config.getRoles());
+        final var roles = new HashMap<String, CompiledRole>(configRoles.size() * 4 / 3 + 1);
+        for (final var role : configRoles) {
+            putRole(roles, role, interner);
+        }
+        final var roleSets = new HashMap<List<String>, RoleSet>();
+        final var configUsers = Objects.requireNonNull(config.getUsers());
+        if (offHeap) {
+            final var builder = OffHeapUserIndex.builder(configUsers.size());
+            for (final var user : configUsers) {
+                final var storedUser = toStoredUser(user, hashed, internRoles(roleSets, roles, interner, user));
+                if (storedUser != null) {
+                    builder.add(Objects.requireNonNull(user.getName()), storedUser);
+                }
+            }
+            final var userIndex = builder.build();
+            return new CredentialsSnapshot(Map.of(),
+                    userIndex,
+                    userIndex.size(),
+                    unmodifiableMap(roles),
+                    unmodifiableMap(roleSets),
+                    interner,
+                    generation);
+        }
+        final var users = new HashMap<String, StoredUser>(configUsers.size() * 4 / 3 + 1);
+        for (final var user : configUsers) {
+            putUser(users, user, hashed, internRoles(roleSets, roles, interner, user));
+        }
+        return new CredentialsSnapshot(unmodifiableMap(users),
+                null,
+                users.size(),
+                unmodifiableMap(roles),
+                unmodifiableMap(roleSets),
+                interner,
+                generation);
+    }
+
+    /**
+     * Applies the changes of a reload to a copy of this snapshot. The users and roles that did not change are the same
+     * instances in both snapshots, so their passwords are not decoded and their permissions are not compiled again.
+     *
+     * @param  diff       the changes from the config of this snapshot to the new config
+     * @param  hashed     true if the passwords are hashed
+     * @param  generation the generation of the new snapshot, must be greater than the one of this snapshot
+     * @return            the snapshot of the new config
+     */
+    @NotNull CredentialsSnapshot apply(final @NotNull ConfigDiff diff, final boolean hashed, final long generation) {
+        // the roles of a reload share the permissions of the previous roles
+        final var interner = new PermissionInterner();
+        final var roles = applyRoles(diff, interner);
+        final var roleSets = applyRoleSets(roles, interner);
+        if (userIndex != null) {
+            return applyUsersToIndex(userIndex, diff, hashed, roles, roleSets, interner, generation);
+        }
+        final var users = new HashMap<>(this.users);
+        for (final var userName : diff.getRemovedUsers()) {
+            users.remove(userName);
+        }
+        for (final var user : diff.getAddedUsers()) {
+            putUser(users, user, hashed, internRoles(roleSets, roles, interner, user));
+        }
+        for (final var user : diff.getChangedUsers()) {
+            putUser(users, user, hashed, internRoles(roleSets, roles, interner, user));
+        }
+        return new CredentialsSnapshot(unmodifiableMap(users),
+                null,
+                users.size(),
+                roles,
+                unmodifiableMap(roleSets),
+                interner,
+                generation);
+    }
+
+    private @NotNull CredentialsSnapshot applyUsersToIndex(
+            final @NotNull OffHeapUserIndex userIndex,
+            final @NotNull ConfigDiff diff,
+            final boolean hashed,
+            final @NotNull Map<String, CompiledRole> roles,
+            final @NotNull Map<List<String>, RoleSet> roleSets,
+            final @NotNull PermissionInterner interner,
+            final long generation) {
+        final var changes = new HashMap<>(users);
+        for (final var userName : diff.getRemovedUsers()) {
+            changes.put(userName, REMOVED);
+        }
+        for (final var user : diff.getAddedUsers()) {
+            putChangedUser(changes, user, hashed, internRoles(roleSets, roles, interner, user));
+        }
+        for (final var user : diff.getChangedUsers()) {
+            putChangedUser(changes, user, hashed, internRoles(roleSets, roles, interner, user));
+        }
+        if (changes.size() > Math.max(MIN_MAX_CHANGES, userIndex.size() / MAX_CHANGES_RATIO)) {
+            final var builder = OffHeapUserIndex.builder(userIndex.size() + changes.size(), userIndex)
+                    .copyBase(userName -> !changes.containsKey(userName));
+            changes.forEach((userName, user) -> {
+                if (user != REMOVED) {
+                    builder.add(userName, user);
+                }
+            });
+            final var newUserIndex = builder.build();
+            return new CredentialsSnapshot(Map.of(),
+                    newUserIndex,
+                    newUserIndex.size(),
+                    roles,
+                    unmodifiableMap(roleSets),
+                    interner,
+                    generation);
+        }
+        var userCount = userIndex.size();
+        for (final var change : changes.entrySet()) {
+            final var indexed = userIndex.contains(change.getKey());
+            if (indexed && change.getValue() == REMOVED) {
+                userCount--;
+            } else if (!indexed && change.getValue() != REMOVED) {
+                userCount++;
+            }
+        }
+        return new CredentialsSnapshot(unmodifiableMap(changes),
+                userIndex,
+                userCount,
+                roles,
+                unmodifiableMap(roleSets),
+                interner,
+                generation);
+    }
+
+    private @NotNull Map<String, CompiledRole> applyRoles(
+            final @NotNull ConfigDiff diff,
+            final @NotNull PermissionInterner interner) {
+        final var roles = new HashMap<>(this.roles);
+        for (final var roleId : diff.getRemovedRoles()) {
+            roles.remove(roleId);
+        }
+        for (final var role : diff.getChangedRoles()) {
+            roles.remove(Objects.requireNonNull(role.getId()));
+        }
+        for (final var role : roles.values()) {
+            interner.add(role);
+        }
+        for (final var role : diff.getAddedRoles()) {
+            putRole(roles, role, interner);
+        }
+        for (final var role : diff.getChangedRoles()) {
+            putRole(roles, role, interner);
+        }
+        return unmodifiableMap(roles);
+    }
+
+    private @NotNull Map<List<String>, RoleSet> applyRoleSets(
+            final @NotNull Map<String, CompiledRole> roles,
+            final @NotNull PermissionInterner interner) {
+        final var roleSets = new HashMap<List<String>, RoleSet>(this.roleSets.size() * 4 / 3 + 1);
+        final var changedRoleIds = new ArrayList<List<String>>();
+        for (final var roleSet : this.roleSets.values()) {
+            if (roleSet.isCompiledFrom(roles)) {
+                interner.add(roleSet);
+                roleSets.put(roleSet.getRoleIds(), roleSet);
+            } else if (roles.keySet().containsAll(roleSet.getRoleIds())) {
+                changedRoleIds.add(roleSet.getRoleIds());
+            }
+        }
+        for (final var roleIds : changedRoleIds) {
+            // the users keep the role ids of the combination, only its permissions change
+            final var changedRoleSet = RoleSet.of(roleIds, roles, interner);
+            roleSets.put(changedRoleSet.getRoleIds(), changedRoleSet);
+        }
+        return roleSets;
+    }
+
+    /**
+     * @return the role ids of the user, shared by all users with the same roles
+     */
+    private static @NotNull List<String> internRoles(
+            final @NotNull Map<List<String>, RoleSet> roleSets,
+            final @NotNull Map<String, CompiledRole> roles,
+            final @NotNull PermissionInterner interner,
+            final @NotNull User user) {
+        final var roleIds = Objects.requireNonNull(user.getRoles());
+        final var roleSet = roleSets.get(roleIds);
+        if (roleSet != null) {
+            return roleSet.getRoleIds();
+        }
+        final var newRoleSet = RoleSet.of(roleIds, roles, interner);
+        roleSets.put(newRoleSet.getRoleIds(), newRoleSet);
+        return newRoleSet.getRoleIds();
+    }
+
+    private static void putUser(
+            final @NotNull Map<String, StoredUser> users,
+            final @NotNull User user,
+            final boolean hashed,
+            final @NotNull List<String> roleIds) {
+        final var name = Objects.requireNonNull(user.getName());
+        final var storedUser = toStoredUser(user, hashed, roleIds);
+        if (storedUser == null) {
+            // a changed user must not keep its previous password
+            users.remove(name);
+        } else {
+            users.put(name, storedUser);
+        }
+    }
+
+    private static void putChangedUser(
+            final @NotNull Map<String, StoredUser> changes,
+            final @NotNull User user,
+            final boolean hashed,
+            final @NotNull List<String> roleIds) {
+        final var storedUser = toStoredUser(user, hashed, roleIds);
+        // a changed user must not keep its previous password
+        changes.put(Objects.requireNonNull(user.getName()), storedUser == null ? REMOVED : storedUser);
+    }
+
+    private static @Nullable StoredUser toStoredUser(
+            final @NotNull User user,
+            final boolean hashed,
+            final @NotNull List<String> roleIds) {
+        final var password = Objects.requireNonNull(user.getPassword());
+        if (hashed) {
+            // decode the hashed password once per reload instead of once per CONNECT
+            final var hashedPassword = HashedPassword.parse(password);
+            if (hashedPassword == null) {
+                LOG.warn("User '{}' has a malformed hashed password, denying all connections of the user.",
+                        user.getName());
+                return null;
+            }
+            return new StoredUser(null, hashedPassword, roleIds);
+        }
+        return new StoredUser(password, null, roleIds);
+    }
+
+    private static void putRole(
+            final @NotNull Map<String, CompiledRole> roles,
+            final @NotNull Role role,
+            final @NotNull PermissionInterner interner) {
+        // compile the permissions once per reload instead of once per CONNECT
+        final var compiledRole = CompiledRole.compile(role, interner);
+        roles.put(compiledRole.getId(), compiledRole);
+    }
+
+    /**
+     * @return true if the snapshot has no users or no roles, so no client can connect
+     */
+    boolean isEmpty() {
+        return userCount == 0 || roles.isEmpty();
+    }
+
+    /**
+     * @param  userName the name of the user
+     * @return          the user or null if the snapshot does not contain the user, a user of the off-heap index is a
+     *                  new instance on every call
+     */
+    @Nullable StoredUser getUser(final @NotNull String userName) {
+        final var user = users.get(userName);
+        if (user != null) {
+            return user == REMOVED ? null : user;
+        }
+        return userIndex == null ? null : userIndex.get(userName);
+    }
+
+    @NotNull CompiledRole getRole(final @NotNull String roleId) {
+        // the configuration validation guarantees that all roles of the users exist
+        return Objects.requireNonNull(roles.get(roleId));
+    }
+
+    @Nullable CompiledRole findRole(final @NotNull String roleId) {
+        return roles.get(roleId);
+    }
+
+    /**
+     * @param  roleIds the role ids of a user
+     * @return         the role combination, shared by all users with these roles
+     */
+    @NotNull RoleSet getRoleSet(final @NotNull List<String> roleIds) {
+        final var roleSet = roleSets.get(roleIds);
+        // only a combination that no user has is not known
+        return roleSet == null ? RoleSet.of(roleIds, roles, new PermissionInterner()) : roleSet;
+    }
+
+    /**
+     * @return the number of distinct permission lists of static role combinations
+     */
+    int getPermissionSetCount() {
+        return permissionInterner.getPermissionSetCount();
+    }
+
+    /**
+     * @return the estimated bytes saved by sharing equal permissions and permission lists
+     */
+    long getPermissionBytesSaved() {
+        return permissionInterner.getSavedBytes();
+    }
+
+    /**
+     * @return the number of duplicate and subsumed permissions left out of the role combinations
+     */
+    int getEliminatedPermissionCount() {
+        return eliminatedPermissionCount;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the bytes outside of the heap used by the users of this snapshot
+     */
+    long getOffHeapBytes() {
+        return userIndex == null ? 0 : userIndex.getAllocatedBytes();
+    }
+
+    @Immutable
+    static final class StoredUser {
+
+        // exactly one of the passwords is set, depending on the password type
+        private final @Nullable String password;
+        private final @Nullable HashedPassword hashedPassword;
+        private final @NotNull List<String> roles;
+
+        StoredUser(
+                final @Nullable String password,
+                final @Nullable HashedPassword hashedPassword,
+                final @NotNull List<String> roles) {
+            this.password = password;
+            this.hashedPassword = hashedPassword;
+            this.roles = roles;
+        }
+
+        @Nullable String getPassword() {
+            return password;
+        }
+
+        @Nullable HashedPassword getHashedPassword() {
+            return hashedPassword;
+        }
+
+        @NotNull List<String> getRoles() {
+            return roles;
+        }
+    }
+}
@@ -16,42 +16,69 @@
 
 package com.hivemq.extensions.rbac.file.utils;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
 import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
-import com.hivemq.extension.sdk.api.services.builder.Builders;
+import com.hivemq.extensions.rbac.file.configuration.ConfigDiff;
 import com.hivemq.extensions.rbac.file.configuration.CredentialsConfiguration;
 import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
 import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
 import com.hivemq.extensions.rbac.file.configuration.entities.PasswordType;
-import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
-import com.hivemq.extensions.rbac.file.configuration.entities.Role;
-import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import com.hivemq.extensions.rbac.file.configuration.entities.UserStore;
+import com.hivemq.extensions.rbac.file.utils.CredentialsSnapshot.StoredUser;
+import com.hivemq.extensions.rbac.file.utils.Fingerprinter.Fingerprint;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Base64;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @ThreadSafe
 public class CredentialsValidator {
 
+    static final @NotNull String PERMISSIONS_CACHE_HITS = Metrics.PREFIX + "permissions.cache.hits";
+    static final @NotNull String PERMISSIONS_CACHE_MISSES = Metrics.PREFIX + "permissions.cache.misses";
+    static final @NotNull String PERMISSIONS_CACHE_EVICTIONS = Metrics.PREFIX + "permissions.cache.evictions";
+    static final @NotNull String NEGATIVE_CACHE_HITS = Metrics.PREFIX + "negative.cache.hits";
+    static final @NotNull String USERS_OFF_HEAP_BYTES = Metrics.PREFIX + "users.off-heap.bytes";
+    static final @NotNull String PERMISSION_SETS = Metrics.PREFIX + "permissions.sets.distinct";
+    static final @NotNull String PERMISSION_SETS_SAVED_BYTES =
+            Metrics.PREFIX + "permissions.sets.estimated-saved-bytes";
+    static final @NotNull String PERMISSIONS_ELIMINATED = Metrics.PREFIX + "permissions.minimized.eliminated";
+    static final @NotNull String STAGE_USER_LOOKUP = Metrics.PREFIX + "connect.stage.user-lookup";
+    static final @NotNull String STAGE_HASH = Metrics.PREFIX + "connect.stage.hash";
+    static final @NotNull String STAGE_PERMISSIONS = Metrics.PREFIX + "connect.stage.permissions";
+
     private final @NotNull CredentialsConfiguration credentialsConfiguration;
     private final @NotNull ExtensionConfig extensionConfig;
     private final @NotNull CredentialsHasher credentialsHasher;
-    private final @NotNull ReadWriteLock usersLock = new ReentrantReadWriteLock();
-    private final @NotNull ReadWriteLock rolesLock = new ReentrantReadWriteLock();
-    private @NotNull Map<String, User> users = new ConcurrentHashMap<>();
-    private @NotNull Map<String, Role> roles = new ConcurrentHashMap<>();
+    // replaced as a whole on every reload, so a CONNECT never sees users and roles of different configurations
+    private volatile @NotNull CredentialsSnapshot snapshot = CredentialsSnapshot.EMPTY;
+    // the config the snapshot was built from, only accessed by init and the reload callback
+    private @Nullable FileAuthConfig snapshotConfig;
+    // null if the permissions cache is disabled
+    private final @Nullable Cache<PermissionsKey, List<TopicPermission>> permissionsCache;
+    // null if the negative cache is disabled, the values are the hashed passwords the credentials were rejected by
+    private final @Nullable Cache<Fingerprint, HashedPassword> negativeCache;
+    private final @NotNull Fingerprinter fingerprinter = new Fingerprinter();
+    private final @NotNull Meter negativeCacheHits;
+    // the stages of an authentication, so a slow CONNECT can be attributed to the lookup, hashing or permissions
+    private final @NotNull Timer userLookupTime;
+    private final @NotNull Timer hashTime;
+    private final @NotNull Timer permissionsTime;
 
     public CredentialsValidator(
             final @NotNull CredentialsConfiguration credentialsConfiguration,
@@ -59,129 +86,293 @@ public class CredentialsValidator {
             final @NotNull MetricRegistry metricRegistry) {
         this.credentialsConfiguration = credentialsConfiguration;
         this.extensionConfig = extensionConfig;
-        this.credentialsHasher = new CredentialsHasher(metricRegistry);
+        this.credentialsHasher = new CredentialsHasher(extensionConfig, metricRegistry);
+        if (extensionConfig.getPermissionsCacheSize() > 0) {
+            final Cache<PermissionsKey, List<TopicPermission>> permissionsCache = Caffeine.newBuilder()
+                    .recordStats()
+                    .maximumSize(extensionConfig.getPermissionsCacheSize())
+                    .build();
+            Metrics.registerGauge(metricRegistry,
+                    PERMISSIONS_CACHE_HITS,
+                    (Gauge<Long>) () -> permissionsCache.stats().hitCount());
+            Metrics.registerGauge(metricRegistry,
+                    PERMISSIONS_CACHE_MISSES,
+                    (Gauge<Long>) () -> permissionsCache.stats().missCount());
+            Metrics.registerGauge(metricRegistry,
+                    PERMISSIONS_CACHE_EVICTIONS,
+                    (Gauge<Long>) () -> permissionsCache.stats().evictionCount());
+            this.permissionsCache = permissionsCache;
+        } else {
+            this.permissionsCache = null;
+        }
+        // plain passwords are compared faster than a cache lookup
+        if (extensionConfig.getPasswordType() == PasswordType.HASHED && extensionConfig.getNegativeCacheSize() > 0) {
+            negativeCache = Caffeine.newBuilder()
+                    .maximumSize(extensionConfig.getNegativeCacheSize())
+                    .expireAfterWrite(Duration.ofSeconds(extensionConfig.getNegativeCacheTtl()))
+                    .build();
+        } else {
+            negativeCache = null;
+        }
+        negativeCacheHits = metricRegistry.meter(NEGATIVE_CACHE_HITS);
+        userLookupTime = metricRegistry.timer(STAGE_USER_LOOKUP);
+        hashTime = metricRegistry.timer(STAGE_HASH);
+        permissionsTime = metricRegistry.timer(STAGE_PERMISSIONS);
+        Metrics.registerGauge(metricRegistry, PERMISSION_SETS, (Gauge<Integer>) () -> snapshot.getPermissionSetCount());
+        Metrics.registerGauge(metricRegistry,
+                PERMISSION_SETS_SAVED_BYTES,
+                (Gauge<Long>) () -> snapshot.getPermissionBytesSaved());
+        Metrics.registerGauge(metricRegistry,
+                PERMISSIONS_ELIMINATED,
+                (Gauge<Integer>) () -> snapshot.getEliminatedPermissionCount());
+        if (extensionConfig.getUserStore() == UserStore.OFF_HEAP) {
+            Metrics.registerGauge(metricRegistry,
+                    USERS_OFF_HEAP_BYTES,
+                    (Gauge<Long>) () -> snapshot.getOffHeapBytes());
+        }
     }
 
     public void init() {
         final var currentConfig = credentialsConfiguration.getCurrentConfig();
         if (currentConfig != null) {
-            updateUsersMap(currentConfig);
-            updateRolesMap(currentConfig);
+            rebuildSnapshot(currentConfig);
         }
-        credentialsConfiguration.addReloadCallback((oldConfig, newConfig) -> {
-            updateUsersMap(newConfig);
-            updateRolesMap(newConfig);
+        credentialsConfiguration.addReloadCallback(new CredentialsConfiguration.ReloadCallback() {
+            @Override
+            public void onReload(final @Nullable FileAuthConfig oldConfig, final @NotNull FileAuthConfig newConfig) {
+                rebuildSnapshot(newConfig);
+            }
+
+            @Override
+            public void onReload(
+                    final @Nullable FileAuthConfig oldConfig,
+                    final @NotNull FileAuthConfig newConfig,
+                    final @NotNull ConfigDiff diff) {
+                if (oldConfig == snapshotConfig) {
+                    applyDiff(newConfig, diff);
+                } else {
+                    // the diff is not based on the config of the snapshot
+                    rebuildSnapshot(newConfig);
+                }
+            }
         });
     }
 
+    /**
+     * Checks the credentials of a client and resolves its permissions against the same credentials configuration,
+     * even if the configuration is reloaded concurrently.
+     *
+     * @param  clientId the client identifier
+     * @param  userName the userName
+     * @param  password the password
+     * @return          the permissions of the client or null if the credentials are not valid or the user has no roles
+     */
+    public @Nullable List<TopicPermission> authenticate(
+            final @NotNull String clientId,
+            final @NotNull String userName,
+            final @NotNull ByteBuffer password) {
+        final var snapshot = this.snapshot;
+        final var roles = getRoles(snapshot, userName, password);
+        if (roles == null || roles.isEmpty()) {
+            return null;
+        }
+        return getPermissions(snapshot, clientId, userName, roles);
+    }
+
+    /**
+     * @return the generation of the credentials configuration, it increases with every reload
+     */
+    public long getGeneration() {
+        return snapshot.getGeneration();
+    }
+
     /**
      * @param  userName the userName
      * @param  password the password
      * @return          a list of the users roles or null if the credentials are not valid
      */
     public @Nullable List<String> getRoles(final @NotNull String userName, final @NotNull ByteBuffer password) {
+        return getRoles(snapshot, userName, password);
+    }
+
+    private @Nullable List<String> getRoles(
+            final @NotNull CredentialsSnapshot snapshot,
+            final @NotNull String userName,
+            final @NotNull ByteBuffer password) {
         // if config is invalid do not allow clients to connect
-        if (users.isEmpty() || roles.isEmpty()) {
+        if (snapshot.isEmpty()) {
             return null;
         }
-        final var readLock = usersLock.readLock();
-        readLock.lock();
-        final User user;
-        try {
-            user = users.get(userName);
-        } finally {
-            readLock.unlock();
-        }
-        if (user == null || user.getPassword() == null) {
+        final var lookupStart = System.nanoTime();
+        final var user = snapshot.getUser(userName);
+        final var hashStart = System.nanoTime();
+        userLookupTime.update(hashStart - lookupStart, TimeUnit.NANOSECONDS);
+        if (user == null) {
             return null;
         }
-        if (extensionConfig.getPasswordType() == PasswordType.HASHED) {
-            final var base64Password = encodePassword(password);
-            final var passwordsEqual = credentialsHasher.checkCredentials(base64Password, user.getPassword());
-            if (!passwordsEqual) {
-                return null;
-            }
-        } else {
-            if (!user.getPassword().equals(StandardCharsets.UTF_8.decode(password).toString())) {
-                return null;
-            }
+        final var passwordsEqual = checkPassword(user, userName, password);
+        hashTime.update(System.nanoTime() - hashStart, TimeUnit.NANOSECONDS);
+        return passwordsEqual ? user.getRoles() : null;
+    }
+
+    private boolean checkPassword(
+            final @NotNull StoredUser user,
+            final @NotNull String userName,
+            final @NotNull ByteBuffer password) {
+        final var hashedPassword = user.getHashedPassword();
+        if (hashedPassword == null) {
+            return Objects.equals(user.getPassword(), StandardCharsets.UTF_8.decode(password).toString());
         }
-        return user.getRoles();
+        final var passwordBytes = new byte[password.remaining()];
+        password.get(passwordBytes);
+        final var passwordsEqual = checkHashedPassword(userName, passwordBytes, hashedPassword);
+        // do not keep the plaintext password on the heap longer than needed
+        Arrays.fill(passwordBytes, (byte) 0);
+        return passwordsEqual;
+    }
+
+    private boolean checkHashedPassword(
+            final @NotNull String userName,
+            final byte @NotNull [] password,
+            final @NotNull HashedPassword hashedPassword) {
+        if (negativeCache == null) {
+            return credentialsHasher.checkCredentials(password, hashedPassword);
+        }
+        final var fingerprint = fingerprinter.fingerprint(userName, password);
+        // a user whose password changed has another salt and hash
+        if (hashedPassword.equals(negativeCache.getIfPresent(fingerprint))) {
+            negativeCacheHits.mark();
+            return false;
+        }
+        final var passwordsEqual = credentialsHasher.checkCredentials(password, hashedPassword);
+        if (!passwordsEqual) {
+            negativeCache.put(fingerprint, hashedPassword);
+        }
+        return passwordsEqual;
     }
 
     public @NotNull List<TopicPermission> getPermissions(
             final @NotNull String clientId,
             final @NotNull String userName,
             final @NotNull List<String> clientRoles) {
+        return getPermissions(snapshot, clientId, userName, clientRoles);
+    }
+
+    private @NotNull List<TopicPermission> getPermissions(
+            final @NotNull CredentialsSnapshot snapshot,
+            final @NotNull String clientId,
+            final @NotNull String userName,
+            final @NotNull List<String> clientRoles) {
         if (clientRoles.isEmpty()) {
             return Collections.emptyList();
         }
-        final var topicPermissions = new ArrayList<TopicPermission>();
-        for (final var clientRole : clientRoles) {
-            final var role = roles.get(clientRole);
-            for (final var permission : Objects.requireNonNull(role.getPermissions())) {
-                topicPermissions.add(toTopicPermission(clientId, userName, permission));
-            }
+        final var start = System.nanoTime();
+        try {
+            return resolvePermissions(snapshot, clientId, userName, clientRoles);
+        } finally {
+            permissionsTime.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
-        return topicPermissions;
     }
 
-    private @NotNull String encodePassword(final @NotNull ByteBuffer password) {
-        final var passwordBytes = new byte[password.remaining()];
-        password.get(passwordBytes);
-        return Base64.getEncoder().encodeToString(passwordBytes);
+    private @NotNull List<TopicPermission> resolvePermissions(
+            final @NotNull CredentialsSnapshot snapshot,
+            final @NotNull String clientId,
+            final @NotNull String userName,
+            final @NotNull List<String> clientRoles) {
+        final var roleSet = snapshot.getRoleSet(clientRoles);
+        // the permissions of a static role combination are shared by all clients, so there is nothing to cache
+        if (roleSet.isStatic() || permissionsCache == null) {
+            return roleSet.resolve(clientId, userName);
+        }
+        // role combinations without changed roles keep their instance across reloads, so their cached permissions
+        // stay valid
+        final var key = new PermissionsKey(userName, clientId, roleSet);
+        return permissionsCache.get(key, k -> Collections.unmodifiableList(roleSet.resolve(clientId, userName)));
     }
 
-    private void updateUsersMap(final @NotNull FileAuthConfig config) {
-        final var newUsers = config.getUsers();
-        final var newUsersMap = new ConcurrentHashMap<String, User>(Objects.requireNonNull(newUsers).size());
-        for (final var newUser : newUsers) {
-            newUsersMap.put(Objects.requireNonNull(newUser.getName()), newUser);
+    // a single writer, as the configuration is loaded and reloaded by one task
+    private void rebuildSnapshot(final @NotNull FileAuthConfig config) {
+        snapshot = CredentialsSnapshot.build(config,
+                isHashed(),
+                extensionConfig.getUserStore() == UserStore.OFF_HEAP,
+                snapshot.getGeneration() + 1);
+        snapshotConfig = config;
+        if (permissionsCache != null) {
+            permissionsCache.invalidateAll();
         }
-        final var writeLock = usersLock.writeLock();
-        writeLock.lock();
-        try {
-            users = newUsersMap;
-        } finally {
-            writeLock.unlock();
+        if (negativeCache != null) {
+            negativeCache.invalidateAll();
         }
     }
 
-    private void updateRolesMap(final @NotNull FileAuthConfig config) {
-        final var newRoles = config.getRoles();
-        final var newRolesMap = new ConcurrentHashMap<String, Role>(Objects.requireNonNull(newRoles).size());
-        for (final var newRole : newRoles) {
-            newRolesMap.put(Objects.requireNonNull(newRole.getId()), newRole);
+    private void applyDiff(final @NotNull FileAuthConfig config, final @NotNull ConfigDiff diff) {
+        final var previousSnapshot = snapshot;
+        snapshot = previousSnapshot.apply(diff, isHashed(), previousSnapshot.getGeneration() + 1);
+        snapshotConfig = config;
+        // the rejections of changed users are not hit anymore, as their hashed passwords differ
+        if (permissionsCache != null) {
+            final Set<CompiledRole> staleRoles = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (final var role : diff.getChangedRoles()) {
+                addIfPresent(staleRoles, previousSnapshot.findRole(Objects.requireNonNull(role.getId())));
+            }
+            for (final var roleId : diff.getRemovedRoles()) {
+                addIfPresent(staleRoles, previousSnapshot.findRole(roleId));
+            }
+            if (!staleRoles.isEmpty()) {
+                permissionsCache.asMap().keySet().removeIf(key -> key.containsAny(staleRoles));
+            }
         }
-        final var writeLock = rolesLock.writeLock();
-        writeLock.lock();
-        try {
-            roles = newRolesMap;
-        } finally {
-            writeLock.unlock();
+    }
+
+    private static void addIfPresent(final @NotNull Set<CompiledRole> roles, final @Nullable CompiledRole role) {
+        if (role != null) {
+            roles.add(role);
         }
     }
 
-    private @NotNull TopicPermission toTopicPermission(
-            final @NotNull String clientId,
-            final @NotNull String userName,
-            final @NotNull Permission permission) {
-        return Builders.topicPermission()
-                .topicFilter(getTopicFilter(clientId, userName, permission))
-                .activity(Objects.requireNonNull(permission.getActivity()))
-                .type(TopicPermission.PermissionType.ALLOW)
-                .retain(Objects.requireNonNull(permission.getRetain()))
-                .qos(Objects.requireNonNull(permission.getQos()))
-                .sharedSubscription(Objects.requireNonNull(permission.getSharedSubscription()))
-                .sharedGroup(Objects.requireNonNull(permission.getSharedGroup()))
-                .build();
-    }
-
-    private @NotNull String getTopicFilter(
-            final @NotNull String clientId,
-            final @NotNull String userName,
-            final @NotNull Permission permission) {
-        final var configTopic = permission.getTopic();
-        return Substitution.substitute(Objects.requireNonNull(configTopic), clientId, userName);
+    private boolean isHashed() {
+        return extensionConfig.getPasswordType() == PasswordType.HASHED;
+    }
+
+    private static final class PermissionsKey {
+
+        private final @NotNull String userName;
+        private final @NotNull String clientId;
+        // compared by identity, a role combination with a changed role is a new instance
+        private final @NotNull RoleSet roleSet;
+        private final int hashCode;
+
+        private PermissionsKey(
+                final @NotNull String userName,
+                final @NotNull String clientId,
+                final @NotNull RoleSet roleSet) {
+            this.userName = userName;
+            this.clientId = clientId;
+            this.roleSet = roleSet;
+            this.hashCode = 31 * Objects.hash(userName, clientId) + System.identityHashCode(roleSet);
+        }
+
+        private boolean containsAny(final @NotNull Set<CompiledRole> staleRoles) {
+            return roleSet.containsAny(staleRoles);
+        }
+
+        @Override
+        public boolean equals(final @Nullable Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PermissionsKey)) {
+                return false;
+            }
+            final var that = (PermissionsKey) o;
+            return userName.equals(that.userName) &&
+                    clientId.equals(that.clientId) &&
+                    roleSet == that.roleSet;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import com.hivemq.extension.sdk.api.annotations.ThreadSafe;
+import org.bouncycastle.crypto.macs.SipHash128;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.security.SecureRandom;
+
+/**
+ * Computes compact cache keys of credentials with SipHash-2-4 and a 128 bit output.
+ * <p>
+ * The key of the digest is random per instance, so the fingerprints can not be used to recover or to brute force
+ * passwords offline, for example from a heap dump.
+ */
+@ThreadSafe
+class Fingerprinter {
+
+    // SipHash is not thread safe, so an instance is used per thread
+    private final @NotNull ThreadLocal<Digest> digest;
+
+    Fingerprinter() {
+        final var key = new byte[16];
+        new SecureRandom().nextBytes(key);
+        digest = ThreadLocal.withInitial(() -> new Digest(key));
+    }
+
+    /**
+     * @return the fingerprint of the length prefixed password, salt and iterations
+     */
+    @NotNull Fingerprint fingerprint(final byte @NotNull [] password, final @NotNull HashedPassword hashedPassword) {
+        final var digest = this.digest.get();
+        final var salt = hashedPassword.getSalt();
+        digest.updateBytes(password);
+        digest.updateBytes(salt);
+        digest.updateInt(hashedPassword.getIterations());
+        return digest.doFinal();
+    }
+
+    /**
+     * @return the fingerprint of the length prefixed username and password
+     */
+    @NotNull Fingerprint fingerprint(final @NotNull String userName, final byte @NotNull [] password) {
+        final var digest = this.digest.get();
+        digest.updateChars(userName);
+        digest.updateBytes(password);
+        return digest.doFinal();
+    }
+
+    private static final class Digest {
+
+        private final @NotNull SipHash128 mac = new SipHash128();
+        private final byte @NotNull [] out = new byte[16];
+
+        private Digest(final byte @NotNull [] key) {
+            mac.init(new KeyParameter(key));
+        }
+
+        private void updateBytes(final byte @NotNull [] bytes) {
+            updateInt(bytes.length);
+            mac.update(bytes, 0, bytes.length);
+        }
+
+        private void updateChars(final @NotNull String chars) {
+            updateInt(chars.length());
+            for (var i = 0; i < chars.length(); i++) {
+                final var c = chars.charAt(i);
+                mac.update((byte) (c >>> 8));
+                mac.update((byte) c);
+            }
+        }
+
+        private void updateInt(final int value) {
+            mac.update((byte) (value >>> 24));
+            mac.update((byte) (value >>> 16));
+            mac.update((byte) (value >>> 8));
+            mac.update((byte) value);
+        }
+
+        private @NotNull Fingerprint doFinal() {
+            // doFinal resets the mac for the next fingerprint
+            mac.doFinal(out, 0);
+            return new Fingerprint(readLong(0), readLong(8));
+        }
+
+        private long readLong(final int offset) {
+            var value = 0L;
+            for (var i = offset; i < offset + 8; i++) {
+                value = (value << 8) | (out[i] & 0xFF);
+            }
+            return value;
+        }
+    }
+
+    @Immutable
+    static final class Fingerprint {
+
+        // rough retained size of a fingerprint (header and two longs)
+        static final int SIZE = 32;
+
+        private final long high;
+        private final long low;
+
+        private Fingerprint(final long high, final long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(final @Nullable Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            final var that = (Fingerprint) o;
+            return high == that.high && low == that.low;
+        }
+
+        @Override
+        public int hashCode() {
+            // the fingerprint is uniformly distributed already
+            return (int) low;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A hashed password of the credentials configuration, decoded once when the configuration is loaded.
+ * <p>
+ * The format in the configuration is {@code base64 salt:iterations:base64 hash}.
+ */
+@Immutable
+public class HashedPassword {
+
+    private final byte @NotNull [] salt;
+    private final int iterations;
+    private final byte @NotNull [] hash;
+
+    HashedPassword(final byte @NotNull [] salt, final int iterations, final byte @NotNull [] hash) {
+        this.salt = salt;
+        this.iterations = iterations;
+        this.hash = hash;
+    }
+
+    /**
+     * @param  saltPassword the hashed password from the credentials configuration
+     * @return              the decoded hashed password or null if it is malformed
+     */
+    public static @Nullable HashedPassword parse(final @NotNull String saltPassword) {
+        final var saltPw = saltPassword.split(":");
+        if (saltPw.length != 3 || saltPw[0].isEmpty() || saltPw[2].isEmpty()) {
+            return null;
+        }
+        final int iterations;
+        try {
+            iterations = Integer.parseInt(saltPw[1]);
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        if (iterations < 1) {
+            return null;
+        }
+        try {
+            final var decoder = Base64.getDecoder();
+            return new HashedPassword(decoder.decode(saltPw[0]), iterations, decoder.decode(saltPw[2]));
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the salt, must not be modified
+     */
+    byte @NotNull [] getSalt() {
+        return salt;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return the expected hash, must not be modified
+     */
+    byte @NotNull [] getHash() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof HashedPassword)) {
+            return false;
+        }
+        final var that = (HashedPassword) o;
+        return iterations == that.iterations && Arrays.equals(salt, that.salt) && Arrays.equals(hash, that.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * iterations + Arrays.hashCode(salt)) + Arrays.hashCode(hash);
+    }
+}
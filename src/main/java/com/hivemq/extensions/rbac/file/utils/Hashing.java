@@ -29,8 +29,15 @@ public class Hashing {
             final @NotNull String base64Password,
             final @NotNull String base64Salt,
             final int iterations) {
-        final var password = Base64.getDecoder().decode(base64Password);
-        final var salt = Base64.getDecoder().decode(base64Salt);
+        return createHash(Base64.getDecoder().decode(base64Password),
+                Base64.getDecoder().decode(base64Salt),
+                iterations);
+    }
+
+    public static byte @NotNull [] createHash(
+            final byte @NotNull [] password,
+            final byte @NotNull [] salt,
+            final int iterations) {
         final var generator = new PKCS5S2ParametersGenerator(new SHA512Digest());
         generator.init(password, salt, iterations);
         return ((KeyParameter) generator.generateDerivedParameters(512)).getKey();
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.jetbrains.annotations.NotNull;
+
+public class Metrics {
+
+    public static final @NotNull String PREFIX = "com.hivemq.extensions.file-rbac.";
+
+    /**
+     * Registers a gauge, replacing a gauge with the same name.
+     * <p>
+     * The metric registry of HiveMQ outlives the extension, so a gauge of a previous start of the extension would
+     * otherwise prevent the registration and keep the previous instances reachable.
+     *
+     * @param metricRegistry the metric registry
+     * @param name           the name of the gauge
+     * @param gauge          the gauge to register
+     */
+    public static <T> void registerGauge(
+            final @NotNull MetricRegistry metricRegistry,
+            final @NotNull String name,
+            final @NotNull Gauge<T> gauge) {
+        metricRegistry.remove(name);
+        metricRegistry.register(name, gauge);
+    }
+}
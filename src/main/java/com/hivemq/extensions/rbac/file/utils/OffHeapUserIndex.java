@@ -0,0 +1,380 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import com.hivemq.extensions.rbac.file.utils.CredentialsSnapshot.StoredUser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * An open addressing hash table of users, stored in direct buffers outside of the Java heap.
+ * <p>
+ * Millions of {@link StoredUser} objects would fill the old generation of the heap. The index keeps every user as a
+ * record of bytes instead and only creates the {@link StoredUser} of a user when the user is looked up. The role ids of
+ * the users are interned to indexes into a table of the distinct role ids.
+ * <p>
+ * A record consists of the name length and name, the password type, either the password length and password or the
+ * iterations, salt length, salt, hash length and hash, and at last the role count and role indexes. The slots of the
+ * table hold the address of the record and a part of the hash of the name, so a probe rarely reads another record.
+ */
+@Immutable
+final class OffHeapUserIndex {
+
+    // records never span pages, so every record is read from a single buffer
+    private static final int PAGE_SHIFT = 26;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int FIRST_PAGE_SIZE = 1 << 16;
+    private static final int MAX_SLOTS = 1 << 28;
+    private static final int ADDRESS_BITS = 40;
+    private static final long ADDRESS_MASK = (1L << ADDRESS_BITS) - 1;
+    private static final byte PLAIN = 0;
+    private static final byte HASHED = 1;
+
+    private final @NotNull ByteBuffer slots;
+    private final int slotMask;
+    private final @NotNull ByteBuffer @NotNull [] pages;
+    private final @NotNull String @NotNull [] roleIds;
+    private final int size;
+    private final long allocatedBytes;
+
+    private OffHeapUserIndex(
+            final @NotNull ByteBuffer slots,
+            final @NotNull ByteBuffer @NotNull [] pages,
+            final @NotNull String @NotNull [] roleIds,
+            final int size,
+            final long allocatedBytes) {
+        this.slots = slots;
+        this.slotMask = slots.capacity() / Long.BYTES - 1;
+        this.pages = pages;
+        this.roleIds = roleIds;
+        this.size = size;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @param  capacity the maximum number of users that are added
+     * @return          a builder of an index
+     */
+    static @NotNull Builder builder(final int capacity) {
+        return new Builder(capacity, null);
+    }
+
+    /**
+     * @param  capacity the maximum number of users that are added, including the users copied from the base index
+     * @param  base     the index whose users can be copied without decoding them
+     * @return          a builder of an index
+     */
+    static @NotNull Builder builder(final int capacity, final @NotNull OffHeapUserIndex base) {
+        return new Builder(capacity, base);
+    }
+
+    /**
+     * @param  userName the name of the user
+     * @return          the user, decoded from its record, or null if the index does not contain the user
+     */
+    @Nullable StoredUser get(final @NotNull String userName) {
+        final var address = find(userName);
+        if (address < 0) {
+            return null;
+        }
+        final var page = pages[page(address)];
+        var offset = offset(address);
+        offset += Integer.BYTES + page.getInt(offset);
+        final var type = page.get(offset++);
+        String password = null;
+        HashedPassword hashedPassword = null;
+        if (type == PLAIN) {
+            final var passwordBytes = readBytes(page, offset);
+            offset += Integer.BYTES + passwordBytes.length;
+            password = new String(passwordBytes, StandardCharsets.UTF_8);
+        } else {
+            final var iterations = page.getInt(offset);
+            offset += Integer.BYTES;
+            final var salt = readBytes(page, offset);
+            offset += Integer.BYTES + salt.length;
+            final var hash = readBytes(page, offset);
+            offset += Integer.BYTES + hash.length;
+            hashedPassword = new HashedPassword(salt, iterations, hash);
+        }
+        final var roles = new String[page.getInt(offset)];
+        offset += Integer.BYTES;
+        for (var i = 0; i < roles.length; i++) {
+            roles[i] = roleIds[page.getInt(offset)];
+            offset += Integer.BYTES;
+        }
+        return new StoredUser(password, hashedPassword, List.of(roles));
+    }
+
+    boolean contains(final @NotNull String userName) {
+        return find(userName) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the bytes of the direct buffers of the index
+     */
+    long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    private long find(final @NotNull String userName) {
+        final var name = userName.getBytes(StandardCharsets.UTF_8);
+        final var hash = hash(userName);
+        for (var slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+            final var entry = slots.getLong(slot * Long.BYTES);
+            if (entry == 0) {
+                return -1;
+            }
+            if (entryFragment(entry) == hashFragment(hash) && nameEquals(pages[page(address(entry))], entry, name)) {
+                return address(entry);
+            }
+        }
+    }
+
+    private int recordLength(final long address) {
+        final var page = pages[page(address)];
+        final var start = offset(address);
+        var offset = start;
+        offset += Integer.BYTES + page.getInt(offset);
+        final var type = page.get(offset++);
+        if (type == HASHED) {
+            offset += Integer.BYTES;
+            offset += Integer.BYTES + page.getInt(offset);
+        }
+        offset += Integer.BYTES + page.getInt(offset);
+        offset += Integer.BYTES + page.getInt(offset) * Integer.BYTES;
+        return offset - start;
+    }
+
+    private static int hash(final @NotNull String userName) {
+        // spreads the bits of the cached hash code of the string
+        final var hash = userName.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static long hashFragment(final int hash) {
+        return hash >>> 8;
+    }
+
+    private static long entryFragment(final long entry) {
+        return entry >>> ADDRESS_BITS;
+    }
+
+    private static long entry(final int hash, final long address) {
+        // an address of 0 is a valid address, but an entry of 0 is an empty slot
+        return hashFragment(hash) << ADDRESS_BITS | (address + 1);
+    }
+
+    private static long address(final long entry) {
+        return (entry & ADDRESS_MASK) - 1;
+    }
+
+    private static int page(final long address) {
+        return (int) (address >>> PAGE_SHIFT);
+    }
+
+    private static int offset(final long address) {
+        return (int) (address & (PAGE_SIZE - 1));
+    }
+
+    private static boolean nameEquals(final @NotNull ByteBuffer page, final long entry, final byte @NotNull [] name) {
+        final var offset = offset(address(entry));
+        if (page.getInt(offset) != name.length) {
+            return false;
+        }
+        for (var i = 0; i < name.length; i++) {
+            if (page.get(offset + Integer.BYTES + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte @NotNull [] readBytes(final @NotNull ByteBuffer page, final int offset) {
+        final var bytes = new byte[page.getInt(offset)];
+        page.duplicate().position(offset + Integer.BYTES).get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Builds an index. A builder is not thread safe.
+     */
+    static final class Builder {
+
+        private final @NotNull ByteBuffer slots;
+        private final int slotMask;
+        private final int capacity;
+        private final @Nullable OffHeapUserIndex base;
+        private final @NotNull List<ByteBuffer> pages = new ArrayList<>();
+        private final @NotNull List<String> roleIds = new ArrayList<>();
+        private final @NotNull Map<String, Integer> roleIndexes = new HashMap<>();
+        private @Nullable ByteBuffer page;
+        private int size;
+        private long allocatedBytes;
+
+        private Builder(final int capacity, final @Nullable OffHeapUserIndex base) {
+            if (capacity < 0 || capacity >= MAX_SLOTS / 4 * 3) {
+                throw new IllegalArgumentException("Off-heap user index can not hold " + capacity + " users.");
+            }
+            // a load factor of at most 0.75
+            final var slotCount = Integer.highestOneBit(Math.max(1, capacity + capacity / 3)) << 1;
+            this.slots = ByteBuffer.allocateDirect(slotCount * Long.BYTES);
+            this.slotMask = slotCount - 1;
+            this.capacity = capacity;
+            this.base = base;
+            allocatedBytes = slots.capacity();
+            if (base != null) {
+                // keeps the role indexes of the base index, so its records are copied as they are
+                for (final var roleId : base.roleIds) {
+                    roleIndex(roleId);
+                }
+            }
+        }
+
+        /**
+         * Adds a user, replacing a user with the same name.
+         */
+        @NotNull Builder add(final @NotNull String userName, final @NotNull StoredUser user) {
+            final var name = userName.getBytes(StandardCharsets.UTF_8);
+            final var password = user.getPassword();
+            final var passwordBytes = password == null ? null : password.getBytes(StandardCharsets.UTF_8);
+            final var hashedPassword = user.getHashedPassword();
+            final var roles = user.getRoles();
+            var length = Integer.BYTES + name.length + 1 + Integer.BYTES + roles.size() * Integer.BYTES;
+            if (passwordBytes != null) {
+                length += Integer.BYTES + passwordBytes.length;
+            } else {
+                Objects.requireNonNull(hashedPassword);
+                length += 3 * Integer.BYTES + hashedPassword.getSalt().length + hashedPassword.getHash().length;
+            }
+            final var address = allocate(length);
+            final var page = Objects.requireNonNull(this.page);
+            page.putInt(name.length).put(name);
+            if (passwordBytes != null) {
+                page.put(PLAIN).putInt(passwordBytes.length).put(passwordBytes);
+            } else {
+                page.put(HASHED).putInt(hashedPassword.getIterations());
+                page.putInt(hashedPassword.getSalt().length).put(hashedPassword.getSalt());
+                page.putInt(hashedPassword.getHash().length).put(hashedPassword.getHash());
+            }
+            page.putInt(roles.size());
+            for (final var role : roles) {
+                page.putInt(roleIndex(role));
+            }
+            putSlot(userName, name, address);
+            return this;
+        }
+
+        /**
+         * Copies the records of the users of the base index without decoding them.
+         *
+         * @param keep the names of the users to copy
+         */
+        @NotNull Builder copyBase(final @NotNull Predicate<String> keep) {
+            final var base = Objects.requireNonNull(this.base);
+            for (var slot = 0; slot <= base.slotMask; slot++) {
+                final var entry = base.slots.getLong(slot * Long.BYTES);
+                if (entry == 0) {
+                    continue;
+                }
+                final var basePage = base.pages[page(address(entry))];
+                final var baseOffset = offset(address(entry));
+                final var name = new byte[basePage.getInt(baseOffset)];
+                basePage.duplicate().position(baseOffset + Integer.BYTES).get(name);
+                final var userName = new String(name, StandardCharsets.UTF_8);
+                if (!keep.test(userName)) {
+                    continue;
+                }
+                final var length = base.recordLength(address(entry));
+                final var address = allocate(length);
+                Objects.requireNonNull(page)
+                        .put(basePage.duplicate().position(baseOffset).limit(baseOffset + length));
+                putSlot(userName, name, address);
+            }
+            return this;
+        }
+
+        @NotNull OffHeapUserIndex build() {
+            final var page = this.page;
+            if (page != null && page.hasRemaining()) {
+                // the last page is the largest one, so it is trimmed to the records it holds
+                final var trimmed = ByteBuffer.allocateDirect(page.position());
+                trimmed.put(page.flip());
+                allocatedBytes += trimmed.capacity() - page.capacity();
+                pages.set(pages.size() - 1, trimmed);
+                this.page = null;
+            }
+            return new OffHeapUserIndex(slots,
+                    pages.toArray(new ByteBuffer[0]),
+                    roleIds.toArray(new String[0]),
+                    size,
+                    allocatedBytes);
+        }
+
+        private long allocate(final int length) {
+            var page = this.page;
+            if (page == null || page.remaining() < length) {
+                final var pageSize = page == null ? FIRST_PAGE_SIZE : Math.min(PAGE_SIZE, page.capacity() * 2);
+                page = ByteBuffer.allocateDirect(Math.max(pageSize, length));
+                pages.add(page);
+                allocatedBytes += page.capacity();
+                this.page = page;
+            }
+            return (long) (pages.size() - 1) << PAGE_SHIFT | page.position();
+        }
+
+        private int roleIndex(final @NotNull String roleId) {
+            return roleIndexes.computeIfAbsent(roleId, id -> {
+                roleIds.add(id);
+                return roleIds.size() - 1;
+            });
+        }
+
+        private void putSlot(final @NotNull String userName, final byte @NotNull [] name, final long address) {
+            final var hash = hash(userName);
+            for (var slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+                final var entry = slots.getLong(slot * Long.BYTES);
+                if (entry == 0) {
+                    if (size == capacity) {
+                        throw new IllegalStateException("Off-heap user index is full.");
+                    }
+                    slots.putLong(slot * Long.BYTES, entry(hash, address));
+                    size++;
+                    return;
+                }
+                if (entryFragment(entry) == hashFragment(hash) &&
+                        nameEquals(pages.get(page(address(entry))), entry, name)) {
+                    slots.putLong(slot * Long.BYTES, entry(hash, address));
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Canonicalizes the permissions without placeholders, so equal permissions of different roles and equal permission
+ * lists of different role combinations are one shared instance.
+ * <p>
+ * HiveMQ keeps the default permissions of every connected client, so every shared instance is kept once instead of
+ * once per role or role combination. An interner is filled while a snapshot is built and not modified afterwards. It
+ * is not thread safe.
+ */
+class PermissionInterner {
+
+    // rough estimates with compressed references: a topic permission with its fields, and a string of latin-1 chars
+    private static final int PERMISSION_BYTES = 64;
+    private static final int STRING_BYTES = 40;
+    // an unmodifiable list wrapping an array list, without the references to the permissions
+    private static final int LIST_BYTES = 56;
+
+    private final @NotNull Map<List<Object>, TopicPermission> permissions = new HashMap<>();
+    private final @NotNull Map<List<TopicPermission>, List<TopicPermission>> permissionSets = new HashMap<>();
+    private long savedBytes;
+
+    /**
+     * @param  key        the values of the permission, including its topic filter at index 0
+     * @param  permission creates the permission if no equal permission exists
+     * @return            the shared permission
+     */
+    @NotNull TopicPermission intern(
+            final @NotNull List<Object> key,
+            final @NotNull Supplier<TopicPermission> permission) {
+        final var existing = permissions.get(key);
+        if (existing != null) {
+            savedBytes += PERMISSION_BYTES + STRING_BYTES + key.get(0).toString().length();
+            return existing;
+        }
+        final var created = permission.get();
+        permissions.put(key, created);
+        return created;
+    }
+
+    /**
+     * @param  permissionSet the permissions, must not be modified afterwards
+     * @return               the shared unmodifiable permission list with the same permissions
+     */
+    @NotNull List<TopicPermission> internSet(final @NotNull List<TopicPermission> permissionSet) {
+        final var existing = permissionSets.get(permissionSet);
+        if (existing != null) {
+            savedBytes += LIST_BYTES + (long) permissionSet.size() * Integer.BYTES;
+            return existing;
+        }
+        final var shared = unmodifiableList(permissionSet);
+        permissionSets.put(shared, shared);
+        return shared;
+    }
+
+    /**
+     * Adds the static permissions of a role of a previous snapshot, so roles compiled by a reload share them.
+     */
+    void add(final @NotNull CompiledRole role) {
+        for (final var permission : role.getPermissions()) {
+            final var key = permission.getStaticKey();
+            final var staticPermission = permission.getStaticPermission();
+            if (key != null && staticPermission != null) {
+                intern(key, () -> staticPermission);
+            }
+        }
+    }
+
+    /**
+     * Adds the permissions of a role combination of a previous snapshot, so combinations compiled by a reload share
+     * them.
+     */
+    void add(final @NotNull RoleSet roleSet) {
+        if (roleSet.isStatic()) {
+            internSet(roleSet.resolve("", ""));
+        }
+    }
+
+    /**
+     * @return the number of distinct permission lists of static role combinations
+     */
+    int getPermissionSetCount() {
+        return permissionSets.size();
+    }
+
+    /**
+     * @return the estimated bytes of the permissions and permission lists that are shared instead of duplicated
+     */
+    long getSavedBytes() {
+        return savedBytes;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extension.sdk.api.services.builder.Builders;
+import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A {@link Permission} of the credentials configuration, compiled once per configuration reload.
+ * <p>
+ * Permissions without placeholders in their topic filter are the same for every client, so the
+ * {@link TopicPermission} is built once and shared by all clients, and by all equal permissions of other roles.
+ * <p>
+ * All permissions of the configuration allow, so a permission that is subsumed by another permission of the same
+ * client can be left out without changing what the client is allowed to do.
+ */
+@Immutable
+class PermissionTemplate {
+
+    private final @NotNull TopicFilterTemplate topicFilter;
+    private final TopicPermission.@NotNull MqttActivity activity;
+    private final TopicPermission.@NotNull Retain retain;
+    private final TopicPermission.@NotNull Qos qos;
+    private final TopicPermission.@NotNull SharedSubscription sharedSubscription;
+    private final @NotNull String sharedGroup;
+    private final @Nullable String staticTopicFilter;
+    private final @Nullable TopicPermission staticPermission;
+    // the values the static permission is interned by
+    private final @Nullable List<Object> staticKey;
+
+    PermissionTemplate(final @NotNull Permission permission, final @NotNull PermissionInterner interner) {
+        this.topicFilter = TopicFilterTemplate.compile(Objects.requireNonNull(permission.getTopic()));
+        this.activity = Objects.requireNonNull(permission.getActivity());
+        this.retain = Objects.requireNonNull(permission.getRetain());
+        this.qos = Objects.requireNonNull(permission.getQos());
+        this.sharedSubscription = Objects.requireNonNull(permission.getSharedSubscription());
+        this.sharedGroup = Objects.requireNonNull(permission.getSharedGroup());
+        if (topicFilter.isStatic()) {
+            // the client identifier and username are not used by a static topic filter
+            staticTopicFilter = topicFilter.fill("", "");
+            staticKey = List.of(staticTopicFilter, activity, retain, qos, sharedSubscription, sharedGroup);
+            staticPermission = interner.intern(staticKey, () -> toTopicPermission(staticTopicFilter));
+        } else {
+            staticTopicFilter = null;
+            staticKey = null;
+            staticPermission = null;
+        }
+    }
+
+    /**
+     * @param  clientId the client identifier of the client
+     * @param  userName the username of the client
+     * @return          the permission for the client, shared between all clients if it contains no placeholders
+     */
+    @NotNull TopicPermission resolve(final @NotNull String clientId, final @NotNull String userName) {
+        if (staticPermission != null) {
+            return staticPermission;
+        }
+        return toTopicPermission(topicFilter.fill(clientId, userName));
+    }
+
+    boolean isStatic() {
+        return staticPermission != null;
+    }
+
+    @Nullable TopicPermission getStaticPermission() {
+        return staticPermission;
+    }
+
+    @Nullable List<Object> getStaticKey() {
+        return staticKey;
+    }
+
+    /**
+     * Checks if this permission allows everything the other permission allows.
+     * <p>
+     * Topic filters with placeholders are only compared as written, as a placeholder may be filled with several topic
+     * levels or with a level starting with '$'.
+     *
+     * @param  other the other permission
+     * @return       true if the other permission is not needed next to this permission
+     */
+    boolean subsumes(final @NotNull PermissionTemplate other) {
+        if ((activity != TopicPermission.MqttActivity.ALL && activity != other.activity) ||
+                (retain != TopicPermission.Retain.ALL && retain != other.retain) ||
+                (qosLevels(other.qos) & ~qosLevels(qos)) != 0 ||
+                (sharedSubscription != TopicPermission.SharedSubscription.ALL &&
+                        sharedSubscription != other.sharedSubscription) ||
+                (!sharedGroup.equals("#") && !sharedGroup.equals(other.sharedGroup))) {
+            return false;
+        }
+        if (staticTopicFilter != null && other.staticTopicFilter != null) {
+            return containsTopicFilter(staticTopicFilter, other.staticTopicFilter);
+        }
+        return topicFilter.getTopicFilter().equals(other.topicFilter.getTopicFilter());
+    }
+
+    /**
+     * @param  filter      the topic filter
+     * @param  otherFilter the other topic filter
+     * @return             true if every topic that matches the other topic filter matches the topic filter
+     */
+    static boolean containsTopicFilter(final @NotNull String filter, final @NotNull String otherFilter) {
+        final var levels = filter.split("/", -1);
+        final var otherLevels = otherFilter.split("/", -1);
+        // wildcards at the first level do not match topics starting with '$'
+        if (otherLevels[0].startsWith("$") && (levels[0].equals("#") || levels[0].equals("+"))) {
+            return false;
+        }
+        for (var i = 0; i < levels.length; i++) {
+            final var level = levels[i];
+            if (level.equals("#")) {
+                // matches the parent level and all levels below
+                return true;
+            }
+            if (i == otherLevels.length) {
+                return false;
+            }
+            final var otherLevel = otherLevels[i];
+            if (level.equals("+")) {
+                if (otherLevel.equals("#")) {
+                    return false;
+                }
+            } else if (!level.equals(otherLevel)) {
+                return false;
+            }
+        }
+        return levels.length == otherLevels.length;
+    }
+
+    /**
+     * @param  qos the quality of service levels of a permission
+     * @return     a bit for each allowed level, the lowest bit for QoS 0
+     */
+    static int qosLevels(final TopicPermission.@NotNull Qos qos) {
+        switch (qos) {
+            case ZERO:
+                return 0b001;
+            case ONE:
+                return 0b010;
+            case TWO:
+                return 0b100;
+            case ZERO_ONE:
+                return 0b011;
+            case ZERO_TWO:
+                return 0b101;
+            case ONE_TWO:
+                return 0b110;
+            default:
+                return 0b111;
+        }
+    }
+
+    private @NotNull TopicPermission toTopicPermission(final @NotNull String topicFilter) {
+        return Builders.topicPermission()
+                .topicFilter(topicFilter)
+                .activity(activity)
+                .type(TopicPermission.PermissionType.ALLOW)
+                .retain(retain)
+                .qos(qos)
+                .sharedSubscription(sharedSubscription)
+                .sharedGroup(sharedGroup)
+                .build();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A distinct combination of roles, shared by all users with these roles.
+ * <p>
+ * Most users share one of a few role combinations. The roles are looked up once per combination instead of once per
+ * CONNECT, and if none of their permissions contains placeholders, the permissions are resolved once and shared by all
+ * clients of the combination.
+ * <p>
+ * Permissions of the combination that are duplicates of or subsumed by another permission of the combination are left
+ * out, which is safe because all permissions allow.
+ */
+@Immutable
+final class RoleSet {
+
+    private final @NotNull List<String> roleIds;
+    private final @NotNull CompiledRole @NotNull [] roles;
+    // the permissions of the roles without the duplicate and subsumed ones
+    private final @NotNull PermissionTemplate @NotNull [] permissions;
+    private final int eliminatedCount;
+    // null if a permission contains placeholders
+    private final @Nullable List<TopicPermission> staticPermissions;
+
+    private RoleSet(
+            final @NotNull List<String> roleIds,
+            final @NotNull CompiledRole @NotNull [] roles,
+            final @NotNull PermissionInterner interner) {
+        this.roleIds = roleIds;
+        this.roles = roles;
+        final var rolePermissions = new ArrayList<PermissionTemplate>();
+        for (final var role : roles) {
+            rolePermissions.addAll(role.getPermissions());
+        }
+        this.permissions = minimize(rolePermissions);
+        this.eliminatedCount = rolePermissions.size() - permissions.length;
+        var isStatic = true;
+        for (final var permission : permissions) {
+            isStatic &= permission.isStatic();
+        }
+        // the client identifier and username are not used by static permissions
+        this.staticPermissions = isStatic ? interner.internSet(resolvePermissions("", "")) : null;
+    }
+
+    /**
+     * @param  roleIds  the ids of the roles in the order of the user
+     * @param  roles    the compiled roles by id, must contain all roles of the combination
+     * @param  interner shares the permissions of a static combination with equal combinations
+     * @return          the role combination
+     */
+    static @NotNull RoleSet of(
+            final @NotNull List<String> roleIds,
+            final @NotNull Map<String, CompiledRole> roles,
+            final @NotNull PermissionInterner interner) {
+        final var ids = List.copyOf(roleIds);
+        final var compiledRoles = new CompiledRole[ids.size()];
+        for (var i = 0; i < compiledRoles.length; i++) {
+            // the configuration validation guarantees that all roles of the users exist
+            compiledRoles[i] = Objects.requireNonNull(roles.get(ids.get(i)));
+        }
+        return new RoleSet(ids, compiledRoles, interner);
+    }
+
+    /**
+     * @return the role ids, shared by all users with this role combination
+     */
+    @NotNull List<String> getRoleIds() {
+        return roleIds;
+    }
+
+    boolean isStatic() {
+        return staticPermissions != null;
+    }
+
+    /**
+     * @return the number of permissions of the roles that are left out because another permission of the combination
+     *         is equal or allows more
+     */
+    int getEliminatedCount() {
+        return eliminatedCount;
+    }
+
+    /**
+     * @param  clientId the client identifier of the client
+     * @param  userName the username of the client
+     * @return          the permissions of the roles in the order of the roles without duplicate and subsumed
+     *                  permissions, shared by all clients if the role combination is static
+     */
+    @NotNull List<TopicPermission> resolve(final @NotNull String clientId, final @NotNull String userName) {
+        if (staticPermissions != null) {
+            return staticPermissions;
+        }
+        return resolvePermissions(clientId, userName);
+    }
+
+    /**
+     * @param  roles the compiled roles by id
+     * @return       true if all roles of this combination are the same instances as in the given roles
+     */
+    boolean isCompiledFrom(final @NotNull Map<String, CompiledRole> roles) {
+        for (final var role : this.roles) {
+            if (roles.get(role.getId()) != role) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param  staleRoles roles that changed, compared by identity
+     * @return            true if this combination contains one of the roles
+     */
+    boolean containsAny(final @NotNull Set<CompiledRole> staleRoles) {
+        for (final var role : roles) {
+            if (staleRoles.contains(role)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private @NotNull List<TopicPermission> resolvePermissions(
+            final @NotNull String clientId,
+            final @NotNull String userName) {
+        final var topicPermissions = new ArrayList<TopicPermission>(permissions.length);
+        for (final var permission : permissions) {
+            topicPermissions.add(permission.resolve(clientId, userName));
+        }
+        return topicPermissions;
+    }
+
+    /**
+     * Leaves out the permissions that another permission subsumes. Of equal permissions only the first one is kept.
+     * <p>
+     * Compares every pair of permissions, which is fine for the few permissions of a role combination as it runs only
+     * once per combination and reload.
+     *
+     * @param  permissions the permissions of the roles
+     * @return             the remaining permissions in their order
+     */
+    private static @NotNull PermissionTemplate @NotNull [] minimize(
+            final @NotNull List<PermissionTemplate> permissions) {
+        final var remaining = new ArrayList<PermissionTemplate>(permissions.size());
+        for (var i = 0; i < permissions.size(); i++) {
+            if (!isSubsumed(permissions, i)) {
+                remaining.add(permissions.get(i));
+            }
+        }
+        return remaining.toArray(new PermissionTemplate[0]);
+    }
+
+    private static boolean isSubsumed(final @NotNull List<PermissionTemplate> permissions, final int index) {
+        final var permission = permissions.get(index);
+        for (var i = 0; i < permissions.size(); i++) {
+            if (i == index) {
+                continue;
+            }
+            final var other = permissions.get(i);
+            // equal permissions subsume each other, the first one is kept
+            if (other.subsumes(permission) && (i < index || !permission.subsumes(other))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -16,19 +16,17 @@
 
 package com.hivemq.extensions.rbac.file.utils;
 
-import org.apache.commons.text.StringSubstitutor;
 import org.jetbrains.annotations.NotNull;
 
 public class Substitution {
 
-    private static final @NotNull String PREFIX = "${{";
-    private static final @NotNull String SUFFIX = "}}";
-    private static final @NotNull String ESCAPE_CHAR = "§";
-
     /**
      * Replaces parts enclosed in <code>${{}}</code>
      * <p>
      * Can replace <code>${{clientid}}</code> and <code>${{username}}</code>
+     * <p>
+     * Topic filters that are substituted repeatedly should be compiled once with
+     * {@link TopicFilterTemplate#compile(String)} instead.
      *
      * @param  topic    topic pattern
      * @param  clientId actual clientId
@@ -39,16 +37,6 @@ public class Substitution {
             final @NotNull String topic,
             final @NotNull String clientId,
             final @NotNull String username) {
-        final var stringSubstitutor = new StringSubstitutor(key -> {
-            final var lowerCaseKey = key.toLowerCase();
-            // replace clientid and username
-            if ("clientid".equals(lowerCaseKey)) {
-                return clientId;
-            } else if ("username".equals(lowerCaseKey)) {
-                return username;
-            }
-            return null;
-        }, PREFIX, SUFFIX, ESCAPE_CHAR.charAt(0));
-        return stringSubstitutor.replace(topic);
+        return TopicFilterTemplate.compile(topic).fill(clientId, username);
     }
 }
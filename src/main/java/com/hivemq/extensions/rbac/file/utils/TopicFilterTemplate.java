@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * A topic filter from the credentials configuration, split into literal parts and the <code>${{clientid}}</code> and
+ * <code>${{username}}</code> placeholders between them.
+ * <p>
+ * The topic filter is parsed once, so filling in the client identifier and username only needs a single pass over the
+ * already split parts.
+ */
+@Immutable
+public class TopicFilterTemplate {
+
+    private static final @NotNull String PREFIX = "${{";
+    private static final @NotNull String SUFFIX = "}}";
+    private static final char ESCAPE_CHAR = '§';
+    private static final @NotNull String DEFAULT_VALUE_DELIMITER = ":-";
+
+    private static final int CLIENT_ID = 0;
+    private static final int USER_NAME = 1;
+
+    private final @NotNull String topicFilter;
+    // literals.length == placeholders.length + 1, the placeholders are located between the literals
+    private final @NotNull String @NotNull [] literals;
+    private final int @NotNull [] placeholders;
+    private final int literalsLength;
+
+    private TopicFilterTemplate(
+            final @NotNull String topicFilter,
+            final @NotNull String @NotNull [] literals,
+            final int @NotNull [] placeholders) {
+        this.topicFilter = topicFilter;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        var literalsLength = 0;
+        for (final var literal : literals) {
+            literalsLength += literal.length();
+        }
+        this.literalsLength = literalsLength;
+    }
+
+    /**
+     * Parses a topic filter with optional parts enclosed in <code>${{}}</code>.
+     * <p>
+     * The keys <code>clientid</code> and <code>username</code> are case-insensitive. A placeholder that is preceded by
+     * <code>§</code> is escaped and kept as literal text. Unknown keys are kept as literal text, unless a default value
+     * is given with <code>${{key:-default}}</code>.
+     *
+     * @param  topicFilter the topic filter from the configuration
+     * @return             the parsed template
+     */
+    public static @NotNull TopicFilterTemplate compile(final @NotNull String topicFilter) {
+        final var literals = new ArrayList<String>();
+        final var placeholders = new ArrayList<Integer>();
+        final var literal = new StringBuilder();
+        var index = 0;
+        while (index < topicFilter.length()) {
+            final var prefixIndex = topicFilter.indexOf(PREFIX, index);
+            if (prefixIndex < 0) {
+                literal.append(topicFilter, index, topicFilter.length());
+                break;
+            }
+            if (prefixIndex > index && topicFilter.charAt(prefixIndex - 1) == ESCAPE_CHAR) {
+                // escaped placeholder, drop the escape character and keep the prefix
+                literal.append(topicFilter, index, prefixIndex - 1).append(PREFIX);
+                index = prefixIndex + PREFIX.length();
+                continue;
+            }
+            literal.append(topicFilter, index, prefixIndex);
+            final var suffixIndex = topicFilter.indexOf(SUFFIX, prefixIndex + PREFIX.length());
+            if (suffixIndex < 0) {
+                // unterminated placeholder
+                literal.append(topicFilter, prefixIndex, topicFilter.length());
+                break;
+            }
+            final var key = topicFilter.substring(prefixIndex + PREFIX.length(), suffixIndex);
+            final var delimiterIndex = key.indexOf(DEFAULT_VALUE_DELIMITER);
+            final var variable = delimiterIndex < 0 ? key : key.substring(0, delimiterIndex);
+            final var placeholder = toPlaceholder(variable);
+            if (placeholder >= 0) {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                placeholders.add(placeholder);
+            } else if (delimiterIndex >= 0) {
+                literal.append(key, delimiterIndex + DEFAULT_VALUE_DELIMITER.length(), key.length());
+            } else {
+                literal.append(topicFilter, prefixIndex, suffixIndex + SUFFIX.length());
+            }
+            index = suffixIndex + SUFFIX.length();
+        }
+        literals.add(literal.toString());
+        final var placeholdersArray = new int[placeholders.size()];
+        for (var i = 0; i < placeholdersArray.length; i++) {
+            placeholdersArray[i] = placeholders.get(i);
+        }
+        return new TopicFilterTemplate(topicFilter, literals.toArray(new String[0]), placeholdersArray);
+    }
+
+    /**
+     * @return the topic filter as it is written in the configuration
+     */
+    public @NotNull String getTopicFilter() {
+        return topicFilter;
+    }
+
+    /**
+     * @return true if the topic filter does not contain any placeholders, so it is the same for all clients
+     */
+    public boolean isStatic() {
+        return placeholders.length == 0;
+    }
+
+    /**
+     * Replaces the placeholders with the client identifier and username of a client.
+     *
+     * @param  clientId actual clientId
+     * @param  userName actual username
+     * @return          the topic filter for the client
+     */
+    public @NotNull String fill(final @NotNull String clientId, final @NotNull String userName) {
+        if (placeholders.length == 0) {
+            return literals[0];
+        }
+        var length = literalsLength;
+        for (final var placeholder : placeholders) {
+            length += placeholder == CLIENT_ID ? clientId.length() : userName.length();
+        }
+        final var builder = new StringBuilder(length).append(literals[0]);
+        for (var i = 0; i < placeholders.length; i++) {
+            builder.append(placeholders[i] == CLIENT_ID ? clientId : userName).append(literals[i + 1]);
+        }
+        return builder.toString();
+    }
+
+    private static int toPlaceholder(final @NotNull String variable) {
+        final var lowerCaseVariable = variable.toLowerCase(Locale.ROOT);
+        if ("clientid".equals(lowerCaseVariable)) {
+            return CLIENT_ID;
+        } else if ("username".equals(lowerCaseVariable)) {
+            return USER_NAME;
+        }
+        return -1;
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return "TopicFilterTemplate{" + "topicFilter='" + topicFilter + '\'' + '}';
+    }
+}
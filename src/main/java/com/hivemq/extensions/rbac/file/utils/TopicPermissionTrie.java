@@ -0,0 +1,240 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.annotations.Immutable;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The topic permissions of a client compiled to a trie of their topic filter levels, so a PUBLISH or SUBSCRIBE is
+ * checked by following its topic levels instead of matching it against every permission.
+ * <p>
+ * All permissions of the extension allow and everything else is denied, so the order of the permissions does not
+ * matter. The activity, QoS, retain and shared subscription settings of the permissions ending at a level are combined
+ * to a bit mask per level.
+ */
+@Immutable
+public final class TopicPermissionTrie {
+
+    private static final @NotNull String SHARED_SUBSCRIPTION_PREFIX = "$share/";
+
+    // the offsets of the three QoS bits of each kind of access in the masks
+    private static final int PUBLISH = 0;
+    private static final int RETAINED_PUBLISH = 3;
+    private static final int SUBSCRIBE = 6;
+    private static final int SHARED_SUBSCRIBE = 9;
+
+    private final @NotNull Node root = new Node();
+
+    private TopicPermissionTrie(final @NotNull List<? extends TopicPermission> permissions) {
+        for (final var permission : permissions) {
+            add(permission);
+        }
+    }
+
+    /**
+     * @param  permissions the permissions of a client, all of them must allow
+     * @return             the trie of the permissions
+     */
+    public static @NotNull TopicPermissionTrie compile(final @NotNull List<? extends TopicPermission> permissions) {
+        return new TopicPermissionTrie(permissions);
+    }
+
+    /**
+     * @param  topic  the topic of the PUBLISH
+     * @param  qos    the QoS level of the PUBLISH
+     * @param  retain the retain flag of the PUBLISH
+     * @return        true if a permission allows the PUBLISH
+     */
+    public boolean allowsPublish(final @NotNull String topic, final int qos, final boolean retain) {
+        return matches(root, topic, 0, 1 << ((retain ? RETAINED_PUBLISH : PUBLISH) + qos), null, false);
+    }
+
+    /**
+     * A subscription is allowed if a permission matches every topic its topic filter matches.
+     *
+     * @param  topicFilter the topic filter of the subscription, a shared subscription starts with
+     *                     {@code $share/<group>/}
+     * @param  qos         the QoS level of the subscription
+     * @return             true if a permission allows the subscription
+     */
+    public boolean allowsSubscription(final @NotNull String topicFilter, final int qos) {
+        if (topicFilter.startsWith(SHARED_SUBSCRIPTION_PREFIX)) {
+            final var groupEnd = topicFilter.indexOf('/', SHARED_SUBSCRIPTION_PREFIX.length());
+            if (groupEnd < 0) {
+                return false;
+            }
+            final var group = topicFilter.substring(SHARED_SUBSCRIPTION_PREFIX.length(), groupEnd);
+            return matches(root, topicFilter.substring(groupEnd + 1), 0, 1 << (SHARED_SUBSCRIBE + qos), group, true);
+        }
+        return matches(root, topicFilter, 0, 1 << (SUBSCRIBE + qos), null, true);
+    }
+
+    private void add(final @NotNull TopicPermission permission) {
+        final var qosLevels = PermissionTemplate.qosLevels(permission.getQos());
+        final var activity = permission.getActivity();
+        var mask = 0;
+        var groupMask = 0;
+        if (activity != TopicPermission.MqttActivity.SUBSCRIBE) {
+            if (permission.getPublishRetain() != TopicPermission.Retain.RETAINED) {
+                mask |= qosLevels << PUBLISH;
+            }
+            if (permission.getPublishRetain() != TopicPermission.Retain.NOT_RETAINED) {
+                mask |= qosLevels << RETAINED_PUBLISH;
+            }
+        }
+        final var sharedGroup = permission.getSharedGroup();
+        if (activity != TopicPermission.MqttActivity.PUBLISH) {
+            if (permission.getSharedSubscription() != TopicPermission.SharedSubscription.SHARED) {
+                mask |= qosLevels << SUBSCRIBE;
+            }
+            if (permission.getSharedSubscription() != TopicPermission.SharedSubscription.NOT_SHARED) {
+                if (sharedGroup.equals("#")) {
+                    mask |= qosLevels << SHARED_SUBSCRIBE;
+                } else {
+                    groupMask = qosLevels << SHARED_SUBSCRIBE;
+                }
+            }
+        }
+        final var topicFilter = permission.getTopicFilter();
+        var node = root;
+        var start = 0;
+        while (true) {
+            final var end = levelEnd(topicFilter, start);
+            final var level = topicFilter.substring(start, end);
+            if (level.equals("#")) {
+                node.wildcardPermits.add(mask, sharedGroup, groupMask);
+                return;
+            }
+            node = node.child(level);
+            if (end == topicFilter.length()) {
+                node.permits.add(mask, sharedGroup, groupMask);
+                return;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @param  node      the node of the previous level
+     * @param  topic     the topic or topic filter
+     * @param  start     the start of the level in the topic, greater than the length if all levels are matched
+     * @param  bit       the bit of the access in the masks
+     * @param  group     the shared subscription group, null if the access is no shared subscription
+     * @param  wildcards true if the topic is a topic filter of a subscription
+     * @return           true if a permission below the node allows the access
+     */
+    private static boolean matches(
+            final @NotNull Node node,
+            final @NotNull String topic,
+            final int start,
+            final int bit,
+            final @Nullable String group,
+            final boolean wildcards) {
+        // wildcards at the first level do not match topics starting with '$'
+        final var systemTopic = start == 0 && topic.startsWith("$");
+        // a multi-level wildcard matches the parent level and all levels below
+        if (!systemTopic && node.wildcardPermits.allows(bit, group)) {
+            return true;
+        }
+        if (start > topic.length()) {
+            return node.permits.allows(bit, group);
+        }
+        final var end = levelEnd(topic, start);
+        final var level = topic.substring(start, end);
+        if (wildcards) {
+            // a wildcard of a subscription is only contained in the same or a broader wildcard
+            if (level.equals("#")) {
+                return false;
+            }
+            if (level.equals("+")) {
+                return node.singleLevelWildcard != null &&
+                        matches(node.singleLevelWildcard, topic, end + 1, bit, group, true);
+            }
+        }
+        if (node.children != null) {
+            final var child = node.children.get(level);
+            if (child != null && matches(child, topic, end + 1, bit, group, wildcards)) {
+                return true;
+            }
+        }
+        return !systemTopic &&
+                node.singleLevelWildcard != null &&
+                matches(node.singleLevelWildcard, topic, end + 1, bit, group, wildcards);
+    }
+
+    private static int levelEnd(final @NotNull String topic, final int start) {
+        final var end = topic.indexOf('/', start);
+        return end < 0 ? topic.length() : end;
+    }
+
+    /**
+     * A topic level, only modified while the trie is compiled.
+     */
+    private static final class Node {
+
+        private @Nullable Map<String, Node> children;
+        private @Nullable Node singleLevelWildcard;
+        // the permissions ending at this level
+        private final @NotNull Permits permits = new Permits();
+        // the permissions with a multi-level wildcard below this level
+        private final @NotNull Permits wildcardPermits = new Permits();
+
+        @NotNull Node child(final @NotNull String level) {
+            if (level.equals("+")) {
+                if (singleLevelWildcard == null) {
+                    singleLevelWildcard = new Node();
+                }
+                return singleLevelWildcard;
+            }
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(level, l -> new Node());
+        }
+    }
+
+    private static final class Permits {
+
+        private int mask;
+        // the shared subscriptions restricted to a group
+        private @Nullable Map<String, Integer> groupMasks;
+
+        void add(final int mask, final @NotNull String group, final int groupMask) {
+            this.mask |= mask;
+            if (groupMask != 0) {
+                if (groupMasks == null) {
+                    groupMasks = new HashMap<>();
+                }
+                groupMasks.merge(group, groupMask, (a, b) -> a | b);
+            }
+        }
+
+        boolean allows(final int bit, final @Nullable String group) {
+            if ((mask & bit) != 0) {
+                return true;
+            }
+            return group != null && groupMasks != null && (groupMasks.getOrDefault(group, 0) & bit) != 0;
+        }
+    }
+}
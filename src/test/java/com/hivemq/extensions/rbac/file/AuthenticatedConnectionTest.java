@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AuthenticatedConnectionTest {
+
+    @Test
+    void test_stored_connection() {
+        final var connectionAttributeStore = connectionAttributeStore();
+        final var connection = AuthenticatedConnection.store(connectionAttributeStore, "üser1");
+        final var storedConnection = AuthenticatedConnection.of(connectionAttributeStore);
+        assertThat(storedConnection).isNotNull();
+        assertThat(storedConnection.getId()).isEqualTo(connection.getId());
+        assertThat(storedConnection.getUserName()).isEqualTo("üser1");
+        assertThat(AuthenticatedConnection.id(connectionAttributeStore)).isEqualTo(connection.getId());
+    }
+
+    @Test
+    void test_connections_have_different_ids() {
+        final var connection1 = connection("user1");
+        final var connection2 = connection("user1");
+        assertThat(connection1.getId()).isNotEqualTo(connection2.getId());
+    }
+
+    @Test
+    void test_not_authenticated_by_extension() {
+        final var connectionAttributeStore = connectionAttributeStore();
+        assertThat(AuthenticatedConnection.of(connectionAttributeStore)).isNull();
+        assertThat(AuthenticatedConnection.id(connectionAttributeStore)).isNull();
+    }
+
+    static @NotNull AuthenticatedConnection connection(final @NotNull String userName) {
+        return AuthenticatedConnection.store(connectionAttributeStore(), userName);
+    }
+
+    static @NotNull ConnectionAttributeStore connectionAttributeStore() {
+        final var attributes = new HashMap<String, ByteBuffer>();
+        final ConnectionAttributeStore connectionAttributeStore = mock();
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(connectionAttributeStore)
+                .put(anyString(), any(ByteBuffer.class));
+        when(connectionAttributeStore.get(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(attributes.get(invocation.<String>getArgument(0))));
+        return connectionAttributeStore;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuthenticationExecutorTest {
+
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+
+    private @NotNull AuthenticationExecutor authenticationExecutor;
+
+    @BeforeEach
+    void setUp() {
+        final var extensionConfig = new ExtensionConfig();
+        extensionConfig.setAsyncAuthenticationThreads(1);
+        extensionConfig.setAsyncAuthenticationQueueSize(1);
+        authenticationExecutor = new AuthenticationExecutor(extensionConfig, metricRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        authenticationExecutor.shutdown();
+    }
+
+    @Test
+    void test_submit() throws Exception {
+        final var executed = new CountDownLatch(1);
+        assertThat(authenticationExecutor.submit(executed::countDown, () -> {})).isTrue();
+        assertThat(executed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(metricRegistry.timer(AuthenticationExecutor.WAIT_TIME).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_submit_rejected_if_queue_full() throws Exception {
+        final var started = new CountDownLatch(1);
+        final var blocked = new CountDownLatch(1);
+        assertThat(authenticationExecutor.submit(() -> {
+            started.countDown();
+            try {
+                blocked.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, () -> {})).isTrue();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        // the only worker is blocked, so the second task stays in the queue
+        assertThat(authenticationExecutor.submit(() -> {}, () -> {})).isTrue();
+        assertThat(metricRegistry.getGauges().get(AuthenticationExecutor.QUEUE_SIZE).getValue()).isEqualTo(1);
+        assertThat(authenticationExecutor.submit(() -> {}, () -> {})).isFalse();
+        assertThat(metricRegistry.meter(AuthenticationExecutor.REJECTED).getCount()).isEqualTo(1);
+        blocked.countDown();
+    }
+
+    @Test
+    void test_expired_task_is_not_run() throws Exception {
+        authenticationExecutor.shutdown();
+        final var extensionConfig = new ExtensionConfig();
+        extensionConfig.setAsyncAuthenticationTimeout(0);
+        authenticationExecutor = new AuthenticationExecutor(extensionConfig, metricRegistry);
+        final var executed = new CountDownLatch(1);
+        final var expired = new CountDownLatch(1);
+        assertThat(authenticationExecutor.submit(executed::countDown, expired::countDown)).isTrue();
+        assertThat(expired.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(executed.getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter(AuthenticationExecutor.EXPIRED).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_timeout() {
+        assertThat(authenticationExecutor.getTimeout().getSeconds()).isEqualTo(10);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.packets.connect.ConnackReasonCode;
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConnectMetricsTest {
+
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+    private final @NotNull AtomicLong nanoClock = new AtomicLong();
+
+    @Test
+    void test_instruments_registered_up_front() {
+        final ExtensionConfig extensionConfig = mock();
+        when(extensionConfig.getListenerNames()).thenReturn(Set.of("listener-1"));
+        new ConnectMetrics(extensionConfig, metricRegistry, nanoClock::get);
+        assertThat(metricRegistry.getTimers()).containsOnlyKeys(ConnectMetrics.LATENCY);
+        assertThat(metricRegistry.getHistograms()).containsOnlyKeys(ConnectMetrics.PERMISSIONS);
+        assertThat(metricRegistry.getCounters()).containsKeys(ConnectMetrics.OUTCOME + "success",
+                ConnectMetrics.OUTCOME + "not-authorized",
+                ConnectMetrics.OUTCOME + "server-busy",
+                ConnectMetrics.OUTCOME + ConnectMetrics.NEXT_EXTENSION,
+                ConnectMetrics.LISTENER + "listener-1.succeeded",
+                ConnectMetrics.LISTENER + "listener-1.failed",
+                ConnectMetrics.LISTENER + "listener-1.next-extension");
+        assertThat(metricRegistry.getCounters()).hasSize(ConnackReasonCode.values().length + 4);
+    }
+
+    @Test
+    void test_outcomes() {
+        final var connectMetrics = new ConnectMetrics(new ExtensionConfig(), metricRegistry, nanoClock::get);
+        final var start = connectMetrics.start();
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(5));
+        connectMetrics.succeeded("listener-1", 3, start);
+        connectMetrics.failed("listener-1", ConnackReasonCode.NOT_AUTHORIZED, start);
+        connectMetrics.failed(null, ConnackReasonCode.SERVER_BUSY, start);
+        connectMetrics.nextExtension("listener-2", start);
+        assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + "success").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + "not-authorized").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + "server-busy").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + ConnectMetrics.NEXT_EXTENSION).getCount())
+                .isEqualTo(1);
+        assertThat(metricRegistry.counter(ConnectMetrics.LISTENER + "listener-1.succeeded").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(ConnectMetrics.LISTENER + "listener-1.failed").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(ConnectMetrics.LISTENER + "listener-2.next-extension").getCount())
+                .isEqualTo(1);
+        assertThat(metricRegistry.histogram(ConnectMetrics.PERMISSIONS).getSnapshot().getValues()).containsExactly(3);
+        final var latency = metricRegistry.timer(ConnectMetrics.LATENCY);
+        assertThat(latency.getCount()).isEqualTo(4);
+        assertThat(latency.getSnapshot().getMax()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(5));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectRateLimiterTest {
+
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+    private final @NotNull ExtensionConfig extensionConfig = new ExtensionConfig();
+    // starts near the overflow of nano times
+    private long nanoTime = Long.MAX_VALUE - TimeUnit.SECONDS.toNanos(30);
+
+    @Test
+    void test_disabled() {
+        assertThat(ConnectRateLimiter.isEnabled(extensionConfig)).isFalse();
+        final var connectRateLimiter = new ConnectRateLimiter(extensionConfig, metricRegistry, () -> nanoTime);
+        for (var i = 0; i < 100; i++) {
+            assertThat(connectRateLimiter.tryAcquire("user1", InetAddress.getLoopbackAddress())).isTrue();
+        }
+    }
+
+    @Test
+    void test_username_burst_and_refill() {
+        extensionConfig.setUsernameRateLimit(60);
+        extensionConfig.setUsernameRateLimitBurst(3);
+        assertThat(ConnectRateLimiter.isEnabled(extensionConfig)).isTrue();
+        final var connectRateLimiter = new ConnectRateLimiter(extensionConfig, metricRegistry, () -> nanoTime);
+        for (var i = 0; i < 3; i++) {
+            assertThat(connectRateLimiter.tryAcquire("user1", null)).isTrue();
+        }
+        assertThat(connectRateLimiter.tryAcquire("user1", null)).isFalse();
+        // other usernames have their own bucket
+        assertThat(connectRateLimiter.tryAcquire("user2", null)).isTrue();
+        // 60 attempts per minute refill one token per second, also across the overflow of the nano time
+        nanoTime += TimeUnit.SECONDS.toNanos(1);
+        assertThat(connectRateLimiter.tryAcquire("user1", null)).isTrue();
+        assertThat(connectRateLimiter.tryAcquire("user1", null)).isFalse();
+        nanoTime += TimeUnit.MINUTES.toNanos(1);
+        for (var i = 0; i < 3; i++) {
+            assertThat(connectRateLimiter.tryAcquire("user1", null)).isTrue();
+        }
+        assertThat(connectRateLimiter.tryAcquire("user1", null)).isFalse();
+        assertThat(metricRegistry.counter(ConnectRateLimiter.USERNAME_REJECTED).getCount()).isEqualTo(3);
+        assertThat(metricRegistry.counter(ConnectRateLimiter.IP_REJECTED).getCount()).isEqualTo(0);
+    }
+
+    @Test
+    void test_unused_buckets_expire_with_the_clock() {
+        extensionConfig.setUsernameRateLimit(60);
+        extensionConfig.setUsernameRateLimitBurst(3);
+        final var connectRateLimiter = new ConnectRateLimiter(extensionConfig, metricRegistry, () -> nanoTime);
+        assertThat(connectRateLimiter.tryAcquire("user1", null)).isTrue();
+        assertThat(connectRateLimiter.tryAcquire("user2", null)).isTrue();
+        assertThat(metricRegistry.getGauges().get(ConnectRateLimiter.KEYS).getValue()).isEqualTo(2L);
+        // a bucket refills completely after 3 seconds
+        nanoTime += TimeUnit.SECONDS.toNanos(2);
+        assertThat(connectRateLimiter.tryAcquire("user1", null)).isTrue();
+        nanoTime += TimeUnit.SECONDS.toNanos(2);
+        assertThat(metricRegistry.getGauges().get(ConnectRateLimiter.KEYS).getValue()).isEqualTo(1L);
+        nanoTime += TimeUnit.SECONDS.toNanos(2);
+        assertThat(metricRegistry.getGauges().get(ConnectRateLimiter.KEYS).getValue()).isEqualTo(0L);
+    }
+
+    @Test
+    void test_ip() throws Exception {
+        extensionConfig.setIpRateLimit(1);
+        extensionConfig.setIpRateLimitBurst(2);
+        final var connectRateLimiter = new ConnectRateLimiter(extensionConfig, metricRegistry, () -> nanoTime);
+        final var address1 = InetAddress.getByAddress(new byte[]{10, 0, 0, 1});
+        final var address2 = InetAddress.getByAddress(new byte[]{10, 0, 0, 2});
+        assertThat(connectRateLimiter.tryAcquire("user1", address1)).isTrue();
+        assertThat(connectRateLimiter.tryAcquire("user2", address1)).isTrue();
+        assertThat(connectRateLimiter.tryAcquire("user3", address1)).isFalse();
+        assertThat(connectRateLimiter.tryAcquire("user3", address2)).isTrue();
+        // unknown addresses are not limited
+        assertThat(connectRateLimiter.tryAcquire("user3", null)).isTrue();
+        assertThat(metricRegistry.counter(ConnectRateLimiter.IP_REJECTED).getCount()).isEqualTo(1);
+    }
+}
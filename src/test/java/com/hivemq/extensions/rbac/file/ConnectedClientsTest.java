@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static com.hivemq.extensions.rbac.file.AuthenticatedConnectionTest.connection;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConnectedClientsTest {
+
+    private final @NotNull ConnectedClients connectedClients = new ConnectedClients();
+
+    @Test
+    void test_authenticated_and_disconnected() {
+        final var connection = connection("user1");
+        connectedClients.authenticated("client1", connection);
+        assertThat(connectedClients.getClients("user1")).containsOnlyKeys("client1");
+        assertThat(connectedClients.getUserCount()).isEqualTo(1);
+        connectedClients.disconnected("client1", connection);
+        assertThat(connectedClients.getClients("user1")).isEmpty();
+        assertThat(connectedClients.getUserCount()).isEqualTo(0);
+    }
+
+    @Test
+    void test_disconnect_of_unknown_connection() {
+        connectedClients.disconnected("client1", connection("user1"));
+        assertThat(connectedClients.getUserCount()).isEqualTo(0);
+    }
+
+    @Test
+    void test_disconnect_of_taken_over_connection() {
+        final var connection1 = connection("user1");
+        connectedClients.authenticated("client1", connection1);
+        final var connection2 = connection("user1");
+        connectedClients.authenticated("client1", connection2);
+        connectedClients.disconnected("client1", connection1);
+        assertThat(connectedClients.getClients("user1")).containsEntry("client1", connection2.getId());
+        assertThat(connectedClients.isConnected("user1", "client1", connection2.getId())).isTrue();
+        assertThat(connectedClients.isConnected("user1", "client1", connection1.getId())).isFalse();
+    }
+
+    @Test
+    void test_clients_of_users() {
+        connectedClients.authenticated("client1", connection("user1"));
+        connectedClients.authenticated("client2", connection("user1"));
+        connectedClients.authenticated("client3", connection("üser2"));
+        assertThat(connectedClients.getClients("user1")).containsOnlyKeys("client1", "client2");
+        assertThat(connectedClients.getClients("üser2")).containsOnlyKeys("client3");
+        assertThat(connectedClients.getClients("user3")).isEmpty();
+    }
+}
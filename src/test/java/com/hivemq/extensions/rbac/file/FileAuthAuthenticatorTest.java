@@ -16,6 +16,9 @@
 
 package com.hivemq.extensions.rbac.file;
 
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.async.Async;
+import com.hivemq.extension.sdk.api.async.TimeoutFallback;
 import com.hivemq.extension.sdk.api.auth.parameter.SimpleAuthInput;
 import com.hivemq.extension.sdk.api.auth.parameter.SimpleAuthOutput;
 import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
@@ -42,17 +45,25 @@ import org.junit.jupiter.api.Test;
 
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -63,12 +74,14 @@ class FileAuthAuthenticatorTest {
     private final @NotNull SimpleAuthOutput simpleAuthOutput = mock();
 
     private final @NotNull ModifiableDefaultPermissions modifiableDefaultPermissions = new TestDefaultPermissions();
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+    private final @NotNull ConnectMetrics connectMetrics = new ConnectMetrics(new ExtensionConfig(), metricRegistry);
     private final @NotNull FileAuthAuthenticator fileAuthAuthenticator =
-            new FileAuthAuthenticator(credentialsValidator, extensionConfig);
+            new FileAuthAuthenticator(credentialsValidator, extensionConfig, null, null, null, null, connectMetrics);
 
     @BeforeEach
     void before() {
-        when(credentialsValidator.getPermissions(anyString(), anyString(), anyList()))
+        when(credentialsValidator.authenticate(anyString(), anyString(), any(ByteBuffer.class)))
                 .thenReturn(List.of(mock(TopicPermission.class), mock(TopicPermission.class)));
         when(simpleAuthOutput.getDefaultPermissions()).thenReturn(modifiableDefaultPermissions);
     }
@@ -168,7 +181,7 @@ class FileAuthAuthenticatorTest {
 
     @Test
     void test_connect_with_invalid_credentials() {
-        when(credentialsValidator.getRoles(anyString(), any(ByteBuffer.class))).thenReturn(null);
+        when(credentialsValidator.authenticate(anyString(), anyString(), any(ByteBuffer.class))).thenReturn(null);
         when(extensionConfig.getListenerNames()).thenReturn(Set.of("listener-3", "listener-2"));
         fileAuthAuthenticator.onConnect(new TestInput("client1", "user1", "pass1", "listener-2"), simpleAuthOutput);
         verify(simpleAuthOutput).failAuthentication(ConnackReasonCode.NOT_AUTHORIZED,
@@ -178,7 +191,7 @@ class FileAuthAuthenticatorTest {
     @Test
     void test_connect_with_invalid_credentials_but_nextExtensionOrDefault() {
         when(extensionConfig.isNextExtensionInsteadOfFail()).thenReturn(true);
-        when(credentialsValidator.getRoles(anyString(), any(ByteBuffer.class))).thenReturn(null);
+        when(credentialsValidator.authenticate(anyString(), anyString(), any(ByteBuffer.class))).thenReturn(null);
         when(extensionConfig.getListenerNames()).thenReturn(Set.of("listener-3", "listener-2"));
         fileAuthAuthenticator.onConnect(new TestInput("client1", "user1", "pass1", "listener-2"), simpleAuthOutput);
         verify(simpleAuthOutput).nextExtensionOrDefault();
@@ -186,7 +199,7 @@ class FileAuthAuthenticatorTest {
 
     @Test
     void test_connect_with_valid_credentials_empty_roles() {
-        when(credentialsValidator.getRoles(anyString(), any(ByteBuffer.class))).thenReturn(List.of());
+        when(credentialsValidator.authenticate(anyString(), anyString(), any(ByteBuffer.class))).thenReturn(null);
         fileAuthAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
         verify(simpleAuthOutput).failAuthentication(ConnackReasonCode.NOT_AUTHORIZED,
                 "Authentication failed because of invalid credentials");
@@ -195,19 +208,265 @@ class FileAuthAuthenticatorTest {
     @Test
     void test_connect_with_valid_credentials_empty_roles_but_nextExtensionOrDefault() {
         when(extensionConfig.isNextExtensionInsteadOfFail()).thenReturn(true);
-        when(credentialsValidator.getRoles(anyString(), any(ByteBuffer.class))).thenReturn(List.of());
+        when(credentialsValidator.authenticate(anyString(), anyString(), any(ByteBuffer.class))).thenReturn(null);
         fileAuthAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
         verify(simpleAuthOutput).nextExtensionOrDefault();
     }
 
     @Test
     void test_connect_with_valid_credentials() {
-        when(credentialsValidator.getRoles(anyString(), any(ByteBuffer.class))).thenReturn(List.of("role1", "role2"));
         fileAuthAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
         verify(simpleAuthOutput).authenticateSuccessfully();
         assertThat(modifiableDefaultPermissions.asList()).hasSize(2);
     }
 
+    @Test
+    void test_connect_metrics_succeeded() {
+        fileAuthAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
+        verify(simpleAuthOutput).authenticateSuccessfully();
+        assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + "success").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(ConnectMetrics.LISTENER + "testName.succeeded").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.histogram(ConnectMetrics.PERMISSIONS).getSnapshot().getMax()).isEqualTo(2);
+        assertThat(metricRegistry.timer(ConnectMetrics.LATENCY).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_connect_metrics_failed() {
+        when(credentialsValidator.authenticate(anyString(), anyString(), any(ByteBuffer.class))).thenReturn(null);
+        fileAuthAuthenticator.onConnect(new TestInput("client1", "user1", "pass1", "listener-2"), simpleAuthOutput);
+        fileAuthAuthenticator.onConnect(new TestInput("client1", null, "pass1", "listener-2"), simpleAuthOutput);
+        assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + "not-authorized").getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + "bad-user-name-or-password").getCount())
+                .isEqualTo(1);
+        assertThat(metricRegistry.counter(ConnectMetrics.LISTENER + "listener-2.failed").getCount()).isEqualTo(2);
+        assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + "success").getCount()).isEqualTo(0);
+        assertThat(metricRegistry.timer(ConnectMetrics.LATENCY).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void test_connect_metrics_next_extension() {
+        when(extensionConfig.getListenerNames()).thenReturn(Set.of("listener-3", "listener-2"));
+        fileAuthAuthenticator.onConnect(new TestInput("client1", "user1", "pass1", "listener-1"), simpleAuthOutput);
+        verify(simpleAuthOutput).nextExtensionOrDefault();
+        assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + ConnectMetrics.NEXT_EXTENSION).getCount())
+                .isEqualTo(1);
+        assertThat(metricRegistry.counter(ConnectMetrics.LISTENER + "listener-1.next-extension").getCount())
+                .isEqualTo(1);
+        assertThat(metricRegistry.timer(ConnectMetrics.LATENCY).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_connect_with_topic_trie_authorizer() {
+        final TopicTrieAuthorizer topicTrieAuthorizer = mock();
+        final var trieAuthenticator = new FileAuthAuthenticator(credentialsValidator,
+                extensionConfig,
+                null,
+                null,
+                topicTrieAuthorizer,
+                null,
+                connectMetrics);
+        trieAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
+        verify(simpleAuthOutput).authenticateSuccessfully();
+        verify(topicTrieAuthorizer).register(anyLong(), anyList());
+        assertThat(modifiableDefaultPermissions.asList()).isEmpty();
+    }
+
+    @Test
+    void test_connect_with_connected_clients() {
+        final ConnectedClients connectedClients = mock();
+        final var revocableAuthenticator = new FileAuthAuthenticator(credentialsValidator,
+                extensionConfig,
+                null,
+                null,
+                null,
+                connectedClients,
+                connectMetrics);
+        revocableAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
+        verify(simpleAuthOutput).authenticateSuccessfully();
+        verify(connectedClients).authenticated(eq("client1"),
+                argThat(connection -> connection.getUserName().equals("user1")));
+    }
+
+    @Test
+    void test_connect_fails_if_credentials_reloaded_during_authentication() {
+        final var connectedClients = new ConnectedClients();
+        final var revocableAuthenticator = new FileAuthAuthenticator(credentialsValidator,
+                extensionConfig,
+                null,
+                null,
+                null,
+                connectedClients,
+                connectMetrics);
+        final var generation = new AtomicLong(1);
+        when(credentialsValidator.getGeneration()).thenAnswer(invocation -> generation.get());
+        // a reload swaps the credentials and collects the connected clients while the password is hashed
+        when(credentialsValidator.authenticate(anyString(), anyString(), any(ByteBuffer.class))).thenAnswer(
+                invocation -> {
+                    generation.incrementAndGet();
+                    assertThat(connectedClients.getClients("user1")).isEmpty();
+                    return List.of(mock(TopicPermission.class));
+                });
+        revocableAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
+        verify(simpleAuthOutput).failAuthentication(ConnackReasonCode.SERVER_BUSY,
+                "Authentication failed because the credentials were reloaded");
+        verify(simpleAuthOutput, never()).authenticateSuccessfully();
+        assertThat(connectedClients.getClients("user1")).isEmpty();
+        assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + "server-busy").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_connect_adds_connected_client_before_reload() {
+        final var connectedClients = new ConnectedClients();
+        final var revocableAuthenticator = new FileAuthAuthenticator(credentialsValidator,
+                extensionConfig,
+                null,
+                null,
+                null,
+                connectedClients,
+                connectMetrics);
+        when(credentialsValidator.getGeneration()).thenReturn(1L);
+        revocableAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
+        verify(simpleAuthOutput).authenticateSuccessfully();
+        // a reload that starts now sees the client and can revoke it
+        assertThat(connectedClients.getClients("user1")).containsOnlyKeys("client1");
+    }
+
+    @Test
+    void test_connect_rate_limited() {
+        final var rateLimitConfig = new ExtensionConfig();
+        rateLimitConfig.setUsernameRateLimit(1);
+        rateLimitConfig.setUsernameRateLimitBurst(1);
+        final var rateLimitedAuthenticator = new FileAuthAuthenticator(credentialsValidator,
+                extensionConfig,
+                null,
+                new ConnectRateLimiter(rateLimitConfig, new MetricRegistry()),
+                null,
+                null,
+                connectMetrics);
+        rateLimitedAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
+        verify(simpleAuthOutput).authenticateSuccessfully();
+        rateLimitedAuthenticator.onConnect(new TestInput("client2", "user1", "pass1"), simpleAuthOutput);
+        verify(simpleAuthOutput).failAuthentication(ConnackReasonCode.NOT_AUTHORIZED,
+                "Authentication failed because of too many attempts");
+        verify(credentialsValidator).authenticate(anyString(), anyString(), any(ByteBuffer.class));
+    }
+
+    @Test
+    void test_connect_async_with_valid_credentials() {
+        final var authenticationExecutor = new AuthenticationExecutor(new ExtensionConfig(), new MetricRegistry());
+        try {
+            final var asyncAuthenticator = new FileAuthAuthenticator(credentialsValidator,
+                    extensionConfig,
+                    authenticationExecutor,
+                    null,
+                    null,
+                    null,
+                    connectMetrics);
+            final Async<SimpleAuthOutput> async = mock();
+            when(simpleAuthOutput.async(Duration.ofSeconds(10),
+                    TimeoutFallback.FAILURE,
+                    ConnackReasonCode.SERVER_BUSY,
+                    "Authentication timed out")).thenReturn(async);
+            asyncAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
+            verify(async, timeout(5_000)).resume();
+            verify(simpleAuthOutput).authenticateSuccessfully();
+            assertThat(modifiableDefaultPermissions.asList()).hasSize(2);
+        } finally {
+            authenticationExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void test_connect_async_with_invalid_credentials() {
+        final var authenticationExecutor = new AuthenticationExecutor(new ExtensionConfig(), new MetricRegistry());
+        try {
+            final var asyncAuthenticator = new FileAuthAuthenticator(credentialsValidator,
+                    extensionConfig,
+                    authenticationExecutor,
+                    null,
+                    null,
+                    null,
+                    connectMetrics);
+            final Async<SimpleAuthOutput> async = mock();
+            when(simpleAuthOutput.async(Duration.ofSeconds(10),
+                    TimeoutFallback.FAILURE,
+                    ConnackReasonCode.SERVER_BUSY,
+                    "Authentication timed out")).thenReturn(async);
+            when(credentialsValidator.authenticate(anyString(), anyString(), any(ByteBuffer.class))).thenReturn(null);
+            asyncAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
+            verify(async, timeout(5_000)).resume();
+            verify(simpleAuthOutput).failAuthentication(ConnackReasonCode.NOT_AUTHORIZED,
+                    "Authentication failed because of invalid credentials");
+        } finally {
+            authenticationExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void test_connect_async_completed_after_timeout() {
+        final var nanoTime = new AtomicLong();
+        final var lateConnectMetrics = new ConnectMetrics(new ExtensionConfig(), metricRegistry, nanoTime::get);
+        final var authenticationExecutor = new AuthenticationExecutor(new ExtensionConfig(), new MetricRegistry());
+        try {
+            final TopicTrieAuthorizer topicTrieAuthorizer = mock();
+            final ConnectedClients connectedClients = mock();
+            final var asyncAuthenticator = new FileAuthAuthenticator(credentialsValidator,
+                    extensionConfig,
+                    authenticationExecutor,
+                    null,
+                    topicTrieAuthorizer,
+                    connectedClients,
+                    lateConnectMetrics);
+            final Async<SimpleAuthOutput> async = mock();
+            when(simpleAuthOutput.async(Duration.ofSeconds(10),
+                    TimeoutFallback.FAILURE,
+                    ConnackReasonCode.SERVER_BUSY,
+                    "Authentication timed out")).thenReturn(async);
+            // the password hashing outlasts the timeout, so the broker already failed the authentication
+            when(credentialsValidator.authenticate(anyString(), anyString(), any(ByteBuffer.class))).thenAnswer(
+                    invocation -> {
+                        nanoTime.addAndGet(Duration.ofSeconds(11).toNanos());
+                        return List.of(mock(TopicPermission.class));
+                    });
+            asyncAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
+            verify(async, timeout(5_000)).resume();
+            verify(simpleAuthOutput, never()).authenticateSuccessfully();
+            verify(simpleAuthOutput, never()).failAuthentication(any(ConnackReasonCode.class), anyString());
+            verify(topicTrieAuthorizer, never()).register(anyLong(), anyList());
+            verify(connectedClients, never()).authenticated(anyString(), any(AuthenticatedConnection.class));
+            assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + "server-busy").getCount()).isEqualTo(1);
+            assertThat(metricRegistry.counter(ConnectMetrics.OUTCOME + "success").getCount()).isEqualTo(0);
+        } finally {
+            authenticationExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void test_connect_async_output_failure_does_not_escape() {
+        final var authenticationExecutor = new AuthenticationExecutor(new ExtensionConfig(), new MetricRegistry());
+        try {
+            final var asyncAuthenticator = new FileAuthAuthenticator(credentialsValidator,
+                    extensionConfig,
+                    authenticationExecutor,
+                    null,
+                    null,
+                    null,
+                    connectMetrics);
+            final Async<SimpleAuthOutput> async = mock();
+            when(simpleAuthOutput.async(Duration.ofSeconds(10),
+                    TimeoutFallback.FAILURE,
+                    ConnackReasonCode.SERVER_BUSY,
+                    "Authentication timed out")).thenReturn(async);
+            // the broker timed out the authentication while the output was used
+            doThrow(new IllegalStateException("already decided")).when(simpleAuthOutput).authenticateSuccessfully();
+            asyncAuthenticator.onConnect(new TestInput("client1", "user1", "pass1"), simpleAuthOutput);
+            verify(async, timeout(5_000)).resume();
+            verify(simpleAuthOutput).authenticateSuccessfully();
+        } finally {
+            authenticationExecutor.shutdown();
+        }
+    }
+
     private static final class TestDefaultPermissions implements ModifiableDefaultPermissions {
 
         private final @NotNull List<TopicPermission> permissions = new ArrayList<>();
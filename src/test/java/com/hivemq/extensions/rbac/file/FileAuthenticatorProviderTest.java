@@ -25,7 +25,8 @@ class FileAuthenticatorProviderTest {
 
     @Test
     void test_return_same_authenticator() {
-        final var fileAuthenticatorProvider = new FileAuthenticatorProvider(mock(), mock());
+        final var fileAuthenticatorProvider =
+                new FileAuthenticatorProvider(mock(), mock(), null, null, null, null, mock());
         final var authenticator1 = fileAuthenticatorProvider.getAuthenticator(mock());
         final var authenticator2 = fileAuthenticatorProvider.getAuthenticator(mock());
         assertThat(authenticator1).isSameAs(authenticator2);
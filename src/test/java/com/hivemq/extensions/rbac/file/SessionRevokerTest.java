@@ -0,0 +1,151 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.services.session.ClientService;
+import com.hivemq.extensions.rbac.file.configuration.ConfigDiff;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.hivemq.extensions.rbac.file.AuthenticatedConnectionTest.connection;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionRevokerTest {
+
+    private static final @NotNull List<Role> ROLES = List.of(new Role("role1", List.of(new Permission("a/#"))),
+            new Role("role2", List.of(new Permission("b/#"))));
+    private static final @NotNull FileAuthConfig OLD_CONFIG = new FileAuthConfig(List.of(//
+            new User("user1", "pass1", List.of("role1")),
+            new User("user2", "pass2", List.of("role1", "role2")),
+            new User("user3", "pass3", List.of("role2"))), ROLES);
+
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+    private final @NotNull ConnectedClients connectedClients = new ConnectedClients();
+    private final @NotNull ClientService clientService = mock();
+    private final @NotNull List<Runnable> batches = new ArrayList<>();
+    private final @NotNull SessionRevoker sessionRevoker =
+            new SessionRevoker(connectedClients, clientService, batches::add, 2, metricRegistry, System::nanoTime);
+
+    @BeforeEach
+    void setUp() {
+        when(clientService.disconnectClient(anyString())).thenReturn(CompletableFuture.completedFuture(true));
+    }
+
+    @Test
+    void test_removed_user_is_revoked() {
+        final var newConfig = new FileAuthConfig(List.of(OLD_CONFIG.getUsers().get(1), OLD_CONFIG.getUsers().get(2)),
+                ROLES);
+        assertThat(revokedUsers(newConfig)).containsExactly("user1");
+    }
+
+    @Test
+    void test_user_that_lost_a_role_is_revoked() {
+        final var newConfig = new FileAuthConfig(List.of(new User("user1", "pass1", List.of("role1", "role2")),
+                new User("user2", "pass2", List.of("role2")),
+                new User("user3", "pass3", List.of("role2"))), ROLES);
+        assertThat(revokedUsers(newConfig)).containsExactly("user2");
+    }
+
+    @Test
+    void test_user_with_changed_password_is_revoked() {
+        final var newConfig = new FileAuthConfig(List.of(new User("user1", "changed", List.of("role1")),
+                OLD_CONFIG.getUsers().get(1),
+                OLD_CONFIG.getUsers().get(2)), ROLES);
+        assertThat(revokedUsers(newConfig)).containsExactly("user1");
+    }
+
+    @Test
+    void test_users_of_role_with_removed_permission_are_revoked() {
+        final var newConfig = new FileAuthConfig(OLD_CONFIG.getUsers(),
+                List.of(ROLES.get(0), new Role("role2", List.of(new Permission("b/+")))));
+        assertThat(revokedUsers(newConfig)).containsExactlyInAnyOrder("user2", "user3");
+    }
+
+    @Test
+    void test_granted_permission_is_not_revoked() {
+        final var newConfig = new FileAuthConfig(OLD_CONFIG.getUsers(),
+                List.of(ROLES.get(0), new Role("role2", List.of(new Permission("b/#"), new Permission("c/#")))));
+        assertThat(revokedUsers(newConfig)).isEmpty();
+    }
+
+    @Test
+    void test_clients_disconnected_in_batches() {
+        for (var i = 0; i < 5; i++) {
+            connectedClients.authenticated("client" + i, connection("user1"));
+        }
+        connectedClients.authenticated("other", connection("user2"));
+        final var newConfig = new FileAuthConfig(List.of(OLD_CONFIG.getUsers().get(1), OLD_CONFIG.getUsers().get(2)),
+                ROLES);
+        sessionRevoker.onReload(OLD_CONFIG, newConfig, ConfigDiff.of(OLD_CONFIG, newConfig));
+        assertThat(metricRegistry.counter(SessionRevoker.REVOKED).getCount()).isEqualTo(2);
+        // the next batch starts after the disconnects of the previous batch completed
+        assertThat(batches).hasSize(1);
+        batches.remove(0).run();
+        batches.remove(0).run();
+        assertThat(batches).isEmpty();
+        assertThat(metricRegistry.counter(SessionRevoker.REVOKED).getCount()).isEqualTo(5);
+        assertThat(metricRegistry.timer(SessionRevoker.REVOCATION_LATENCY).getCount()).isEqualTo(5);
+        verify(clientService, never()).disconnectClient("other");
+    }
+
+    @Test
+    void test_reconnected_client_is_not_disconnected() {
+        final var connection1 = connection("user1");
+        connectedClients.authenticated("client1", connection1);
+        final var connection2 = connection("user1");
+        connectedClients.authenticated("client2", connection2);
+        final var connection3 = connection("user1");
+        connectedClients.authenticated("client3", connection3);
+        final var newConfig = new FileAuthConfig(List.of(OLD_CONFIG.getUsers().get(1), OLD_CONFIG.getUsers().get(2)),
+                ROLES);
+        sessionRevoker.onReload(OLD_CONFIG, newConfig, ConfigDiff.of(OLD_CONFIG, newConfig));
+        final var revokedCount = metricRegistry.counter(SessionRevoker.REVOKED).getCount();
+        // the client of the last batch disconnects before it is revoked
+        for (final var clientId : List.of("client1", "client2", "client3")) {
+            connectedClients.disconnected(clientId, connection1);
+            connectedClients.disconnected(clientId, connection2);
+            connectedClients.disconnected(clientId, connection3);
+        }
+        batches.remove(0).run();
+        assertThat(metricRegistry.counter(SessionRevoker.REVOKED).getCount()).isEqualTo(revokedCount).isEqualTo(2);
+    }
+
+    @Test
+    void test_first_config_revokes_nothing() {
+        sessionRevoker.onReload(null, OLD_CONFIG, ConfigDiff.of(null, OLD_CONFIG));
+        verify(clientService, never()).disconnectClient(anyString());
+    }
+
+    private static @NotNull Iterable<String> revokedUsers(final @NotNull FileAuthConfig newConfig) {
+        return SessionRevoker.revokedUsers(OLD_CONFIG, ConfigDiff.of(OLD_CONFIG, newConfig));
+    }
+}
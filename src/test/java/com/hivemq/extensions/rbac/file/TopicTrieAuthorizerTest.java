@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extension.sdk.api.auth.parameter.PublishAuthorizerInput;
+import com.hivemq.extension.sdk.api.auth.parameter.PublishAuthorizerOutput;
+import com.hivemq.extension.sdk.api.auth.parameter.SubscriptionAuthorizerInput;
+import com.hivemq.extension.sdk.api.auth.parameter.SubscriptionAuthorizerOutput;
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionAttributeStore;
+import com.hivemq.extension.sdk.api.client.parameter.ConnectionInformation;
+import com.hivemq.extension.sdk.api.packets.general.Qos;
+import com.hivemq.extension.sdk.api.packets.publish.PublishPacket;
+import com.hivemq.extension.sdk.api.packets.subscribe.Subscription;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TopicTrieAuthorizerTest {
+
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+    private final @NotNull TopicTrieAuthorizer authorizer = new TopicTrieAuthorizer(metricRegistry);
+    private final @NotNull Map<String, ByteBuffer> attributes = new HashMap<>();
+    private final @NotNull ConnectionAttributeStore connectionAttributeStore = mock();
+    private final @NotNull ConnectionInformation connectionInformation = mock();
+    private final @NotNull List<TopicPermission> permissions = List.of(permission("data/+/personal"));
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(connectionAttributeStore)
+                .put(anyString(), any(ByteBuffer.class));
+        when(connectionAttributeStore.get(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(attributes.get(invocation.<String>getArgument(0))));
+        when(connectionInformation.getConnectionAttributeStore()).thenReturn(connectionAttributeStore);
+    }
+
+    @Test
+    void test_publish_authorized() {
+        register();
+        final PublishAuthorizerOutput output = mock();
+        authorizer.authorizePublish(publish("data/client1/personal"), output);
+        verify(output).authorizeSuccessfully();
+    }
+
+    @Test
+    void test_publish_not_authorized() {
+        register();
+        final PublishAuthorizerOutput output = mock();
+        authorizer.authorizePublish(publish("data/client1/other"), output);
+        verify(output).failAuthorization();
+    }
+
+    @Test
+    void test_subscription_authorized() {
+        register();
+        final SubscriptionAuthorizerOutput output = mock();
+        authorizer.authorizeSubscribe(subscribe("data/+/personal"), output);
+        verify(output).authorizeSuccessfully();
+    }
+
+    @Test
+    void test_subscription_not_authorized() {
+        register();
+        final SubscriptionAuthorizerOutput output = mock();
+        authorizer.authorizeSubscribe(subscribe("data/#"), output);
+        verify(output).failAuthorization();
+    }
+
+    @Test
+    void test_unknown_connection() {
+        final PublishAuthorizerOutput publishOutput = mock();
+        authorizer.authorizePublish(publish("data/client1/personal"), publishOutput);
+        verify(publishOutput).nextExtensionOrDefault();
+        final SubscriptionAuthorizerOutput subscriptionOutput = mock();
+        authorizer.authorizeSubscribe(subscribe("data/+/personal"), subscriptionOutput);
+        verify(subscriptionOutput).nextExtensionOrDefault();
+    }
+
+    @Test
+    void test_unregister() {
+        final var connection = register();
+        assertThat(metricRegistry.getGauges().get(TopicTrieAuthorizer.CONNECTIONS).getValue()).isEqualTo(1);
+        authorizer.unregister(connection.getId());
+        assertThat(metricRegistry.getGauges().get(TopicTrieAuthorizer.CONNECTIONS).getValue()).isEqualTo(0);
+        final PublishAuthorizerOutput output = mock();
+        authorizer.authorizePublish(publish("data/client1/personal"), output);
+        verify(output).nextExtensionOrDefault();
+    }
+
+    @Test
+    void test_trie_shared_by_equal_permission_lists() {
+        register();
+        authorizer.register(AuthenticatedConnection.store(mock(), "user2").getId(), permissions);
+        assertThat(metricRegistry.getGauges().get(TopicTrieAuthorizer.CONNECTIONS).getValue()).isEqualTo(2);
+        assertThat(metricRegistry.getGauges().get(TopicTrieAuthorizer.TRIES).getValue()).isEqualTo(1L);
+    }
+
+    private @NotNull AuthenticatedConnection register() {
+        final var connection = AuthenticatedConnection.store(connectionAttributeStore, "user1");
+        authorizer.register(connection.getId(), permissions);
+        return connection;
+    }
+
+    private @NotNull PublishAuthorizerInput publish(final @NotNull String topic) {
+        final PublishPacket publishPacket = mock();
+        when(publishPacket.getTopic()).thenReturn(topic);
+        when(publishPacket.getQos()).thenReturn(Qos.AT_LEAST_ONCE);
+        final PublishAuthorizerInput input = mock();
+        when(input.getPublishPacket()).thenReturn(publishPacket);
+        when(input.getConnectionInformation()).thenReturn(connectionInformation);
+        return input;
+    }
+
+    private @NotNull SubscriptionAuthorizerInput subscribe(final @NotNull String topicFilter) {
+        final Subscription subscription = mock();
+        when(subscription.getTopicFilter()).thenReturn(topicFilter);
+        when(subscription.getQos()).thenReturn(Qos.AT_LEAST_ONCE);
+        final SubscriptionAuthorizerInput input = mock();
+        when(input.getSubscription()).thenReturn(subscription);
+        when(input.getConnectionInformation()).thenReturn(connectionInformation);
+        return input;
+    }
+
+    private static @NotNull TopicPermission permission(final @NotNull String topicFilter) {
+        final TopicPermission permission = mock();
+        when(permission.getTopicFilter()).thenReturn(topicFilter);
+        when(permission.getType()).thenReturn(TopicPermission.PermissionType.ALLOW);
+        when(permission.getActivity()).thenReturn(TopicPermission.MqttActivity.ALL);
+        when(permission.getQos()).thenReturn(TopicPermission.Qos.ALL);
+        when(permission.getPublishRetain()).thenReturn(TopicPermission.Retain.ALL);
+        when(permission.getSharedSubscription()).thenReturn(TopicPermission.SharedSubscription.ALL);
+        when(permission.getSharedGroup()).thenReturn("#");
+        return permission;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConfigDiffTest {
+
+    @Test
+    void test_no_old_config() {
+        final var newConfig = new FileAuthConfig(List.of(new User("user1", "pass1", List.of("role1"))),
+                List.of(new Role("role1", List.of(new Permission("#")))));
+        final var diff = ConfigDiff.of(null, newConfig);
+        assertThat(diff.getAddedUsers()).containsExactlyElementsOf(newConfig.getUsers());
+        assertThat(diff.getAddedRoles()).containsExactlyElementsOf(newConfig.getRoles());
+        assertThat(diff.getChangedUsers()).isEmpty();
+        assertThat(diff.getRemovedUsers()).isEmpty();
+        assertThat(diff.isEmpty()).isFalse();
+    }
+
+    @Test
+    void test_equal_configs() {
+        final var oldConfig = new FileAuthConfig(List.of(new User("user1", "pass1", List.of("role1"))),
+                List.of(new Role("role1", List.of(new Permission("#")))));
+        final var newConfig = new FileAuthConfig(List.of(new User("user1", "pass1", List.of("role1"))),
+                List.of(new Role("role1", List.of(new Permission("#")))));
+        assertThat(ConfigDiff.of(oldConfig, newConfig).isEmpty()).isTrue();
+    }
+
+    @Test
+    void test_added_changed_removed() {
+        final var oldConfig = new FileAuthConfig(List.of(new User("user1", "pass1", List.of("role1")),
+                new User("user2", "pass2", List.of("role1")),
+                new User("user3", "pass3", List.of("role2"))),
+                List.of(new Role("role1", List.of(new Permission("#"))),
+                        new Role("role2", List.of(new Permission("a/#")))));
+        final var changedPermission = new Permission("#");
+        changedPermission.setActivity(TopicPermission.MqttActivity.SUBSCRIBE);
+        final var newConfig = new FileAuthConfig(List.of(new User("user1", "pass1", List.of("role1")),
+                new User("user2", "rotated", List.of("role1")),
+                new User("user4", "pass4", List.of("role3"))),
+                List.of(new Role("role1", List.of(changedPermission)),
+                        new Role("role3", List.of(new Permission("b/#")))));
+        final var diff = ConfigDiff.of(oldConfig, newConfig);
+        assertThat(diff.getAddedUsers()).extracting(User::getName).containsExactly("user4");
+        assertThat(diff.getChangedUsers()).extracting(User::getName).containsExactly("user2");
+        assertThat(diff.getRemovedUsers()).containsExactly("user3");
+        assertThat(diff.getAddedRoles()).extracting(Role::getId).containsExactly("role3");
+        assertThat(diff.getChangedRoles()).extracting(Role::getId).containsExactly("role1");
+        assertThat(diff.getRemovedRoles()).containsExactly("role2");
+    }
+}
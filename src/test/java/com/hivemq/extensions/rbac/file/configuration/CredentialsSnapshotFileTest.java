@@ -0,0 +1,132 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CredentialsSnapshotFileTest {
+
+    @TempDir
+    private @NotNull Path directory;
+
+    @Test
+    void test_round_trip() throws Exception {
+        final var permission = new Permission("topic/#");
+        permission.setActivity(TopicPermission.MqttActivity.PUBLISH);
+        permission.setQos(TopicPermission.Qos.ONE_TWO);
+        permission.setRetain(TopicPermission.Retain.NOT_RETAINED);
+        final var config = new FileAuthConfig(List.of(new User("user1", "pass1", List.of("role1", "role2")),
+                new User("user2", null, null)), List.of(new Role("role1", List.of(permission, new Permission("a"))),
+                new Role("role2", null)));
+        final var source = directory.resolve("credentials.xml");
+        final var snapshot = directory.resolve("credentials.snapshot");
+        CredentialsSnapshotFile.write(snapshot,
+                List.of(new CredentialsSnapshotFile.Source(source, new byte[]{1, 2, 3}, config),
+                        new CredentialsSnapshotFile.Source(directory.resolve("empty.xml"),
+                                new byte[]{4},
+                                new FileAuthConfig())));
+
+        final var sources = CredentialsSnapshotFile.read(snapshot);
+        assertThat(sources).hasSize(2);
+        assertThat(sources.get(0).getPath()).isEqualTo(source);
+        assertThat(sources.get(0).getContentHash()).containsExactly(1, 2, 3);
+        assertThat(sources.get(0).getConfig().getUsers()).isEqualTo(config.getUsers());
+        assertThat(sources.get(0).getConfig().getRoles()).isEqualTo(config.getRoles());
+        assertThat(sources.get(1).getConfig().getUsers()).isNull();
+        assertThat(sources.get(1).getConfig().getRoles()).isNull();
+    }
+
+    @Test
+    void test_missing_snapshot_is_ignored() {
+        assertThat(CredentialsSnapshotFile.read(directory.resolve("credentials.snapshot"))).isNull();
+    }
+
+    @Test
+    void test_damaged_snapshot_is_ignored() throws Exception {
+        final var snapshot = writeSnapshot();
+        final var bytes = Files.readAllBytes(snapshot);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshot, bytes);
+        assertThat(CredentialsSnapshotFile.read(snapshot)).isNull();
+    }
+
+    @Test
+    void test_truncated_snapshot_is_ignored() throws Exception {
+        final var snapshot = writeSnapshot();
+        final var bytes = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 5));
+        assertThat(CredentialsSnapshotFile.read(snapshot)).isNull();
+    }
+
+    @Test
+    void test_other_version_is_ignored() throws Exception {
+        final var snapshot = writeSnapshot();
+        final var bytes = Files.readAllBytes(snapshot);
+        // the version follows the magic number
+        bytes[7]++;
+        Files.write(snapshot, bytes);
+        assertThat(CredentialsSnapshotFile.read(snapshot)).isNull();
+    }
+
+    @Test
+    void test_snapshot_is_only_readable_by_owner() throws Exception {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        final var snapshot = writeSnapshot();
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(snapshot))).isEqualTo("rw-------");
+    }
+
+    @Test
+    void test_temporary_file_is_deleted_if_write_fails() throws Exception {
+        // a non-empty directory can not be replaced by the snapshot
+        final var snapshot = directory.resolve("credentials.snapshot");
+        Files.createDirectories(snapshot.resolve("directory"));
+        assertThatThrownBy(() -> CredentialsSnapshotFile.write(snapshot,
+                List.of(new CredentialsSnapshotFile.Source(directory.resolve("credentials.xml"),
+                        new byte[]{1},
+                        new FileAuthConfig())))).isInstanceOf(IOException.class);
+        assertThat(directory.resolve("credentials.snapshot.tmp")).doesNotExist();
+    }
+
+    private @NotNull Path writeSnapshot() throws Exception {
+        final var snapshot = directory.resolve("credentials.snapshot");
+        final var config = new FileAuthConfig(List.of(new User("user1", "pass1", List.of("role1"))),
+                List.of(new Role("role1", List.of(new Permission("#")))));
+        CredentialsSnapshotFile.write(snapshot,
+                List.of(new CredentialsSnapshotFile.Source(directory.resolve("credentials.xml"),
+                        new byte[]{1},
+                        config)));
+        return snapshot;
+    }
+}
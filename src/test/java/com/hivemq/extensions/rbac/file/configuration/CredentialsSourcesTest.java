@@ -0,0 +1,260 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.PasswordType;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static com.hivemq.extensions.rbac.file.ExtensionConstants.CREDENTIALS_LEGACY_LOCATION;
+import static com.hivemq.extensions.rbac.file.ExtensionConstants.CREDENTIALS_LOCATION;
+import static com.hivemq.extensions.rbac.file.ExtensionConstants.CREDENTIALS_SHARDS_DIRECTORY;
+import static com.hivemq.extensions.rbac.file.ExtensionConstants.CREDENTIALS_SNAPSHOT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CredentialsSourcesTest {
+
+    private static final @NotNull String ROLES = """
+            <file-rbac>
+                <roles>
+                    <role>
+                        <id>role1</id>
+                        <permissions><permission><topic>#</topic></permission></permissions>
+                    </role>
+                </roles>
+            </file-rbac>
+            """;
+
+    @TempDir
+    private @NotNull Path extensionHome;
+
+    private @NotNull ExtensionConfig extensionConfig;
+    private @NotNull CredentialsSources credentialsSources;
+    private @NotNull Path shardDirectory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        extensionConfig = new ExtensionConfig();
+        extensionConfig.setPasswordType(PasswordType.PLAIN);
+        credentialsSources = new CredentialsSources(//
+                new ConfigResolver(extensionHome, CREDENTIALS_LOCATION, CREDENTIALS_LEGACY_LOCATION),
+                new ConfigParser(extensionConfig),
+                false);
+        shardDirectory = extensionHome.resolve(CREDENTIALS_LOCATION).resolveSibling(CREDENTIALS_SHARDS_DIRECTORY);
+        Files.createDirectories(shardDirectory);
+    }
+
+    @Test
+    void test_no_files() {
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.NONE);
+        assertThat(credentialsSources.merge()).isNull();
+    }
+
+    @Test
+    void test_merge_shards() throws Exception {
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION), ROLES);
+        Files.writeString(shardDirectory.resolve("b.xml"), users("user2"));
+        Files.writeString(shardDirectory.resolve("a.xml"), users("user1"));
+        Files.writeString(shardDirectory.resolve("ignored.txt"), users("user3"));
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.CHANGED);
+        final var config = credentialsSources.merge();
+        assertThat(config).isNotNull();
+        assertThat(config.getUsers()).extracting(User::getName).containsExactly("user1", "user2");
+        assertThat(config.getRoles()).hasSize(1);
+    }
+
+    @Test
+    void test_only_changed_shard_is_parsed() throws Exception {
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION), ROLES);
+        Files.writeString(shardDirectory.resolve("a.xml"), users("user1"));
+        Files.writeString(shardDirectory.resolve("b.xml"), users("user2"));
+        credentialsSources.refresh();
+        final var config = credentialsSources.merge();
+        assertThat(config).isNotNull();
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.UNCHANGED);
+
+        Files.writeString(shardDirectory.resolve("b.xml"), users("user3"));
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.CHANGED);
+        final var newConfig = credentialsSources.merge();
+        assertThat(newConfig).isNotNull();
+        assertThat(newConfig.getUsers()).extracting(User::getName).containsExactly("user1", "user3");
+        // the unchanged shard was not parsed again
+        assertThat(newConfig.getUsers().get(0)).isSameAs(config.getUsers().get(0));
+    }
+
+    @Test
+    void test_rewritten_and_removed_shard() throws Exception {
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION), ROLES);
+        final var shard = Files.writeString(shardDirectory.resolve("a.xml"), users("user1"));
+        Files.writeString(shardDirectory.resolve("b.xml"), users("user2"));
+        credentialsSources.refresh();
+
+        Files.setLastModifiedTime(shard, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.REWRITTEN);
+
+        Files.delete(shard);
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.CHANGED);
+        final var config = credentialsSources.merge();
+        assertThat(config).isNotNull();
+        assertThat(config.getUsers()).extracting(User::getName).containsExactly("user2");
+    }
+
+    @Test
+    void test_file_with_unchanged_attributes_is_not_read() throws Exception {
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION), ROLES);
+        final var file = Files.writeString(shardDirectory.resolve("a.xml"), users("user1"));
+        final var modification = FileTime.fromMillis(System.currentTimeMillis() - 3_600_000);
+        Files.setLastModifiedTime(file, modification);
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.CHANGED);
+
+        // same size and modification time, the content is not read again
+        Files.writeString(file, users("user2"));
+        Files.setLastModifiedTime(file, modification);
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.UNCHANGED);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.CHANGED);
+        final var config = credentialsSources.merge();
+        assertThat(config).isNotNull();
+        assertThat(config.getUsers()).extracting(User::getName).containsExactly("user2");
+    }
+
+    @Test
+    void test_recently_modified_file_is_read_again() throws Exception {
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION), ROLES);
+        final var file = Files.writeString(shardDirectory.resolve("a.xml"), users("user1"));
+        final var modification = Files.getLastModifiedTime(file);
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.CHANGED);
+
+        // a change within the resolution of the modification time
+        Files.writeString(file, users("user2"));
+        Files.setLastModifiedTime(file, modification);
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.CHANGED);
+    }
+
+    @Test
+    void test_unreadable_file_is_reported_once() throws Exception {
+        Files.writeString(shardDirectory.resolve("a.xml"), users("user1"));
+        final var file = Files.createDirectories(extensionHome.resolve(CREDENTIALS_LOCATION));
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.CHANGED);
+        assertThat(credentialsSources.merge()).isNull();
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.UNCHANGED);
+
+        Files.delete(file);
+        Files.writeString(file, ROLES);
+        assertThat(credentialsSources.refresh()).isEqualTo(CredentialsSources.Change.CHANGED);
+        assertThat(credentialsSources.merge()).isNotNull();
+    }
+
+    @Test
+    void test_invalid_shard_rejects_config() throws Exception {
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION), ROLES);
+        Files.writeString(shardDirectory.resolve("a.xml"), users("user1"));
+        Files.writeString(shardDirectory.resolve("b.xml"), "<file-rbac><users>");
+        credentialsSources.refresh();
+        assertThat(credentialsSources.merge()).isNull();
+    }
+
+    @Test
+    void test_duplicate_user_across_shards_is_invalid() throws Exception {
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION), ROLES);
+        Files.writeString(shardDirectory.resolve("a.xml"), users("user1"));
+        Files.writeString(shardDirectory.resolve("b.xml"), users("user1"));
+        credentialsSources.refresh();
+        assertThat(credentialsSources.merge()).isNull();
+    }
+
+    @Test
+    void test_snapshot_disabled_is_not_written() throws Exception {
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION), ROLES);
+        credentialsSources.refresh();
+        assertThat(credentialsSources.merge()).isNotNull();
+        credentialsSources.writeSnapshot();
+        assertThat(extensionHome.resolve(CREDENTIALS_LOCATION).resolveSibling(CREDENTIALS_SNAPSHOT)).doesNotExist();
+    }
+
+    @Test
+    void test_unchanged_files_are_restored_from_snapshot() throws Exception {
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION), ROLES);
+        Files.writeString(shardDirectory.resolve("a.xml"), users("user1"));
+        Files.writeString(shardDirectory.resolve("b.xml"), users("user2"));
+        final var firstParser = spy(new ConfigParser(extensionConfig));
+        final var firstSources = snapshotSources(firstParser);
+        firstSources.refresh();
+        assertThat(firstSources.merge()).isNotNull();
+        firstSources.writeSnapshot();
+        verify(firstParser, times(3)).parse(any());
+        assertThat(extensionHome.resolve(CREDENTIALS_LOCATION).resolveSibling(CREDENTIALS_SNAPSHOT)).exists();
+
+        // the next start only parses the shard that changed since the snapshot was written
+        Files.writeString(shardDirectory.resolve("b.xml"), users("user3"));
+        final var secondParser = spy(new ConfigParser(extensionConfig));
+        final var secondSources = snapshotSources(secondParser);
+        assertThat(secondSources.refresh()).isEqualTo(CredentialsSources.Change.CHANGED);
+        final var config = secondSources.merge();
+        assertThat(config).isNotNull();
+        assertThat(config.getUsers()).extracting(User::getName).containsExactly("user1", "user3");
+        verify(secondParser).parse(shardDirectory.resolve("b.xml"));
+        verify(secondParser, times(1)).parse(any());
+        secondSources.writeSnapshot();
+
+        final var thirdParser = spy(new ConfigParser(extensionConfig));
+        final var thirdSources = snapshotSources(thirdParser);
+        thirdSources.refresh();
+        final var restoredConfig = thirdSources.merge();
+        assertThat(restoredConfig).isNotNull();
+        assertThat(restoredConfig.getUsers()).isEqualTo(config.getUsers());
+        assertThat(restoredConfig.getRoles()).isEqualTo(config.getRoles());
+        verify(thirdParser, never()).parse(any());
+    }
+
+    @Test
+    void test_invalid_snapshot_is_ignored() throws Exception {
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION), ROLES);
+        Files.writeString(extensionHome.resolve(CREDENTIALS_LOCATION).resolveSibling(CREDENTIALS_SNAPSHOT), "invalid");
+        final var configParser = spy(new ConfigParser(extensionConfig));
+        final var sources = snapshotSources(configParser);
+        sources.refresh();
+        assertThat(sources.merge()).isNotNull();
+        verify(configParser).parse(extensionHome.resolve(CREDENTIALS_LOCATION));
+    }
+
+    private @NotNull CredentialsSources snapshotSources(final @NotNull ConfigParser configParser) {
+        return new CredentialsSources(//
+                new ConfigResolver(extensionHome, CREDENTIALS_LOCATION, CREDENTIALS_LEGACY_LOCATION),
+                configParser,
+                true);
+    }
+
+    private static @NotNull String users(final @NotNull String userName) {
+        return "<file-rbac><users><user><name>" + userName +
+                "</name><password>pass</password><roles><id>role1</id></roles></user></users></file-rbac>";
+    }
+}
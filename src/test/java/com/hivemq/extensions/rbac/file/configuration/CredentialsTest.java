@@ -16,8 +16,11 @@
 
 package com.hivemq.extensions.rbac.file.configuration;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
 import com.hivemq.extensions.rbac.file.ExtensionConstants;
 import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.ReloadMode;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -28,6 +31,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -42,6 +46,7 @@ class CredentialsTest {
 
     private final @NotNull ExtensionConfig extensionConfig = new ExtensionConfig();
     private final @NotNull ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
 
     @BeforeEach
     void setUp() {
@@ -57,7 +62,7 @@ class CredentialsTest {
     @ValueSource(strings = {ExtensionConstants.CREDENTIALS_LOCATION, ExtensionConstants.CREDENTIALS_LEGACY_LOCATION})
     void test_create_file_before_it_does_not_exit(final @NotNull String location) throws Exception {
         final var credentialsConfiguration =
-                new CredentialsConfiguration(extensionHome, executorService, extensionConfig);
+                new CredentialsConfiguration(extensionHome, executorService, extensionConfig, metricRegistry);
         credentialsConfiguration.init();
         final var latch = new CountDownLatch(1);
         credentialsConfiguration.addReloadCallback((oldConfig, newConfig) -> latch.countDown());
@@ -68,11 +73,29 @@ class CredentialsTest {
         assertThat(credentialsConfiguration.getCurrentConfig()).isNotNull();
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {ExtensionConstants.CREDENTIALS_LOCATION, ExtensionConstants.CREDENTIALS_LEGACY_LOCATION})
+    void test_watch_reloads_without_polling(final @NotNull String location) throws Exception {
+        extensionConfig.setReloadInterval(3600);
+        extensionConfig.setReloadMode(ReloadMode.WATCH);
+        extensionConfig.setReloadDebounce(100);
+        Files.createDirectories(extensionHome.resolve(location).getParent());
+        final var credentialsConfiguration =
+                new CredentialsConfiguration(extensionHome, executorService, extensionConfig, metricRegistry);
+        credentialsConfiguration.init();
+        final var latch = new CountDownLatch(1);
+        credentialsConfiguration.addReloadCallback((oldConfig, newConfig) -> latch.countDown());
+        createCredentialsConfig(extensionHome, location);
+        assertThat(latch.await(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(credentialsConfiguration.getCurrentConfig()).isNotNull();
+        credentialsConfiguration.stop();
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {ExtensionConstants.CREDENTIALS_LOCATION, ExtensionConstants.CREDENTIALS_LEGACY_LOCATION})
     void test_reload_invalid_config(final @NotNull String location) throws Exception {
         final var credentialsConfiguration =
-                new CredentialsConfiguration(extensionHome, executorService, extensionConfig);
+                new CredentialsConfiguration(extensionHome, executorService, extensionConfig, metricRegistry);
         // create a new file
         createCredentialsConfig(extensionHome, location);
         credentialsConfiguration.init();
@@ -89,12 +112,102 @@ class CredentialsTest {
     @ValueSource(strings = {ExtensionConstants.CREDENTIALS_LOCATION, ExtensionConstants.CREDENTIALS_LEGACY_LOCATION})
     void test_init(final @NotNull String location) throws Exception {
         final var credentialsConfiguration =
-                new CredentialsConfiguration(extensionHome, executorService, extensionConfig);
+                new CredentialsConfiguration(extensionHome, executorService, extensionConfig, metricRegistry);
         createCredentialsConfig(extensionHome, location);
         credentialsConfiguration.init();
         assertThat(credentialsConfiguration.getCurrentConfig()).isNotNull();
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {ExtensionConstants.CREDENTIALS_LOCATION, ExtensionConstants.CREDENTIALS_LEGACY_LOCATION})
+    void test_rewrite_identical_config_is_skipped(final @NotNull String location) throws Exception {
+        createCredentialsConfig(extensionHome, location);
+        final var credentialsConfiguration =
+                new CredentialsConfiguration(extensionHome, executorService, extensionConfig, metricRegistry);
+        credentialsConfiguration.init();
+        final var latch = new CountDownLatch(1);
+        credentialsConfiguration.addReloadCallback((oldConfig, newConfig) -> latch.countDown());
+        // the same content with a new modification time, like a rewrite by a config management tool
+        final var file = extensionHome.resolve(location);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        assertThat(latch.await(5, TimeUnit.SECONDS)).isFalse();
+        assertThat(metricRegistry.counter(CredentialsConfiguration.RELOADS_SKIPPED).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(CredentialsConfiguration.RELOADS_APPLIED).getCount()).isZero();
+
+        // a change within the same modification time is still detected
+        final var lastModifiedTime = Files.getLastModifiedTime(file);
+        Files.writeString(file, Files.readString(file).replace("admin-user", "changed-user"));
+        Files.setLastModifiedTime(file, lastModifiedTime);
+        final var changedLatch = new CountDownLatch(1);
+        credentialsConfiguration.addReloadCallback((oldConfig, newConfig) -> changedLatch.countDown());
+        assertThat(changedLatch.await(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(metricRegistry.counter(CredentialsConfiguration.RELOADS_APPLIED).getCount()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {ExtensionConstants.CREDENTIALS_LOCATION, ExtensionConstants.CREDENTIALS_LEGACY_LOCATION})
+    void test_init_metrics(final @NotNull String location) throws Exception {
+        final var credentialsConfiguration =
+                new CredentialsConfiguration(extensionHome, executorService, extensionConfig, metricRegistry);
+        assertThat(gauge(CredentialsConfiguration.GENERATION)).isEqualTo(0L);
+        assertThat(gauge(CredentialsConfiguration.LOADED_AT)).isEqualTo(0L);
+        createCredentialsConfig(extensionHome, location);
+        credentialsConfiguration.init();
+        assertThat(gauge(CredentialsConfiguration.GENERATION)).isEqualTo(1L);
+        assertThat((Long) gauge(CredentialsConfiguration.LOADED_AT)).isPositive();
+        assertThat(gauge(CredentialsConfiguration.USERS)).isEqualTo(2);
+        assertThat(gauge(CredentialsConfiguration.ROLES)).isEqualTo(2);
+        assertThat(gauge(CredentialsConfiguration.PERMISSIONS)).isEqualTo(4);
+        assertThat(metricRegistry.timer(CredentialsConfiguration.RELOAD_PARSE_TIME).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.timer(CredentialsConfiguration.RELOAD_VALIDATE_TIME).getCount()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {ExtensionConstants.CREDENTIALS_LOCATION, ExtensionConstants.CREDENTIALS_LEGACY_LOCATION})
+    void test_reload_metrics(final @NotNull String location) throws Exception {
+        createCredentialsConfig(extensionHome, location);
+        final var credentialsConfiguration =
+                new CredentialsConfiguration(extensionHome, executorService, extensionConfig, metricRegistry);
+        credentialsConfiguration.init();
+        final var loadedAt = (Long) gauge(CredentialsConfiguration.LOADED_AT);
+        final var file = extensionHome.resolve(location);
+        final var content = Files.readString(file);
+
+        // an invalid config is rejected once, the previous config stays in use
+        replace(file, "<file-rbac>");
+        awaitCount(metricRegistry.counter(CredentialsConfiguration.RELOADS_REJECTED), 1);
+        assertThat(metricRegistry.counter(CredentialsConfiguration.RELOADS_REJECTED).getCount()).isEqualTo(1);
+        assertThat(gauge(CredentialsConfiguration.GENERATION)).isEqualTo(1L);
+
+        replace(file, content.replace("admin-user", "changed-user"));
+        awaitCount(metricRegistry.counter(CredentialsConfiguration.RELOADS_APPLIED), 1);
+        assertThat(metricRegistry.counter(CredentialsConfiguration.RELOADS_APPLIED).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(CredentialsConfiguration.RELOADS_REJECTED).getCount()).isEqualTo(1);
+        assertThat(gauge(CredentialsConfiguration.GENERATION)).isEqualTo(2L);
+        assertThat((Long) gauge(CredentialsConfiguration.LOADED_AT)).isGreaterThanOrEqualTo(loadedAt);
+        // the snapshot written by the initial load and the archival of the reload
+        assertThat(metricRegistry.timer(CredentialsConfiguration.RELOAD_ARCHIVE_TIME).getCount()).isEqualTo(2);
+        assertThat(metricRegistry.timer(CredentialsConfiguration.RELOAD_CALLBACKS_TIME).getCount()).isEqualTo(1);
+        credentialsConfiguration.stop();
+    }
+
+    private @NotNull Object gauge(final @NotNull String name) {
+        return metricRegistry.getGauges().get(name).getValue();
+    }
+
+    // a poll must not see a partially written file
+    private static void replace(final @NotNull Path file, final @NotNull String content) throws Exception {
+        final var tempFile = Files.writeString(file.resolveSibling(file.getFileName() + ".tmp"), content);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void awaitCount(final @NotNull Counter counter, final long count) throws InterruptedException {
+        final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (counter.getCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
     private void createCredentialsConfig(final @NotNull Path extensionHome, final @NotNull String location)
             throws Exception {
         // create a new file
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CredentialsWatcherTest {
+
+    @TempDir
+    private @NotNull Path directory;
+
+    private final @NotNull AtomicLong clock = new AtomicLong();
+    private final @NotNull AtomicInteger reloads = new AtomicInteger();
+
+    @Test
+    void test_change_reloads_after_debounce() throws Exception {
+        final var file = directory.resolve("credentials.xml");
+        try (final var watcher = new CredentialsWatcher(List.of(file),
+                List.of(),
+                reloads::incrementAndGet,
+                500,
+                clock::get)) {
+            Files.writeString(file, "<file-rbac/>");
+            awaitEvent(watcher);
+            assertThat(reloads.get()).isZero();
+
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(499));
+            watcher.run();
+            assertThat(reloads.get()).isZero();
+
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+            watcher.run();
+            assertThat(reloads.get()).isEqualTo(1);
+
+            // the change was handled
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            watcher.run();
+            assertThat(reloads.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void test_change_of_other_file_is_ignored() throws Exception {
+        final var file = directory.resolve("credentials.xml");
+        try (final var watcher = new CredentialsWatcher(List.of(file),
+                List.of(),
+                reloads::incrementAndGet,
+                0,
+                clock::get)) {
+            Files.writeString(directory.resolve("other.xml"), "<other/>");
+            Files.writeString(file, "<file-rbac/>");
+            awaitEvent(watcher);
+            assertThat(reloads.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void test_change_in_shard_directory() throws Exception {
+        final var file = directory.resolve("credentials.xml");
+        final var shardDirectory = Files.createDirectory(directory.resolve("credentials.d"));
+        try (final var watcher = new CredentialsWatcher(List.of(file),
+                List.of(shardDirectory),
+                reloads::incrementAndGet,
+                0,
+                clock::get)) {
+            Files.writeString(shardDirectory.resolve("tenant1.xml"), "<file-rbac/>");
+            awaitEvent(watcher);
+            assertThat(reloads.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void test_no_existing_directory() {
+        final var file = directory.resolve("missing").resolve("credentials.xml");
+        assertThatThrownBy(() -> new CredentialsWatcher(List.of(file),
+                List.of(),
+                reloads::incrementAndGet,
+                500,
+                clock::get)).isInstanceOf(IOException.class);
+    }
+
+    /**
+     * Runs the watcher until it has seen a change, a watch service may deliver events with a delay.
+     */
+    private void awaitEvent(final @NotNull CredentialsWatcher watcher) throws InterruptedException {
+        final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!watcher.isChangePending() && reloads.get() == 0 && System.nanoTime() < deadline) {
+            watcher.run();
+            Thread.sleep(50);
+        }
+    }
+}
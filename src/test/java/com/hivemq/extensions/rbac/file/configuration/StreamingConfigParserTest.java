@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.configuration;
+
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extensions.rbac.file.ExtensionConstants;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StreamingConfigParserTest {
+
+    @TempDir
+    private @NotNull Path extensionHome;
+
+    private final @NotNull StreamingConfigParser streamingConfigParser = new StreamingConfigParser();
+
+    @Test
+    void test_same_result_as_jaxb() throws Exception {
+        final var resource = getClass().getClassLoader().getResource(ExtensionConstants.CREDENTIALS_LOCATION);
+        assertThat(resource).isNotNull();
+        final var configPath = Path.of(resource.toURI()).toAbsolutePath();
+        final var config = streamingConfigParser.parse(configPath);
+        assertThat(config.toString()).isEqualTo(new XmlParser().unmarshalFileAuthConfig(configPath).toString());
+    }
+
+    @Test
+    void test_defaults_and_invalid_values() throws Exception {
+        final var configPath = extensionHome.resolve("credentials.xml");
+        Files.writeString(configPath, """
+                <file-rbac>
+                    <unknown><users/></unknown>
+                    <users>
+                        <user>
+                            <name>user1</name>
+                            <password>pass</password>
+                            <roles><id>role1</id></roles>
+                        </user>
+                    </users>
+                    <roles>
+                        <role>
+                            <id>role1</id>
+                            <permissions>
+                                <permission><topic>a/#</topic></permission>
+                                <permission>
+                                    <topic>b</topic>
+                                    <activity> PUBLISH </activity>
+                                    <qos>THREE</qos>
+                                </permission>
+                            </permissions>
+                        </role>
+                    </roles>
+                </file-rbac>
+                """);
+        final var config = streamingConfigParser.parse(configPath);
+        assertThat(config.getUsers()).hasSize(1);
+        assertThat(config.getRoles()).hasSize(1);
+        final var permissions = config.getRoles().get(0).getPermissions();
+        assertThat(permissions).hasSize(2);
+        assertThat(permissions.get(0).getActivity()).isEqualTo(TopicPermission.MqttActivity.ALL);
+        assertThat(permissions.get(0).getSharedGroup()).isEqualTo("#");
+        assertThat(permissions.get(1).getActivity()).isEqualTo(TopicPermission.MqttActivity.PUBLISH);
+        assertThat(permissions.get(1).getQos()).isNull();
+        // the role ids of the users are the same instances as the ids of the roles
+        assertThat(config.getUsers().get(0).getRoles().get(0)).isSameAs(config.getRoles().get(0).getId());
+    }
+
+    @Test
+    void test_missing_sections() throws Exception {
+        final var configPath = extensionHome.resolve("credentials.xml");
+        Files.writeString(configPath, "<file-rbac></file-rbac>");
+        final var config = streamingConfigParser.parse(configPath);
+        assertThat(config.getUsers()).isNull();
+        assertThat(config.getRoles()).isNull();
+    }
+
+    @Test
+    void test_unexpected_root() throws Exception {
+        final var configPath = extensionHome.resolve("credentials.xml");
+        Files.writeString(configPath, "<extension-configuration></extension-configuration>");
+        assertThatThrownBy(() -> streamingConfigParser.parse(configPath)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void test_malformed_xml() throws Exception {
+        final var configPath = extensionHome.resolve("credentials.xml");
+        Files.writeString(configPath, "<file-rbac><users>");
+        assertThatThrownBy(() -> streamingConfigParser.parse(configPath)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void test_external_entities_are_not_resolved() throws Exception {
+        final var secret = extensionHome.resolve("secret.txt");
+        Files.writeString(secret, "secret");
+        final var configPath = extensionHome.resolve("credentials.xml");
+        Files.writeString(configPath,
+                "<!DOCTYPE file-rbac [<!ENTITY secret SYSTEM \"" + secret.toUri() + "\">]>" +
+                        "<file-rbac><users><user><name>&secret;</name></user></users></file-rbac>");
+        assertThatThrownBy(() -> streamingConfigParser.parse(configPath)).isInstanceOf(IOException.class);
+    }
+}
@@ -17,22 +17,32 @@
 package com.hivemq.extensions.rbac.file.utils;
 
 import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
 import org.bouncycastle.crypto.digests.SHA512Digest;
 import org.bouncycastle.crypto.generators.PKCS5S2ParametersGenerator;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static com.hivemq.extensions.rbac.file.utils.CredentialsHasher.HASH_CACHE_ESTIMATED_BYTES;
+import static com.hivemq.extensions.rbac.file.utils.CredentialsHasher.HASH_CACHE_EVICTIONS;
 import static com.hivemq.extensions.rbac.file.utils.CredentialsHasher.HASH_CACHE_HITRATE;
+import static com.hivemq.extensions.rbac.file.utils.CredentialsHasher.HASH_CACHE_SIZE;
+import static com.hivemq.extensions.rbac.file.utils.CredentialsHasher.HASH_COALESCED;
+import static com.hivemq.extensions.rbac.file.utils.CredentialsHasher.HASH_TIME;
 import static org.assertj.core.api.Assertions.assertThat;
 
 class CredentialsHasherTest {
 
     @Test
     void test_check_credentials_valid_password() {
-        final var credentialsHasher = new CredentialsHasher(new MetricRegistry());
+        final var credentialsHasher = new CredentialsHasher(new ExtensionConfig(), new MetricRegistry());
         final var base64Password = Base64.getEncoder().encodeToString("password".getBytes());
         final var hashedPassword = getHashedPassword();
         final var result = credentialsHasher.checkCredentials(base64Password, hashedPassword);
@@ -41,7 +51,7 @@ class CredentialsHasherTest {
 
     @Test
     void test_check_credentials_invalid_password() {
-        final var credentialsHasher = new CredentialsHasher(new MetricRegistry());
+        final var credentialsHasher = new CredentialsHasher(new ExtensionConfig(), new MetricRegistry());
         final var base64Password = Base64.getEncoder().encodeToString("notapassword".getBytes());
         final var hashedPassword = getHashedPassword();
         final var result = credentialsHasher.checkCredentials(base64Password, hashedPassword);
@@ -50,7 +60,7 @@ class CredentialsHasherTest {
 
     @Test
     void test_check_credentials_invalid_string() {
-        final var credentialsHasher = new CredentialsHasher(new MetricRegistry());
+        final var credentialsHasher = new CredentialsHasher(new ExtensionConfig(), new MetricRegistry());
         final var base64Password = Base64.getEncoder().encodeToString("password".getBytes());
         final var result = credentialsHasher.checkCredentials(base64Password, "invalid-string");
         assertThat(result).isFalse();
@@ -59,7 +69,7 @@ class CredentialsHasherTest {
     @Test
     void test_check_credentials_valid_cached() {
         final var metricRegistry = new MetricRegistry();
-        final var credentialsHasher = new CredentialsHasher(metricRegistry);
+        final var credentialsHasher = new CredentialsHasher(new ExtensionConfig(), metricRegistry);
         final var base64Password = Base64.getEncoder().encodeToString("password".getBytes());
         final var hashedPassword = getHashedPassword();
         final var result1 = credentialsHasher.checkCredentials(base64Password, hashedPassword);
@@ -71,13 +81,111 @@ class CredentialsHasherTest {
         assertThat(metricRegistry.meter(HASH_CACHE_HITRATE).getCount()).isEqualTo(2);
     }
 
+    @Test
+    void test_check_credentials_bytes_cached() {
+        final var metricRegistry = new MetricRegistry();
+        final var credentialsHasher = new CredentialsHasher(new ExtensionConfig(), metricRegistry);
+        final var hashedPassword = getHashedPassword();
+        assertThat(credentialsHasher.checkCredentials("password".getBytes(), hashedPassword)).isTrue();
+        assertThat(credentialsHasher.checkCredentials(Base64.getEncoder().encodeToString("password".getBytes()),
+                hashedPassword)).isTrue();
+        assertThat(credentialsHasher.checkCredentials("passwore".getBytes(), hashedPassword)).isFalse();
+        assertThat(metricRegistry.meter(HASH_CACHE_HITRATE).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_cache_key_includes_salt_and_iterations() {
+        final var metricRegistry = new MetricRegistry();
+        final var credentialsHasher = new CredentialsHasher(new ExtensionConfig(), metricRegistry);
+        final var hashedPassword = getHashedPassword();
+        final var split = hashedPassword.split(":");
+        assertThat(credentialsHasher.checkCredentials("password".getBytes(), hashedPassword)).isTrue();
+        assertThat(credentialsHasher.checkCredentials("password".getBytes(),
+                Base64.getEncoder().encodeToString("pepper".getBytes()) + ":100:" + split[2])).isFalse();
+        assertThat(credentialsHasher.checkCredentials("password".getBytes(),
+                split[0] + ":101:" + split[2])).isFalse();
+        assertThat(metricRegistry.meter(HASH_CACHE_HITRATE).getCount()).isEqualTo(0);
+    }
+
+    @Test
+    void test_concurrent_checks_derive_once() throws Exception {
+        final var metricRegistry = new MetricRegistry();
+        final var credentialsHasher = new CredentialsHasher(new ExtensionConfig(), metricRegistry);
+        // a slow derivation, so the checks overlap
+        final var hashedPassword = getHashedPassword(100_000);
+        final var threads = 8;
+        final var executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final var barrier = new CyclicBarrier(threads);
+            final var results = new ArrayList<Future<Boolean>>();
+            for (var i = 0; i < threads; i++) {
+                results.add(executorService.submit(() -> {
+                    barrier.await();
+                    return credentialsHasher.checkCredentials("password".getBytes(), hashedPassword);
+                }));
+            }
+            for (final var result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertThat(metricRegistry.timer(HASH_TIME).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter(HASH_COALESCED).getCount() +
+                metricRegistry.meter(HASH_CACHE_HITRATE).getCount()).isEqualTo(threads - 1);
+    }
+
+    @Test
+    void test_cache_gauges() {
+        final var metricRegistry = new MetricRegistry();
+        final var credentialsHasher = new CredentialsHasher(new ExtensionConfig(), metricRegistry);
+        final var base64Password = Base64.getEncoder().encodeToString("password".getBytes());
+        assertThat(credentialsHasher.checkCredentials(base64Password, getHashedPassword())).isTrue();
+        assertThat(metricRegistry.getGauges().get(HASH_CACHE_SIZE).getValue()).isEqualTo(1L);
+        assertThat(metricRegistry.getGauges().get(HASH_CACHE_EVICTIONS).getValue()).isEqualTo(0L);
+        assertThat((Long) metricRegistry.getGauges().get(HASH_CACHE_ESTIMATED_BYTES).getValue()).isPositive();
+    }
+
+    @Test
+    void test_cache_max_memory() {
+        final var metricRegistry = new MetricRegistry();
+        final var extensionConfig = new ExtensionConfig();
+        // large enough for a single entry only
+        extensionConfig.setHashCacheMaxMemory(300);
+        final var credentialsHasher = new CredentialsHasher(extensionConfig, metricRegistry);
+        final var hashedPassword = getHashedPassword();
+        for (var i = 0; i < 10; i++) {
+            final var base64Password = Base64.getEncoder().encodeToString(("password" + i).getBytes());
+            assertThat(credentialsHasher.checkCredentials(base64Password, hashedPassword)).isFalse();
+        }
+        final var estimatedBytes = (Long) metricRegistry.getGauges().get(HASH_CACHE_ESTIMATED_BYTES).getValue();
+        assertThat(estimatedBytes).isPositive().isLessThanOrEqualTo(300);
+    }
+
+    @Test
+    void test_cache_expire_after_access() {
+        final var metricRegistry = new MetricRegistry();
+        final var extensionConfig = new ExtensionConfig();
+        extensionConfig.setHashCacheExpireAfterAccess(true);
+        final var credentialsHasher = new CredentialsHasher(extensionConfig, metricRegistry);
+        final var base64Password = Base64.getEncoder().encodeToString("password".getBytes());
+        final var hashedPassword = getHashedPassword();
+        assertThat(credentialsHasher.checkCredentials(base64Password, hashedPassword)).isTrue();
+        assertThat(credentialsHasher.checkCredentials(base64Password, hashedPassword)).isTrue();
+        assertThat(metricRegistry.meter(HASH_CACHE_HITRATE).getCount()).isEqualTo(1);
+    }
+
     private static @NotNull String getHashedPassword() {
+        return getHashedPassword(100);
+    }
+
+    private static @NotNull String getHashedPassword(final int iterations) {
         final var base64Salt = Base64.getEncoder().encodeToString("salt".getBytes());
         final var password = "password".getBytes();
         final var salt = "salt".getBytes();
         final var gen = new PKCS5S2ParametersGenerator(new SHA512Digest());
-        gen.init(password, salt, 100);
+        gen.init(password, salt, iterations);
         final var credentialsHash = ((KeyParameter) gen.generateDerivedParameters(512)).getKey();
-        return base64Salt + ":" + 100 + ":" + Base64.getEncoder().encodeToString(credentialsHash);
+        return base64Salt + ":" + iterations + ":" + Base64.getEncoder().encodeToString(credentialsHash);
     }
 }
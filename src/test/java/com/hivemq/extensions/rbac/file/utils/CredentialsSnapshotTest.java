@@ -0,0 +1,198 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extensions.rbac.file.configuration.ConfigDiff;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CredentialsSnapshotTest {
+
+    @Test
+    void test_empty() {
+        assertThat(CredentialsSnapshot.EMPTY.isEmpty()).isTrue();
+        assertThat(CredentialsSnapshot.EMPTY.getGeneration()).isEqualTo(0);
+        assertThat(CredentialsSnapshot.EMPTY.getUser("user1")).isNull();
+    }
+
+    @Test
+    void test_build_plain() {
+        final var snapshot = CredentialsSnapshot.build(config("pass1"), false, false, 3);
+        assertThat(snapshot.isEmpty()).isFalse();
+        assertThat(snapshot.getGeneration()).isEqualTo(3);
+        final var user = snapshot.getUser("user1");
+        assertThat(user).isNotNull();
+        assertThat(user.getPassword()).isEqualTo("pass1");
+        assertThat(user.getHashedPassword()).isNull();
+        assertThat(user.getRoles()).containsExactly("role1");
+        assertThat(snapshot.getRole("role1").getPermissionCount()).isEqualTo(1);
+        assertThat(snapshot.getUser("user2")).isNull();
+    }
+
+    @Test
+    void test_build_hashed() {
+        final var snapshot = CredentialsSnapshot.build(config("c2FsdA==:100:aGFzaA=="), true, false, 1);
+        final var user = snapshot.getUser("user1");
+        assertThat(user).isNotNull();
+        assertThat(user.getPassword()).isNull();
+        assertThat(user.getHashedPassword()).isNotNull();
+        assertThat(user.getHashedPassword().getIterations()).isEqualTo(100);
+    }
+
+    @Test
+    void test_build_hashed_malformed_user_skipped() {
+        final var snapshot = CredentialsSnapshot.build(config("pass1"), true, false, 1);
+        assertThat(snapshot.getUser("user1")).isNull();
+        assertThat(snapshot.isEmpty()).isTrue();
+    }
+
+    @Test
+    void test_apply_diff() {
+        final var oldConfig = config("pass1");
+        final var snapshot = CredentialsSnapshot.build(oldConfig, false, false, 1);
+        final var newConfig = config("pass2");
+        newConfig.setUsers(List.of(newConfig.getUsers().get(0), new User("user2", "pass3", List.of("role1"))));
+        final var newSnapshot = snapshot.apply(ConfigDiff.of(oldConfig, newConfig), false, 2);
+        assertThat(newSnapshot.getGeneration()).isEqualTo(2);
+        assertThat(newSnapshot.getUser("user1").getPassword()).isEqualTo("pass2");
+        assertThat(newSnapshot.getUser("user2").getPassword()).isEqualTo("pass3");
+        // the unchanged role is shared with the previous snapshot
+        assertThat(newSnapshot.getRole("role1")).isSameAs(snapshot.getRole("role1"));
+        // the previous snapshot is not modified
+        assertThat(snapshot.getUser("user1").getPassword()).isEqualTo("pass1");
+        assertThat(snapshot.getUser("user2")).isNull();
+
+        final var removedSnapshot = newSnapshot.apply(ConfigDiff.of(newConfig, oldConfig), false, 3);
+        assertThat(removedSnapshot.getUser("user2")).isNull();
+        assertThat(removedSnapshot.getUser("user1").getPassword()).isEqualTo("pass1");
+    }
+
+    @Test
+    void test_apply_diff_malformed_hashed_password_removes_user() {
+        final var oldConfig = config("c2FsdA==:100:aGFzaA==");
+        final var snapshot = CredentialsSnapshot.build(oldConfig, true, false, 1);
+        final var newConfig = config("pass1");
+        final var newSnapshot = snapshot.apply(ConfigDiff.of(oldConfig, newConfig), true, 2);
+        assertThat(newSnapshot.getUser("user1")).isNull();
+    }
+
+    @Test
+    void test_users_share_role_combination() {
+        final var config = config("pass1");
+        config.setUsers(List.of(new User("user1", "pass1", new ArrayList<>(List.of("role1"))),
+                new User("user2", "pass2", new ArrayList<>(List.of("role1")))));
+        final var snapshot = CredentialsSnapshot.build(config, false, false, 1);
+        final var roles1 = snapshot.getUser("user1").getRoles();
+        assertThat(snapshot.getUser("user2").getRoles()).isSameAs(roles1);
+        assertThat(snapshot.getRoleSet(List.of("role1"))).isSameAs(snapshot.getRoleSet(roles1));
+    }
+
+    @Test
+    void test_apply_diff_compiles_only_changed_role_combinations() {
+        final var oldConfig = config("pass1");
+        oldConfig.setUsers(List.of(new User("user1", "pass1", List.of("role1")),
+                new User("user2", "pass2", List.of("role2"))));
+        oldConfig.setRoles(List.of(new Role("role1", List.of(new Permission("${{clientid}}/#"))),
+                new Role("role2", List.of(new Permission("${{clientid}}/a")))));
+        final var newConfig = config("pass1");
+        newConfig.setUsers(oldConfig.getUsers());
+        newConfig.setRoles(List.of(oldConfig.getRoles().get(0),
+                new Role("role2", List.of(new Permission("${{clientid}}/b")))));
+        final var snapshot = CredentialsSnapshot.build(oldConfig, false, false, 1);
+        final var newSnapshot = snapshot.apply(ConfigDiff.of(oldConfig, newConfig), false, 2);
+        assertThat(newSnapshot.getRoleSet(List.of("role1"))).isSameAs(snapshot.getRoleSet(List.of("role1")));
+        assertThat(newSnapshot.getRoleSet(List.of("role2"))).isNotSameAs(snapshot.getRoleSet(List.of("role2")));
+        // the unchanged users keep their role ids
+        assertThat(newSnapshot.getUser("user2").getRoles()).isSameAs(snapshot.getUser("user2").getRoles());
+    }
+
+    @Test
+    void test_build_off_heap() {
+        final var snapshot = CredentialsSnapshot.build(config("c2FsdA==:100:aGFzaA=="), true, true, 1);
+        assertThat(snapshot.isEmpty()).isFalse();
+        assertThat(snapshot.getOffHeapBytes()).isPositive();
+        final var user = snapshot.getUser("user1");
+        assertThat(user).isNotNull();
+        assertThat(user.getHashedPassword()).isEqualTo(HashedPassword.parse("c2FsdA==:100:aGFzaA=="));
+        assertThat(user.getRoles()).containsExactly("role1");
+        assertThat(snapshot.getUser("user2")).isNull();
+    }
+
+    @Test
+    void test_build_off_heap_malformed_user_skipped() {
+        final var snapshot = CredentialsSnapshot.build(config("pass1"), true, true, 1);
+        assertThat(snapshot.getUser("user1")).isNull();
+        assertThat(snapshot.isEmpty()).isTrue();
+    }
+
+    @Test
+    void test_apply_diff_off_heap() {
+        final var oldConfig = config("pass1");
+        final var snapshot = CredentialsSnapshot.build(oldConfig, false, true, 1);
+        final var newConfig = config("pass2");
+        newConfig.setUsers(List.of(newConfig.getUsers().get(0), new User("user2", "pass3", List.of("role1"))));
+        final var newSnapshot = snapshot.apply(ConfigDiff.of(oldConfig, newConfig), false, 2);
+        assertThat(newSnapshot.getUser("user1").getPassword()).isEqualTo("pass2");
+        assertThat(newSnapshot.getUser("user2").getPassword()).isEqualTo("pass3");
+        assertThat(snapshot.getUser("user1").getPassword()).isEqualTo("pass1");
+
+        final var emptyConfig = config("pass1");
+        emptyConfig.setUsers(List.of());
+        final var emptySnapshot = newSnapshot.apply(ConfigDiff.of(newConfig, emptyConfig), false, 3);
+        assertThat(emptySnapshot.getUser("user1")).isNull();
+        assertThat(emptySnapshot.getUser("user2")).isNull();
+        assertThat(emptySnapshot.isEmpty()).isTrue();
+    }
+
+    @Test
+    void test_apply_many_changes_off_heap() {
+        final var oldConfig = config("pass");
+        final var oldUsers = new ArrayList<User>();
+        final var newUsers = new ArrayList<User>();
+        for (var i = 0; i < 5_000; i++) {
+            oldUsers.add(new User("user" + i, "pass", List.of("role1")));
+            // enough changes to merge them into a new index
+            newUsers.add(new User("user" + i, i % 2 == 0 ? "pass" : "changed", List.of("role1")));
+        }
+        oldConfig.setUsers(oldUsers);
+        final var newConfig = config("pass");
+        newConfig.setUsers(newUsers);
+        final var snapshot = CredentialsSnapshot.build(oldConfig, false, true, 1);
+        final var newSnapshot = snapshot.apply(ConfigDiff.of(oldConfig, newConfig), false, 2);
+        for (var i = 0; i < 5_000; i++) {
+            assertThat(newSnapshot.getUser("user" + i).getPassword()).isEqualTo(i % 2 == 0 ? "pass" : "changed");
+            assertThat(snapshot.getUser("user" + i).getPassword()).isEqualTo("pass");
+        }
+    }
+
+    private static @NotNull FileAuthConfig config(final @NotNull String password) {
+        // a templated topic filter, so no topic permission is built outside of HiveMQ
+        final var config = new FileAuthConfig();
+        config.setUsers(List.of(new User("user1", password, List.of("role1"))));
+        config.setRoles(List.of(new Role("role1", List.of(new Permission("${{clientid}}/#")))));
+        return config;
+    }
+}
@@ -20,14 +20,21 @@ import com.codahale.metrics.MetricRegistry;
 import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
 import com.hivemq.extension.sdk.api.services.builder.Builders;
 import com.hivemq.extension.sdk.api.services.builder.TopicPermissionBuilder;
+import com.hivemq.extensions.rbac.file.configuration.ConfigDiff;
 import com.hivemq.extensions.rbac.file.configuration.CredentialsConfiguration;
 import com.hivemq.extensions.rbac.file.configuration.entities.ExtensionConfig;
+import com.hivemq.extensions.rbac.file.configuration.entities.FileAuthConfig;
 import com.hivemq.extensions.rbac.file.configuration.entities.PasswordType;
+import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import com.hivemq.extensions.rbac.file.configuration.entities.User;
+import com.hivemq.extensions.rbac.file.configuration.entities.UserStore;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
@@ -39,6 +46,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class CredentialsValidatorTest {
@@ -115,6 +123,7 @@ class CredentialsValidatorTest {
 
     private final @NotNull ScheduledExecutorService scheduledExecutorService =
             Executors.newSingleThreadScheduledExecutor();
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
 
     private @NotNull CredentialsValidator validator;
 
@@ -145,6 +154,69 @@ class CredentialsValidatorTest {
         assertThat(roles2).containsExactly("role1", "role2");
     }
 
+    @Test
+    void test_malformed_hashed_password_rejected_at_load() throws Exception {
+        // passes the config validation, but can not be decoded
+        this.validator = initValidator(HASHED_CREDENTIALS.replace("c2FsdA==:100:MAK8", "c2FsdA==:abc:MAK8"), true);
+        final var roles = validator.getRoles("user1", ByteBuffer.wrap("pass1".getBytes()));
+        assertThat(roles).isNull();
+        final var roles2 = validator.getRoles("user2", ByteBuffer.wrap("pass2".getBytes()));
+        assertThat(roles2).containsExactly("role1", "role2");
+    }
+
+    @Test
+    void test_negative_cache() throws Exception {
+        this.validator = initValidator(HASHED_CREDENTIALS, true);
+        assertThat(validator.getRoles("user1", ByteBuffer.wrap("wrong".getBytes()))).isNull();
+        assertThat(validator.getRoles("user1", ByteBuffer.wrap("wrong".getBytes()))).isNull();
+        assertThat(metricRegistry.meter(CredentialsValidator.NEGATIVE_CACHE_HITS).getCount()).isEqualTo(1);
+        // the same password of another user is not affected
+        assertThat(validator.getRoles("user2", ByteBuffer.wrap("wrong".getBytes()))).isNull();
+        assertThat(metricRegistry.meter(CredentialsValidator.NEGATIVE_CACHE_HITS).getCount()).isEqualTo(1);
+        assertThat(validator.getRoles("user1", ByteBuffer.wrap("pass1".getBytes()))).containsExactly("role1");
+    }
+
+    @Test
+    void test_off_heap_user_store() throws Exception {
+        final var permissionsCacheSize = new ExtensionConfig().getPermissionsCacheSize();
+        this.validator = initValidator(HASHED_CREDENTIALS, true, permissionsCacheSize, UserStore.OFF_HEAP);
+        assertThat(validator.getRoles("user1", ByteBuffer.wrap("pass1".getBytes()))).containsExactly("role1");
+        assertThat(validator.getRoles("user2", ByteBuffer.wrap("pass2".getBytes()))).containsExactly("role1", "role2");
+        assertThat(validator.getRoles("user3", ByteBuffer.wrap("pass3".getBytes()))).isNull();
+        final var offHeapBytes = metricRegistry.getGauges().get(CredentialsValidator.USERS_OFF_HEAP_BYTES);
+        assertThat((Long) offHeapBytes.getValue()).isPositive();
+        // the users are decoded on every lookup, the negative cache still applies
+        assertThat(validator.getRoles("user1", ByteBuffer.wrap("wrong".getBytes()))).isNull();
+        assertThat(validator.getRoles("user1", ByteBuffer.wrap("wrong".getBytes()))).isNull();
+        assertThat(metricRegistry.meter(CredentialsValidator.NEGATIVE_CACHE_HITS).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_authenticate() {
+        try (final var ignored = mockStatic(Builders.class)) {
+            when(Builders.topicPermission()).thenAnswer(invocation -> new TestTopicPermissionBuilder());
+            final var permissions = validator.authenticate("client2", "user2", ByteBuffer.wrap("pass2".getBytes()));
+            assertThat(permissions).satisfiesExactly(
+                    permission -> assertThat(permission.getTopicFilter()).isEqualTo("data/client2/personal"),
+                    permission -> assertThat(permission.getTopicFilter()).isEqualTo("user2/#"));
+            assertThat(validator.authenticate("client2", "user2", ByteBuffer.wrap("pass1".getBytes()))).isNull();
+            assertThat(validator.authenticate("client3", "user3", ByteBuffer.wrap("pass3".getBytes()))).isNull();
+        }
+    }
+
+    @Test
+    void test_authenticate_stage_timers() {
+        try (final var ignored = mockStatic(Builders.class)) {
+            when(Builders.topicPermission()).thenAnswer(invocation -> new TestTopicPermissionBuilder());
+            assertThat(validator.authenticate("client2", "user2", ByteBuffer.wrap("pass2".getBytes()))).hasSize(2);
+            assertThat(validator.authenticate("client2", "user2", ByteBuffer.wrap("pass1".getBytes()))).isNull();
+            assertThat(validator.authenticate("client4", "user4", ByteBuffer.wrap("pass4".getBytes()))).isNull();
+            assertThat(metricRegistry.timer(CredentialsValidator.STAGE_USER_LOOKUP).getCount()).isEqualTo(3);
+            assertThat(metricRegistry.timer(CredentialsValidator.STAGE_HASH).getCount()).isEqualTo(2);
+            assertThat(metricRegistry.timer(CredentialsValidator.STAGE_PERMISSIONS).getCount()).isEqualTo(1);
+        }
+    }
+
     @Test
     void test_permissions() {
         try (final var ignored = mockStatic(Builders.class)) {
@@ -163,6 +235,133 @@ class CredentialsValidatorTest {
         }
     }
 
+    @Test
+    void test_static_permissions_are_shared() throws Exception {
+        try (final var ignored = mockStatic(Builders.class)) {
+            when(Builders.topicPermission()).thenAnswer(invocation -> new TestTopicPermissionBuilder());
+            validator = initValidator(PLAIN_CREDENTIALS.replace("${{username}}/#", "broadcast/#"), false);
+            final var permissions = validator.getPermissions("client1", "user1", List.of("role1", "role2"));
+            assertThat(permissions).satisfiesExactly(
+                    permission -> assertThat(permission.getTopicFilter()).isEqualTo("data/client1/personal"),
+                    permission -> assertThat(permission.getTopicFilter()).isEqualTo("broadcast/#"));
+            final var permissions2 = validator.getPermissions("client2", "user2", List.of("role1", "role2"));
+            assertThat(permissions2.get(0).getTopicFilter()).isEqualTo("data/client2/personal");
+            assertThat(permissions2.get(1)).isSameAs(permissions.get(1));
+        }
+    }
+
+    @Test
+    void test_static_role_combination_is_shared() throws Exception {
+        try (final var ignored = mockStatic(Builders.class)) {
+            when(Builders.topicPermission()).thenAnswer(invocation -> new TestTopicPermissionBuilder());
+            validator = initValidator(PLAIN_CREDENTIALS.replace("data/${{clientid}}/personal", "data/personal")
+                    .replace("${{username}}/#", "broadcast/#"), false);
+            final var permissions = validator.getPermissions("client1", "user1", List.of("role1", "role2"));
+            assertThat(permissions).satisfiesExactly(
+                    permission -> assertThat(permission.getTopicFilter()).isEqualTo("data/personal"),
+                    permission -> assertThat(permission.getTopicFilter()).isEqualTo("broadcast/#"));
+            assertThat(validator.getPermissions("client2", "user2", List.of("role1", "role2"))).isSameAs(permissions);
+            // shared without the permissions cache
+            assertThat(metricRegistry.getGauges().get(CredentialsValidator.PERMISSIONS_CACHE_MISSES).getValue())
+                    .isEqualTo(0L);
+        }
+    }
+
+    @Test
+    void test_equal_static_roles_are_deduplicated() throws Exception {
+        try (final var ignored = mockStatic(Builders.class)) {
+            when(Builders.topicPermission()).thenAnswer(invocation -> new TestTopicPermissionBuilder());
+            validator = initValidator(PLAIN_CREDENTIALS.replace("data/${{clientid}}/personal", "broadcast/#")
+                    .replace("${{username}}/#", "broadcast/#"), false);
+            final var permissions1 = validator.getPermissions("client1", "user1", List.of("role1"));
+            final var permissions2 = validator.getPermissions("client2", "user2", List.of("role1", "role2"));
+            // the duplicate permission of role2 is eliminated, so both combinations share one permission list
+            assertThat(permissions2).isSameAs(permissions1).hasSize(1);
+            assertThat(metricRegistry.getGauges().get(CredentialsValidator.PERMISSION_SETS).getValue()).isEqualTo(1);
+            assertThat(metricRegistry.getGauges().get(CredentialsValidator.PERMISSIONS_ELIMINATED).getValue())
+                    .isEqualTo(1);
+            assertThat((Long) metricRegistry.getGauges()
+                    .get(CredentialsValidator.PERMISSION_SETS_SAVED_BYTES)
+                    .getValue()).isPositive();
+        }
+    }
+
+    @Test
+    void test_subsumed_permissions_are_eliminated() throws Exception {
+        try (final var ignored = mockStatic(Builders.class)) {
+            when(Builders.topicPermission()).thenAnswer(invocation -> new TestTopicPermissionBuilder());
+            validator = initValidator(PLAIN_CREDENTIALS.replace("data/${{clientid}}/personal", "data/+/personal")
+                    .replace("${{username}}/#", "data/#"), false);
+            final var permissions = validator.getPermissions("client2", "user2", List.of("role1", "role2"));
+            assertThat(permissions).hasSize(1);
+            assertThat(permissions.get(0).getTopicFilter()).isEqualTo("data/#");
+            assertThat(metricRegistry.getGauges().get(CredentialsValidator.PERMISSIONS_ELIMINATED).getValue())
+                    .isEqualTo(1);
+        }
+    }
+
+    @Test
+    void test_permissions_cached() {
+        try (final var ignored = mockStatic(Builders.class)) {
+            when(Builders.topicPermission()).thenAnswer(invocation -> new TestTopicPermissionBuilder());
+            final var permissions = validator.getPermissions("client1", "user2", List.of("role1", "role2"));
+            final var permissions2 = validator.getPermissions("client1", "user2", List.of("role1", "role2"));
+            final var permissions3 = validator.getPermissions("client2", "user2", List.of("role1", "role2"));
+            assertThat(permissions2).isSameAs(permissions);
+            assertThat(permissions3).isNotSameAs(permissions);
+            assertThat(permissions3.get(0).getTopicFilter()).isEqualTo("data/client2/personal");
+            assertThat(metricRegistry.getGauges().get(CredentialsValidator.PERMISSIONS_CACHE_HITS).getValue())
+                    .isEqualTo(1L);
+            assertThat(metricRegistry.getGauges().get(CredentialsValidator.PERMISSIONS_CACHE_MISSES).getValue())
+                    .isEqualTo(2L);
+        }
+    }
+
+    @Test
+    void test_permissions_cache_disabled() throws Exception {
+        try (final var ignored = mockStatic(Builders.class)) {
+            when(Builders.topicPermission()).thenAnswer(invocation -> new TestTopicPermissionBuilder());
+            validator = initValidator(PLAIN_CREDENTIALS, false, 0);
+            final var permissions = validator.getPermissions("client1", "user2", List.of("role1", "role2"));
+            final var permissions2 = validator.getPermissions("client1", "user2", List.of("role1", "role2"));
+            assertThat(permissions2).isNotSameAs(permissions).hasSameSizeAs(permissions);
+        }
+    }
+
+    @Test
+    void test_reload_applies_only_changes() {
+        try (final var ignored = mockStatic(Builders.class)) {
+            when(Builders.topicPermission()).thenAnswer(invocation -> new TestTopicPermissionBuilder());
+            final var oldConfig = config("pass1", "${{username}}/#");
+            final var credentialsConfiguration = mock(CredentialsConfiguration.class);
+            when(credentialsConfiguration.getCurrentConfig()).thenReturn(oldConfig);
+            final var extensionConfig = new ExtensionConfig();
+            extensionConfig.setPasswordType(PasswordType.PLAIN);
+            validator = new CredentialsValidator(credentialsConfiguration, extensionConfig, metricRegistry);
+            validator.init();
+            final var callback = ArgumentCaptor.forClass(CredentialsConfiguration.ReloadCallback.class);
+            verify(credentialsConfiguration).addReloadCallback(callback.capture());
+
+            final var permissions1 = validator.getPermissions("client1", "user1", List.of("role1"));
+            final var permissions2 = validator.getPermissions("client2", "user2", List.of("role2"));
+
+            // rotate the password of user1 and change role2
+            final var generation = validator.getGeneration();
+            final var newConfig = config("rotated", "${{username}}/new/#");
+            callback.getValue().onReload(oldConfig, newConfig, ConfigDiff.of(oldConfig, newConfig));
+            assertThat(validator.getGeneration()).isGreaterThan(generation);
+
+            assertThat(validator.getRoles("user1", ByteBuffer.wrap("pass1".getBytes()))).isNull();
+            assertThat(validator.getRoles("user1", ByteBuffer.wrap("rotated".getBytes()))).containsExactly("role1");
+            assertThat(validator.getRoles("user2", ByteBuffer.wrap("pass2".getBytes()))).containsExactly("role2");
+            // the permissions of the unchanged role are still cached
+            assertThat(validator.getPermissions("client1", "user1", List.of("role1"))).isSameAs(permissions1);
+            final var newPermissions2 = validator.getPermissions("client2", "user2", List.of("role2"));
+            assertThat(newPermissions2).isNotSameAs(permissions2);
+            assertThat(newPermissions2.get(0).getTopicFilter()).isEqualTo("user2/new/#");
+        }
+    }
+
     @Test
     void test_invalid_roles() {
         final var roles = validator.getRoles("user1", ByteBuffer.wrap("pass2".getBytes()));
@@ -182,9 +381,35 @@ class CredentialsValidatorTest {
         assertThat(roles2).isNull();
     }
 
+    private static @NotNull FileAuthConfig config(
+            final @NotNull String user1Password,
+            final @NotNull String role2Topic) {
+        return new FileAuthConfig(List.of(new User("user1", user1Password, List.of("role1")),
+                new User("user2", "pass2", List.of("role2"))),
+                List.of(new Role("role1", List.of(new Permission("data/${{clientid}}/personal"))),
+                        new Role("role2", List.of(new Permission(role2Topic)))));
+    }
+
     private @NotNull CredentialsValidator initValidator(final @NotNull String credentials, final boolean hashed)
             throws Exception {
+        return initValidator(credentials, hashed, new ExtensionConfig().getPermissionsCacheSize());
+    }
+
+    private @NotNull CredentialsValidator initValidator(
+            final @NotNull String credentials,
+            final boolean hashed,
+            final int permissionsCacheSize) throws Exception {
+        return initValidator(credentials, hashed, permissionsCacheSize, UserStore.HEAP);
+    }
+
+    private @NotNull CredentialsValidator initValidator(
+            final @NotNull String credentials,
+            final boolean hashed,
+            final int permissionsCacheSize,
+            final @NotNull UserStore userStore) throws Exception {
         final var extensionConfig = new ExtensionConfig();
+        extensionConfig.setPermissionsCacheSize(permissionsCacheSize);
+        extensionConfig.setUserStore(userStore);
         if (hashed) {
             extensionConfig.setPasswordType(PasswordType.HASHED);
         } else {
@@ -192,9 +417,9 @@ class CredentialsValidatorTest {
         }
         Files.writeString(extensionHome.resolve("credentials.xml"), credentials);
         final var credentialsConfiguration =
-                new CredentialsConfiguration(extensionHome, scheduledExecutorService, extensionConfig);
+                new CredentialsConfiguration(extensionHome, scheduledExecutorService, extensionConfig, metricRegistry);
         credentialsConfiguration.init();
-        final var validator = new CredentialsValidator(credentialsConfiguration, extensionConfig, new MetricRegistry());
+        final var validator = new CredentialsValidator(credentialsConfiguration, extensionConfig, metricRegistry);
         validator.init();
         return validator;
     }
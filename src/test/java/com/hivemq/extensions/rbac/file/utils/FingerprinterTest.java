@@ -0,0 +1,68 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FingerprinterTest {
+
+    private static final byte @NotNull [] PASSWORD = "password".getBytes();
+    private static final @NotNull HashedPassword HASHED_PASSWORD =
+            new HashedPassword("salt".getBytes(), 100, "hash".getBytes());
+
+    private final @NotNull Fingerprinter fingerprinter = new Fingerprinter();
+
+    @Test
+    void test_same_credentials() {
+        final var fingerprint = fingerprinter.fingerprint(PASSWORD, HASHED_PASSWORD);
+        assertThat(fingerprinter.fingerprint(PASSWORD.clone(), HASHED_PASSWORD)).isEqualTo(fingerprint);
+        final var userFingerprint = fingerprinter.fingerprint("user", PASSWORD);
+        assertThat(fingerprinter.fingerprint("user", PASSWORD.clone())).isEqualTo(userFingerprint);
+    }
+
+    @Test
+    void test_different_credentials() {
+        final var fingerprint = fingerprinter.fingerprint(PASSWORD, HASHED_PASSWORD);
+        final var otherPassword = fingerprinter.fingerprint("passwore".getBytes(), HASHED_PASSWORD);
+        final var otherSalt =
+                fingerprinter.fingerprint(PASSWORD, new HashedPassword("pepper".getBytes(), 100, "hash".getBytes()));
+        final var otherIterations =
+                fingerprinter.fingerprint(PASSWORD, new HashedPassword("salt".getBytes(), 101, "hash".getBytes()));
+        assertThat(otherPassword).isNotEqualTo(fingerprint);
+        assertThat(otherSalt).isNotEqualTo(fingerprint);
+        assertThat(otherIterations).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void test_length_prefixed() {
+        final var userFingerprint = fingerprinter.fingerprint("user1", PASSWORD);
+        assertThat(fingerprinter.fingerprint("user", "1password".getBytes())).isNotEqualTo(userFingerprint);
+        final var fingerprint = fingerprinter.fingerprint(PASSWORD, HASHED_PASSWORD);
+        final var shifted = fingerprinter.fingerprint("passwordsalt".getBytes(),
+                new HashedPassword(new byte[0], 100, "hash".getBytes()));
+        assertThat(shifted).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void test_random_key_per_instance() {
+        final var fingerprint = fingerprinter.fingerprint("user", PASSWORD);
+        assertThat(new Fingerprinter().fingerprint("user", PASSWORD)).isNotEqualTo(fingerprint);
+    }
+}
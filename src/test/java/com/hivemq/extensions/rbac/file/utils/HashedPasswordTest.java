@@ -0,0 +1,54 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashedPasswordTest {
+
+    @Test
+    void test_parse() {
+        final var hashedPassword = HashedPassword.parse("c2FsdA==:100:aGFzaA==");
+        assertThat(hashedPassword).isNotNull();
+        assertThat(hashedPassword.getSalt()).isEqualTo("salt".getBytes());
+        assertThat(hashedPassword.getIterations()).isEqualTo(100);
+        assertThat(hashedPassword.getHash()).isEqualTo("hash".getBytes());
+    }
+
+    @Test
+    void test_parse_missing_parts() {
+        assertThat(HashedPassword.parse("c2FsdA==:100")).isNull();
+        assertThat(HashedPassword.parse("c2FsdA==:100:")).isNull();
+        assertThat(HashedPassword.parse(":100:aGFzaA==")).isNull();
+        assertThat(HashedPassword.parse("c2FsdA==:100:aGFzaA==:aGFzaA==")).isNull();
+    }
+
+    @Test
+    void test_parse_invalid_iterations() {
+        assertThat(HashedPassword.parse("c2FsdA==:abc:aGFzaA==")).isNull();
+        assertThat(HashedPassword.parse("c2FsdA==:0:aGFzaA==")).isNull();
+        assertThat(HashedPassword.parse("c2FsdA==:-1:aGFzaA==")).isNull();
+    }
+
+    @Test
+    void test_parse_invalid_base64() {
+        assertThat(HashedPassword.parse("c2Fs!A==:100:aGFzaA==")).isNull();
+        assertThat(HashedPassword.parse("c2FsdA==:100:aGFz!A==")).isNull();
+    }
+}
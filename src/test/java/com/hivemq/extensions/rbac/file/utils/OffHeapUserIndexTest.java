@@ -0,0 +1,117 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extensions.rbac.file.utils.CredentialsSnapshot.StoredUser;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffHeapUserIndexTest {
+
+    @Test
+    void test_empty() {
+        final var index = OffHeapUserIndex.builder(0).build();
+        assertThat(index.size()).isEqualTo(0);
+        assertThat(index.get("user1")).isNull();
+        assertThat(index.contains("user1")).isFalse();
+    }
+
+    @Test
+    void test_get_plain_and_hashed() {
+        final var hashedPassword = HashedPassword.parse("c2FsdA==:100:aGFzaA==");
+        final var index = OffHeapUserIndex.builder(2)
+                .add("user1", new StoredUser("päss", null, List.of("role1", "role2")))
+                .add("user2", new StoredUser(null, hashedPassword, List.of("role2")))
+                .build();
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.getAllocatedBytes()).isPositive();
+
+        final var user1 = index.get("user1");
+        assertThat(user1).isNotNull();
+        assertThat(user1.getPassword()).isEqualTo("päss");
+        assertThat(user1.getHashedPassword()).isNull();
+        assertThat(user1.getRoles()).containsExactly("role1", "role2");
+
+        final var user2 = index.get("user2");
+        assertThat(user2).isNotNull();
+        assertThat(user2.getPassword()).isNull();
+        assertThat(user2.getHashedPassword()).isEqualTo(hashedPassword);
+        assertThat(user2.getRoles()).containsExactly("role2");
+
+        assertThat(index.get("user3")).isNull();
+    }
+
+    @Test
+    void test_many_users() {
+        final var userCount = 100_000;
+        final var builder = OffHeapUserIndex.builder(userCount);
+        for (var i = 0; i < userCount; i++) {
+            builder.add("user" + i, new StoredUser("pass" + i, null, List.of("role" + i % 10)));
+        }
+        final var index = builder.build();
+        assertThat(index.size()).isEqualTo(userCount);
+        for (var i = 0; i < userCount; i++) {
+            final var user = index.get("user" + i);
+            assertThat(user).isNotNull();
+            assertThat(user.getPassword()).isEqualTo("pass" + i);
+            assertThat(user.getRoles()).containsExactly("role" + i % 10);
+        }
+        assertThat(index.get("user" + userCount)).isNull();
+    }
+
+    @Test
+    void test_add_replaces_user() {
+        final var index = OffHeapUserIndex.builder(1)
+                .add("user1", new StoredUser("pass1", null, List.of("role1")))
+                .add("user1", new StoredUser("pass2", null, List.of("role1")))
+                .build();
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.get("user1").getPassword()).isEqualTo("pass2");
+    }
+
+    @Test
+    void test_capacity_exceeded() {
+        final var builder = OffHeapUserIndex.builder(1).add("user1", new StoredUser("pass1", null, List.of()));
+        assertThatThrownBy(() -> builder.add("user2", new StoredUser("pass2", null, List.of())))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void test_copy_base() {
+        final var base = OffHeapUserIndex.builder(3)
+                .add("user1", new StoredUser("pass1", null, List.of("role1")))
+                .add("user2", new StoredUser("pass2", null, List.of("role2")))
+                .add("user3", new StoredUser("pass3", null, List.of("role1", "role2")))
+                .build();
+        final var index = OffHeapUserIndex.builder(3, base)
+                .copyBase(userName -> !userName.equals("user2"))
+                .add("user4", new StoredUser("pass4", null, List.of("role3", "role1")))
+                .build();
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.get("user1").getRoles()).containsExactly("role1");
+        assertThat(index.get("user2")).isNull();
+        assertThat(index.get("user3").getPassword()).isEqualTo("pass3");
+        assertThat(index.get("user3").getRoles()).containsExactly("role1", "role2");
+        assertThat(index.get("user4").getRoles()).containsExactly("role3", "role1");
+        // the base index is not modified
+        assertThat(base.get("user2").getPassword()).isEqualTo("pass2");
+    }
+}
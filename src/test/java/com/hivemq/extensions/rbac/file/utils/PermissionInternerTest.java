@@ -0,0 +1,63 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class PermissionInternerTest {
+
+    @Test
+    void test_equal_permissions_are_shared() {
+        final var interner = new PermissionInterner();
+        final var permission = mock(TopicPermission.class);
+        assertThat(interner.intern(List.of("topic/#", TopicPermission.Qos.ALL), () -> permission))
+                .isSameAs(permission);
+        assertThat(interner.intern(List.of("topic/#", TopicPermission.Qos.ALL),
+                () -> mock(TopicPermission.class))).isSameAs(permission);
+        assertThat(interner.intern(List.of("topic/#", TopicPermission.Qos.ZERO),
+                () -> mock(TopicPermission.class))).isNotSameAs(permission);
+        assertThat(interner.getSavedBytes()).isPositive();
+    }
+
+    @Test
+    void test_equal_permission_sets_are_shared() {
+        final var interner = new PermissionInterner();
+        final var permission1 = mock(TopicPermission.class);
+        final var permission2 = mock(TopicPermission.class);
+        final var permissionSet = interner.internSet(new ArrayList<>(List.of(permission1, permission2)));
+        assertThat(interner.internSet(new ArrayList<>(List.of(permission1, permission2)))).isSameAs(permissionSet);
+        assertThat(interner.internSet(new ArrayList<>(List.of(permission2, permission1)))).isNotSameAs(permissionSet);
+        assertThat(interner.getPermissionSetCount()).isEqualTo(2);
+        assertThat(interner.getSavedBytes()).isPositive();
+    }
+
+    @Test
+    void test_nothing_shared() {
+        final var interner = new PermissionInterner();
+        interner.intern(List.of("topic1/#"), () -> mock(TopicPermission.class));
+        interner.intern(List.of("topic2/#"), () -> mock(TopicPermission.class));
+        assertThat(interner.getPermissionSetCount()).isEqualTo(0);
+        assertThat(interner.getSavedBytes()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import com.hivemq.extension.sdk.api.services.builder.Builders;
+import com.hivemq.extension.sdk.api.services.builder.TopicPermissionBuilder;
+import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import static com.hivemq.extensions.rbac.file.utils.PermissionTemplate.containsTopicFilter;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+
+class PermissionTemplateTest {
+
+    private @NotNull MockedStatic<Builders> builders;
+
+    @BeforeEach
+    void setUp() {
+        builders = mockStatic(Builders.class);
+        builders.when(Builders::topicPermission).thenAnswer(invocation -> {
+            final var builder = mock(TopicPermissionBuilder.class, RETURNS_SELF);
+            when(builder.build()).thenAnswer(build -> mock(TopicPermission.class));
+            return builder;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        builders.close();
+    }
+
+    @Test
+    void test_contains_topic_filter() {
+        assertThat(containsTopicFilter("a/b", "a/b")).isTrue();
+        assertThat(containsTopicFilter("a/b", "a/c")).isFalse();
+        assertThat(containsTopicFilter("a/b", "a/+")).isFalse();
+        assertThat(containsTopicFilter("a/b", "a/b/c")).isFalse();
+        assertThat(containsTopicFilter("a/b", "a")).isFalse();
+        assertThat(containsTopicFilter("a/+", "a/b")).isTrue();
+        assertThat(containsTopicFilter("a/+", "a/+")).isTrue();
+        assertThat(containsTopicFilter("a/+", "a/#")).isFalse();
+        assertThat(containsTopicFilter("a/+", "a/b/c")).isFalse();
+        assertThat(containsTopicFilter("a/+", "a/")).isTrue();
+        assertThat(containsTopicFilter("a/#", "a")).isTrue();
+        assertThat(containsTopicFilter("a/#", "a/+/c")).isTrue();
+        assertThat(containsTopicFilter("a/#", "a/#")).isTrue();
+        assertThat(containsTopicFilter("a/#", "b/#")).isFalse();
+        assertThat(containsTopicFilter("#", "a/b")).isTrue();
+        assertThat(containsTopicFilter("+/#", "a")).isTrue();
+    }
+
+    @Test
+    void test_wildcards_do_not_contain_system_topics() {
+        assertThat(containsTopicFilter("#", "$SYS/broker")).isFalse();
+        assertThat(containsTopicFilter("+/broker", "$SYS/broker")).isFalse();
+        assertThat(containsTopicFilter("$SYS/#", "$SYS/broker")).isTrue();
+        assertThat(containsTopicFilter("a/#", "a/$b")).isTrue();
+    }
+
+    @Test
+    void test_subsumes_topic_filter() {
+        final var broad = template("sensors/#");
+        final var narrow = template("sensors/+/temperature");
+        assertThat(broad.subsumes(narrow)).isTrue();
+        assertThat(narrow.subsumes(broad)).isFalse();
+        assertThat(broad.subsumes(template("sensors/#"))).isTrue();
+    }
+
+    @Test
+    void test_subsumes_activity() {
+        final var all = permission("topic");
+        final var publish = permission("topic");
+        publish.setActivity(TopicPermission.MqttActivity.PUBLISH);
+        final var subscribe = permission("topic");
+        subscribe.setActivity(TopicPermission.MqttActivity.SUBSCRIBE);
+        assertThat(compile(all).subsumes(compile(publish))).isTrue();
+        assertThat(compile(publish).subsumes(compile(all))).isFalse();
+        assertThat(compile(publish).subsumes(compile(subscribe))).isFalse();
+    }
+
+    @Test
+    void test_subsumes_qos() {
+        final var zeroOne = permission("topic");
+        zeroOne.setQos(TopicPermission.Qos.ZERO_ONE);
+        final var one = permission("topic");
+        one.setQos(TopicPermission.Qos.ONE);
+        final var oneTwo = permission("topic");
+        oneTwo.setQos(TopicPermission.Qos.ONE_TWO);
+        assertThat(compile(zeroOne).subsumes(compile(one))).isTrue();
+        assertThat(compile(oneTwo).subsumes(compile(one))).isTrue();
+        assertThat(compile(zeroOne).subsumes(compile(oneTwo))).isFalse();
+        assertThat(compile(one).subsumes(compile(zeroOne))).isFalse();
+        assertThat(compile(permission("topic")).subsumes(compile(oneTwo))).isTrue();
+    }
+
+    @Test
+    void test_subsumes_retain_and_shared_subscription() {
+        final var retained = permission("topic");
+        retained.setRetain(TopicPermission.Retain.RETAINED);
+        final var shared = permission("topic");
+        shared.setSharedSubscription(TopicPermission.SharedSubscription.SHARED);
+        shared.setSharedGroup("group");
+        final var otherGroup = permission("topic");
+        otherGroup.setSharedSubscription(TopicPermission.SharedSubscription.SHARED);
+        otherGroup.setSharedGroup("other");
+        assertThat(compile(permission("topic")).subsumes(compile(retained))).isTrue();
+        assertThat(compile(retained).subsumes(compile(permission("topic")))).isFalse();
+        assertThat(compile(permission("topic")).subsumes(compile(shared))).isTrue();
+        assertThat(compile(shared).subsumes(compile(otherGroup))).isFalse();
+    }
+
+    @Test
+    void test_templated_permissions_only_subsume_equal_templates() {
+        final var template = template("${{clientid}}/#");
+        assertThat(template.subsumes(template("${{clientid}}/#"))).isTrue();
+        assertThat(template.subsumes(template("${{clientid}}/data"))).isFalse();
+        // a client identifier may contain several levels or start with '$'
+        assertThat(template("#").subsumes(template("${{clientid}}/data"))).isFalse();
+        assertThat(template("+/#").subsumes(template("${{clientid}}/data"))).isFalse();
+        assertThat(template.subsumes(template("data"))).isFalse();
+    }
+
+    private static @NotNull PermissionTemplate template(final @NotNull String topic) {
+        return compile(permission(topic));
+    }
+
+    private static @NotNull Permission permission(final @NotNull String topic) {
+        return new Permission(topic);
+    }
+
+    private static @NotNull PermissionTemplate compile(final @NotNull Permission permission) {
+        return new PermissionTemplate(permission, new PermissionInterner());
+    }
+}
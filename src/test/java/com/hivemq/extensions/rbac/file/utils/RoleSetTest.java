@@ -0,0 +1,92 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extensions.rbac.file.configuration.entities.Permission;
+import com.hivemq.extensions.rbac.file.configuration.entities.Role;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoleSetTest {
+
+    private final @NotNull PermissionInterner interner = new PermissionInterner();
+    private final @NotNull CompiledRole role1 =
+            CompiledRole.compile(new Role("role1", List.of(new Permission("${{clientid}}/#"))), interner);
+    private final @NotNull CompiledRole role2 = CompiledRole.compile(new Role("role2", List.of()), interner);
+    private final @NotNull Map<String, CompiledRole> roles = Map.of("role1", role1, "role2", role2);
+
+    @Test
+    void test_role_ids_are_copied() {
+        final var roleIds = new ArrayList<>(List.of("role2", "role1"));
+        final var roleSet = RoleSet.of(roleIds, roles, interner);
+        roleIds.clear();
+        assertThat(roleSet.getRoleIds()).containsExactly("role2", "role1");
+    }
+
+    @Test
+    void test_static_permissions_are_shared() {
+        final var roleSet = RoleSet.of(List.of("role2"), roles, interner);
+        assertThat(roleSet.isStatic()).isTrue();
+        assertThat(roleSet.resolve("client1", "user1")).isSameAs(roleSet.resolve("client2", "user2")).isEmpty();
+    }
+
+    @Test
+    void test_templated_permissions_are_not_static() {
+        final var roleSet = RoleSet.of(List.of("role2", "role1"), roles, interner);
+        assertThat(roleSet.isStatic()).isFalse();
+    }
+
+    @Test
+    void test_duplicate_and_subsumed_permissions_are_eliminated() {
+        final var role3 = CompiledRole.compile(new Role("role3",
+                List.of(new Permission("${{clientid}}/#"), new Permission("${{clientid}}/+"))), interner);
+        final var role4 = CompiledRole.compile(new Role("role4", List.of(new Permission("${{clientid}}/#"))), interner);
+        final var roles = Map.of("role1", role1, "role3", role3, "role4", role4);
+        assertThat(RoleSet.of(List.of("role1"), roles, interner).getEliminatedCount()).isEqualTo(0);
+        // templated permissions are only eliminated if they are equal
+        assertThat(RoleSet.of(List.of("role3"), roles, interner).getEliminatedCount()).isEqualTo(0);
+        assertThat(RoleSet.of(List.of("role1", "role3", "role4"), roles, interner).getEliminatedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void test_is_compiled_from() {
+        final var roleSet = RoleSet.of(List.of("role1", "role2"), roles, interner);
+        assertThat(roleSet.isCompiledFrom(roles)).isTrue();
+        final var changedRole1 =
+                CompiledRole.compile(new Role("role1", List.of(new Permission("${{clientid}}/+"))), interner);
+        assertThat(roleSet.isCompiledFrom(Map.of("role1", changedRole1, "role2", role2))).isFalse();
+        assertThat(roleSet.isCompiledFrom(Map.of("role1", role1))).isFalse();
+    }
+
+    @Test
+    void test_contains_any() {
+        final var roleSet = RoleSet.of(List.of("role1"), roles, interner);
+        final var staleRoles = Collections.<CompiledRole>newSetFromMap(new IdentityHashMap<>());
+        staleRoles.add(role2);
+        assertThat(roleSet.containsAny(staleRoles)).isFalse();
+        staleRoles.add(role1);
+        assertThat(roleSet.containsAny(staleRoles)).isTrue();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopicFilterTemplateTest {
+
+    @Test
+    void test_static_topic_filter() {
+        final var template = TopicFilterTemplate.compile("data/+/temperature/#");
+        assertThat(template.isStatic()).isTrue();
+        assertThat(template.fill("client1", "user1")).isEqualTo("data/+/temperature/#");
+    }
+
+    @Test
+    void test_client_id_and_username() {
+        final var template = TopicFilterTemplate.compile("${{username}}/devices/${{clientid}}/#");
+        assertThat(template.isStatic()).isFalse();
+        assertThat(template.fill("client1", "user1")).isEqualTo("user1/devices/client1/#");
+        assertThat(template.fill("client2", "user2")).isEqualTo("user2/devices/client2/#");
+    }
+
+    @Test
+    void test_placeholders_are_case_insensitive() {
+        final var template = TopicFilterTemplate.compile("${{ClientId}}/${{USERNAME}}");
+        assertThat(template.fill("client1", "user1")).isEqualTo("client1/user1");
+    }
+
+    @Test
+    void test_placeholder_within_topic_level() {
+        final var template = TopicFilterTemplate.compile("data/device-${{clientid}}-in");
+        assertThat(template.fill("client1", "user1")).isEqualTo("data/device-client1-in");
+    }
+
+    @Test
+    void test_escaped_placeholder() {
+        final var template = TopicFilterTemplate.compile("data/§${{clientid}}/${{clientid}}");
+        assertThat(template.fill("client1", "user1")).isEqualTo("data/${{clientid}}/client1");
+    }
+
+    @Test
+    void test_unknown_placeholder() {
+        final var template = TopicFilterTemplate.compile("data/${{unknown}}/${{unknown:-default}}");
+        assertThat(template.isStatic()).isTrue();
+        assertThat(template.fill("client1", "user1")).isEqualTo("data/${{unknown}}/default");
+    }
+
+    @Test
+    void test_unterminated_placeholder() {
+        final var template = TopicFilterTemplate.compile("data/${{clientid");
+        assertThat(template.isStatic()).isTrue();
+        assertThat(template.fill("client1", "user1")).isEqualTo("data/${{clientid");
+    }
+
+    @Test
+    void test_values_are_not_substituted_again() {
+        final var template = TopicFilterTemplate.compile("data/${{clientid}}");
+        assertThat(template.fill("${{username}}", "user1")).isEqualTo("data/${{username}}");
+    }
+
+    @Test
+    void test_substitution() {
+        assertThat(Substitution.substitute("${{clientid}}/${{username}}", "client1", "user1")).isEqualTo(
+                "client1/user1");
+    }
+}
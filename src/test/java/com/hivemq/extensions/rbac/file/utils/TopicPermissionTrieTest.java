@@ -0,0 +1,157 @@
+/*
+ * Copyright 2019-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.rbac.file.utils;
+
+import com.hivemq.extension.sdk.api.auth.parameter.TopicPermission;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TopicPermissionTrieTest {
+
+    @Test
+    void test_publish_topic_levels() {
+        final var trie =
+                TopicPermissionTrie.compile(List.of(permission("a/b"), permission("c/+/d"), permission("e/#")));
+        assertThat(trie.allowsPublish("a/b", 0, false)).isTrue();
+        assertThat(trie.allowsPublish("a/c", 0, false)).isFalse();
+        assertThat(trie.allowsPublish("a", 0, false)).isFalse();
+        assertThat(trie.allowsPublish("a/b/c", 0, false)).isFalse();
+        assertThat(trie.allowsPublish("c/x/d", 0, false)).isTrue();
+        assertThat(trie.allowsPublish("c//d", 0, false)).isTrue();
+        assertThat(trie.allowsPublish("c/x/y/d", 0, false)).isFalse();
+        assertThat(trie.allowsPublish("e", 0, false)).isTrue();
+        assertThat(trie.allowsPublish("e/f/g", 0, false)).isTrue();
+        assertThat(trie.allowsPublish("f", 0, false)).isFalse();
+    }
+
+    @Test
+    void test_publish_literal_and_wildcard_level() {
+        final var trie = TopicPermissionTrie.compile(List.of(permission("a/b/c"), permission("a/+/d")));
+        assertThat(trie.allowsPublish("a/b/c", 0, false)).isTrue();
+        assertThat(trie.allowsPublish("a/b/d", 0, false)).isTrue();
+        assertThat(trie.allowsPublish("a/b/e", 0, false)).isFalse();
+    }
+
+    @Test
+    void test_wildcards_do_not_match_system_topics() {
+        final var trie = TopicPermissionTrie.compile(List.of(permission("#"), permission("+/broker")));
+        assertThat(trie.allowsPublish("$SYS/broker", 0, false)).isFalse();
+        assertThat(trie.allowsSubscription("$SYS/#", 0)).isFalse();
+        assertThat(TopicPermissionTrie.compile(List.of(permission("$SYS/#"))).allowsPublish("$SYS/broker", 0, false))
+                .isTrue();
+    }
+
+    @Test
+    void test_publish_activity_qos_and_retain() {
+        final var trie = TopicPermissionTrie.compile(List.of(permission("a",
+                        TopicPermission.MqttActivity.PUBLISH,
+                        TopicPermission.Qos.ZERO_ONE,
+                        TopicPermission.Retain.NOT_RETAINED,
+                        TopicPermission.SharedSubscription.ALL,
+                        "#"),
+                permission("b",
+                        TopicPermission.MqttActivity.SUBSCRIBE,
+                        TopicPermission.Qos.ALL,
+                        TopicPermission.Retain.ALL,
+                        TopicPermission.SharedSubscription.ALL,
+                        "#")));
+        assertThat(trie.allowsPublish("a", 0, false)).isTrue();
+        assertThat(trie.allowsPublish("a", 1, false)).isTrue();
+        assertThat(trie.allowsPublish("a", 2, false)).isFalse();
+        assertThat(trie.allowsPublish("a", 0, true)).isFalse();
+        assertThat(trie.allowsSubscription("a", 0)).isFalse();
+        assertThat(trie.allowsPublish("b", 0, false)).isFalse();
+        assertThat(trie.allowsSubscription("b", 2)).isTrue();
+    }
+
+    @Test
+    void test_subscription_wildcards() {
+        final var trie = TopicPermissionTrie.compile(List.of(permission("a/+"), permission("b/#")));
+        assertThat(trie.allowsSubscription("a/b", 0)).isTrue();
+        assertThat(trie.allowsSubscription("a/+", 0)).isTrue();
+        assertThat(trie.allowsSubscription("a/#", 0)).isFalse();
+        assertThat(trie.allowsSubscription("+/b", 0)).isFalse();
+        assertThat(trie.allowsSubscription("b/#", 0)).isTrue();
+        assertThat(trie.allowsSubscription("b/+/c", 0)).isTrue();
+        assertThat(trie.allowsSubscription("b", 0)).isTrue();
+        assertThat(trie.allowsSubscription("#", 0)).isFalse();
+    }
+
+    @Test
+    void test_shared_subscriptions() {
+        final var trie = TopicPermissionTrie.compile(List.of(permission("a",
+                        TopicPermission.MqttActivity.ALL,
+                        TopicPermission.Qos.ALL,
+                        TopicPermission.Retain.ALL,
+                        TopicPermission.SharedSubscription.SHARED,
+                        "group"),
+                permission("b",
+                        TopicPermission.MqttActivity.ALL,
+                        TopicPermission.Qos.ALL,
+                        TopicPermission.Retain.ALL,
+                        TopicPermission.SharedSubscription.NOT_SHARED,
+                        "#"),
+                permission("c")));
+        assertThat(trie.allowsSubscription("$share/group/a", 0)).isTrue();
+        assertThat(trie.allowsSubscription("$share/other/a", 0)).isFalse();
+        assertThat(trie.allowsSubscription("a", 0)).isFalse();
+        assertThat(trie.allowsSubscription("$share/group/b", 0)).isFalse();
+        assertThat(trie.allowsSubscription("b", 0)).isTrue();
+        assertThat(trie.allowsSubscription("$share/other/c", 0)).isTrue();
+        assertThat(trie.allowsSubscription("$share/group", 0)).isFalse();
+    }
+
+    @Test
+    void test_no_permissions() {
+        final var trie = TopicPermissionTrie.compile(List.of());
+        assertThat(trie.allowsPublish("a", 0, false)).isFalse();
+        assertThat(trie.allowsSubscription("#", 0)).isFalse();
+    }
+
+    private static @NotNull TopicPermission permission(final @NotNull String topicFilter) {
+        return permission(topicFilter,
+                TopicPermission.MqttActivity.ALL,
+                TopicPermission.Qos.ALL,
+                TopicPermission.Retain.ALL,
+                TopicPermission.SharedSubscription.ALL,
+                "#");
+    }
+
+    private static @NotNull TopicPermission permission(
+            final @NotNull String topicFilter,
+            final TopicPermission.@NotNull MqttActivity activity,
+            final TopicPermission.@NotNull Qos qos,
+            final TopicPermission.@NotNull Retain retain,
+            final TopicPermission.@NotNull SharedSubscription sharedSubscription,
+            final @NotNull String sharedGroup) {
+        final TopicPermission permission = mock();
+        when(permission.getTopicFilter()).thenReturn(topicFilter);
+        when(permission.getType()).thenReturn(TopicPermission.PermissionType.ALLOW);
+        when(permission.getActivity()).thenReturn(activity);
+        when(permission.getQos()).thenReturn(qos);
+        when(permission.getPublishRetain()).thenReturn(retain);
+        when(permission.getSharedSubscription()).thenReturn(sharedSubscription);
+        when(permission.getSharedGroup()).thenReturn(sharedGroup);
+        return permission;
+    }
+}